@@ -47,7 +47,6 @@ import org.kalmeo.kuix.widget.Text;
 import org.kalmeo.kuix.widget.TextWidget;
 import org.kalmeo.kuix.widget.Widget;
 import org.kalmeo.util.BooleanUtil;
-import org.kalmeo.util.Filter;
 import org.kalmeo.util.LinkedList;
 import org.kalmeo.util.StringTokenizer;
 import org.kalmeo.util.StringUtil;
@@ -70,8 +69,18 @@ public final class Kuix {
 	private static final FrameHandler frameHandler = new FrameHandler();
 	// List of registred styles
 	private static final LinkedList registredStyles = new LinkedList();
+	// Registred styles indexed by the id, class and tag of their rightmost selector (key: #id, .class or tag / value: Vector of Style)
+	private static final Hashtable styleIndex = new Hashtable();
+	// Registration order of the indexed styles (key: Style / value: Integer)
+	private static final Hashtable styleOrdinals = new Hashtable();
+	// Matched styles by widget signature (key: signature / value: Vector of Style)
+	private static final Hashtable matchedStyles = new Hashtable();
+	// Maximum number of memoized widget signatures
+	private static final int MAX_MATCHED_STYLES = 128;
 	// The converter used to convert string representation to java object
 	private static KuixConverter converter;
+	// Compiled xml files (key: xmlFilePath / value: WidgetTemplate)
+	private static final Hashtable templates = new Hashtable();
 	// The KuixCanvas instance. Caution that this variable is null until initialize(KuixCanvas) invokation
 	private static KuixCanvas canvas;
 	// Parameters
@@ -214,7 +223,29 @@ public final class Kuix {
 	 * @return The {@link PopupBox} instance
 	 */
 	public static PopupBox showPopupBox(String xmlFilePath, DataProvider dataProvider) {
-		return showPopupBox(getXmlResourceInputStream(xmlFilePath), dataProvider);
+		return showPopupBox(getTemplate(xmlFilePath), dataProvider);
+	}
+
+	/**
+	 * Create and display a {@link PopupBox} from its compiled XML definition.
+	 * 
+	 * @param template
+	 * @param dataProvider
+	 * @return The {@link PopupBox} instance
+	 */
+	public static PopupBox showPopupBox(WidgetTemplate template, DataProvider dataProvider) {
+		if (Kuix.getCanvas() != null) {
+
+			// Create popupBox and load its template
+			PopupBox popupBox = new PopupBox();
+			parseXml(popupBox, null, template, dataProvider, true);
+
+			// Add popupBox to desktop
+			Kuix.getCanvas().getDesktop().addPopup(popupBox);
+
+			return popupBox;
+		}
+		return null;
 	}
 
 	/**
@@ -561,6 +592,37 @@ public final class Kuix {
 		return parseXml(null, inputStream, dataProvider, false);
 	}
 
+	/**
+	 * Load a {@link Widget} from a {@link WidgetTemplate}.
+	 * 
+	 * @param template
+	 * @param dataProvider
+	 * @return The loaded {@link Widget} instance
+	 */
+	public static Widget loadWidget(WidgetTemplate template,
+			DataProvider dataProvider) {
+		return parseXml(null, null, template, dataProvider, false);
+	}
+
+	/**
+	 * Returns the compiled {@link WidgetTemplate} of a XML file. Templates are
+	 * compiled on first use and then kept. The path follows the
+	 * {@link #getXmlResourceInputStream(String)} rules.
+	 * 
+	 * @param xmlFilePath
+	 * @return The {@link WidgetTemplate} instance
+	 */
+	public static WidgetTemplate getTemplate(String xmlFilePath) {
+		synchronized (templates) {
+			WidgetTemplate template = (WidgetTemplate) templates.get(xmlFilePath);
+			if (template == null) {
+				template = WidgetTemplate.compile(getXmlResourceInputStream(xmlFilePath));
+				templates.put(xmlFilePath, template);
+			}
+			return template;
+		}
+	}
+
 	// Menu ////////////////////////////////////////////////////////////////////////////////////
 	/**
 	 * Reload the <code>menu</code> content from an xml definition.<br>
@@ -575,8 +637,28 @@ public final class Kuix {
 	 */
 	public static void loadMenuContent(Menu menu, String xmlFilePath,
 			DataProvider dataProvider) {
-		loadMenuContent(menu, getXmlResourceInputStream(xmlFilePath),
-				dataProvider);
+		loadMenuContent(menu, getTemplate(xmlFilePath), dataProvider);
+	}
+
+	/**
+	 * Reload the first menu content from a compiled xml definition.<br>
+	 * Caution that this method <code>cleanUp</code> and <code>removeAll</code>
+	 * previous menu content, but not its attributes (like <code>id</code> or
+	 * <code>class</code>).
+	 * 
+	 * @param menu
+	 * @param template
+	 * @param dataProvider
+	 */
+	public static void loadMenuContent(Menu menu, WidgetTemplate template,
+			DataProvider dataProvider) {
+		if (menu != null) {
+			menu.hideMenuTree();
+			menu.cleanUp();
+			menu.removeAll();
+			parseXml(menu, null, template, dataProvider, true);
+			menu.invalidate();
+		}
 	}
 
 	/**
@@ -791,15 +873,30 @@ public final class Kuix {
 	private static Widget parseXml(final Widget rootWidget,
 			InputStream inputStream, final DataProvider dataProvider,
 			final boolean mergeRootWidget) {
-		if (inputStream != null) {
+		return parseXml(rootWidget, inputStream, null, dataProvider, mergeRootWidget);
+	}
+
+	/**
+	 * Parse the XML <code>inputStream</code>, or replay the already parsed
+	 * <code>template</code> if it is not <code>null</code>.
+	 * 
+	 * @param rootWidget
+	 * @param inputStream
+	 * @param template
+	 * @param dataProvider
+	 * @param mergeRootWidget
+	 */
+	private static Widget parseXml(final Widget rootWidget,
+			InputStream inputStream, WidgetTemplate template,
+			final DataProvider dataProvider, final boolean mergeRootWidget) {
+		if (inputStream != null || template != null) {
 
 			// Init the root holder (used if no root widget is defined)
 			final Widget[] rootWidgetHolder = (rootWidget == null)
 					? new Widget[1] : null;
 
 			try {
-				LightXmlParser.parse(inputStream,
-						KuixConstants.DEFAULT_CHARSET_NAME,
+				parse(inputStream, template,
 						new LightXmlParserHandler() {
 
 							private final Stack path = new Stack();
@@ -913,8 +1010,20 @@ public final class Kuix {
 										while (enumeration.hasMoreElements()) {
 											String key = (String) enumeration.nextElement();
 											attributeName = key.toLowerCase();
+											Object value = attributes.get(key);
+											
+											// Values already converted by a WidgetTemplate
+											if (value instanceof Style) {
+												newWidget.setAuthorStyle((Style) value);
+												continue;
+											}
+											if (value instanceof String[]) {
+												newWidget.setStyleClasses((String[]) value);
+												continue;
+											}
+											
 											attributeValue =
-													convertParsePropertyStringValues((String) attributes.get(key));
+													convertParsePropertyStringValues((String) value);
 											if (!newWidget.setAttribute(
 													attributeName,
 													attributeValue)) {
@@ -1328,6 +1437,25 @@ public final class Kuix {
 		throw new IllegalArgumentException("Invalid xml inputStream");
 	}
 
+	/**
+	 * Feed <code>handler</code> from <code>template</code> if it is not
+	 * <code>null</code>, else from the XML <code>inputStream</code>.
+	 * 
+	 * @param inputStream
+	 * @param template
+	 * @param handler
+	 * @throws IOException
+	 */
+	private static void parse(InputStream inputStream, WidgetTemplate template,
+			LightXmlParserHandler handler) throws IOException {
+		if (template != null) {
+			template.replay(handler);
+		} else {
+			LightXmlParser.parse(inputStream,
+					KuixConstants.DEFAULT_CHARSET_NAME, handler);
+		}
+	}
+
 	/**
 	 * Parse a CSS <code>inputStream</code> and register extracted {@link Style} to the
 	 * styles list.
@@ -1556,10 +1684,108 @@ public final class Kuix {
 
 			} else {
 				registredStyles.add(style);
+				indexStyle(style);
+			}
+			matchedStyles.clear();
+		}
+	}
+
+	/**
+	 * Index the <code>style</code> by the id, class and tag of its rightmost
+	 * selector. A widget can only match the style if one of them is its own.
+	 * 
+	 * @param style
+	 */
+	private static void indexStyle(Style style) {
+		StyleSelector selector = style.getSelector();
+		styleOrdinals.put(style, new Integer(styleOrdinals.size()));
+		if (selector.hasId()) {
+			addIndexedStyle("#" + selector.getId(), style);
+		}
+		if (selector.hasClass()) {
+			addIndexedStyle("." + selector.getStyleClass(), style);
+		}
+		if (selector.hasTag()) {
+			addIndexedStyle(selector.getTag(), style);
+		}
+	}
+
+	/**
+	 * @param key
+	 * @param style
+	 */
+	private static void addIndexedStyle(String key, Style style) {
+		Vector styles = (Vector) styleIndex.get(key);
+		if (styles == null) {
+			styles = new Vector();
+			styleIndex.put(key, styles);
+		}
+		styles.addElement(style);
+	}
+
+	/**
+	 * Add the indexed styles registred under <code>key</code> to
+	 * <code>candidates</code>, keeping the registration order and skipping
+	 * the styles already present.
+	 * 
+	 * @param key
+	 * @param candidates
+	 */
+	private static void collectIndexedStyles(String key, Vector candidates) {
+		if (key == null) {
+			return;
+		}
+		Vector styles = (Vector) styleIndex.get(key);
+		if (styles == null) {
+			return;
+		}
+		for (int i = 0; i < styles.size(); ++i) {
+			Style style = (Style) styles.elementAt(i);
+			int ordinal = ((Integer) styleOrdinals.get(style)).intValue();
+			int j = candidates.size();
+			for (; j > 0; --j) {
+				Style candidate = (Style) candidates.elementAt(j - 1);
+				int candidateOrdinal = ((Integer) styleOrdinals.get(candidate)).intValue();
+				if (candidateOrdinal <= ordinal) {
+					break;
+				}
+			}
+			if (j == 0 || candidates.elementAt(j - 1) != style) {
+				candidates.insertElementAt(style, j);
 			}
 		}
 	}
 
+	/**
+	 * Returns the signature of everything the style matching reads from
+	 * <code>widget</code> : its tags, id, classes and pseudo classes, and the
+	 * tags, ids and classes of its parents.
+	 * 
+	 * @param widget
+	 * @return The matching signature of the <code>widget</code>
+	 */
+	private static String getStyleSignature(Widget widget) {
+		StringBuffer signature = new StringBuffer();
+		String[] pseudoClasses = widget.getAvailablePseudoClasses();
+		if (pseudoClasses != null) {
+			for (int i = 0; i < pseudoClasses.length; ++i) {
+				signature.append(':').append(pseudoClasses[i]);
+			}
+		}
+		for (Widget currentWidget = widget; currentWidget != null; currentWidget = currentWidget.parent) {
+			signature.append(' ').append(currentWidget.getTag());
+			signature.append('>').append(currentWidget.getInheritedTag());
+			signature.append('#').append(currentWidget.getId());
+			String[] styleClasses = currentWidget.getStyleClasses();
+			if (styleClasses != null) {
+				for (int i = 0; i < styleClasses.length; ++i) {
+					signature.append('.').append(styleClasses[i]);
+				}
+			}
+		}
+		return signature.toString();
+	}
+
 	/**
 	 * Returns the list of {@link Style} associated to the <code>widget</code> or
 	 * <code>null</code> if no style was found.
@@ -1570,112 +1796,157 @@ public final class Kuix {
 	public static Vector getStyles(final Widget widget) {
 		if (widget != null) {
 
-			// Define the filter
-			Filter filter = new Filter() {
-
-				/* (non-Javadoc)
-				 * @see org.kalmeo.util.Filter#accept(java.lang.Object)
-				 */
-				public int accept(Object obj) {
-
-					int score = 0;
-					StyleSelector styleSelector = ((Style) obj).getSelector();
-					Widget currentWidget = widget;
-					while (styleSelector != null) {
-
-						String[] pseudoClasses = widget.getAvailablePseudoClasses();
-						boolean isCompatible = false;
-						while (currentWidget != null && !isCompatible) {
-
-							// Id
-							if (styleSelector.hasId()) {
-								if (currentWidget.getId() != null
-										&& currentWidget.getId().equals(styleSelector.getId())) {
-									isCompatible = true;
-									score += 1000000;
-								}
-							}
+			String signature = getStyleSignature(widget);
+			Vector styles = (Vector) matchedStyles.get(signature);
+			if (styles == null) {
 
-							// Class
-							if (!isCompatible && styleSelector.hasClass()) {
-								String[] styleClasses = currentWidget.getStyleClasses();
-								if (styleClasses != null) {
-									int i = styleClasses.length - 1;
-									for (; i >= 0; --i) {
-										String styleClass = styleClasses[i];
-										if (styleClass != null && styleClass.equals(styleSelector.getStyleClass())) {
-											isCompatible = true;
-											score += 10000;
-											break;
-										}
-									}
-								}
+				// Only the styles indexed by the widget id, classes or tags can match
+				Vector candidates = new Vector();
+				if (widget.getId() != null) {
+					collectIndexedStyles("#" + widget.getId(), candidates);
+				}
+				String[] styleClasses = widget.getStyleClasses();
+				if (styleClasses != null) {
+					for (int i = 0; i < styleClasses.length; ++i) {
+						if (styleClasses[i] != null) {
+							collectIndexedStyles("." + styleClasses[i], candidates);
+						}
+					}
+				}
+				collectIndexedStyles(widget.getTag(), candidates);
+				collectIndexedStyles(widget.getInheritedTag(), candidates);
+
+				// Sort the matching styles by descending score
+				styles = new Vector();
+				Vector scores = new Vector();
+				for (int i = 0; i < candidates.size(); ++i) {
+					Style style = (Style) candidates.elementAt(i);
+					int score = getStyleScore(style, widget);
+					if (score != 0) {
+						int j = 0;
+						for (; j < scores.size(); ++j) {
+							if (score >= ((Integer) scores.elementAt(j)).intValue()) {
+								break;
 							}
+						}
+						scores.insertElementAt(new Integer(score), j);
+						styles.insertElementAt(style, j);
+					}
+				}
 
-							if (styleSelector.hasTag()) {
-
-								// Tag
-								if (!isCompatible && currentWidget.getTag()
-										!= null && currentWidget.getTag().equals(styleSelector.getTag())) {
-									isCompatible = true;
-									score += 100;
-								}
+				if (matchedStyles.size() >= MAX_MATCHED_STYLES) {
+					matchedStyles.clear();
+				}
+				matchedStyles.put(signature, styles);
 
-								// Inherited tag
-								if (!isCompatible && currentWidget.getInheritedTag() != null
-										&& currentWidget.getInheritedTag().
-										equals(styleSelector.getTag())) {
-									isCompatible = true;
-									score++;
-								}
+			}
+			if (widget.getAuthorStyle() != null) {
+				// Insert the author style at the first position of a copy, the matched styles are shared
+				Vector authorStyles = new Vector(styles.size() + 1);
+				authorStyles.addElement(widget.getAuthorStyle());
+				for (int i = 0; i < styles.size(); ++i) {
+					authorStyles.addElement(styles.elementAt(i));
+				}
+				return authorStyles;
+			}
+			return styles;
 
-							}
+		}
+		return null;
+	}
 
-							if (!isCompatible && score == 0) {
-								return 0;
-							}
+	/**
+	 * Returns the matching score of the <code>style</code> for the
+	 * <code>widget</code>, or <code>0</code> if the style does not match.
+	 * 
+	 * @param style
+	 * @param widget
+	 * @return The matching score
+	 */
+	private static int getStyleScore(Style style, Widget widget) {
+		int score = 0;
+		StyleSelector styleSelector = style.getSelector();
+		Widget currentWidget = widget;
+		while (styleSelector != null) {
+
+			String[] pseudoClasses = widget.getAvailablePseudoClasses();
+			boolean isCompatible = false;
+			while (currentWidget != null && !isCompatible) {
+
+				// Id
+				if (styleSelector.hasId()) {
+					if (currentWidget.getId() != null
+							&& currentWidget.getId().equals(styleSelector.getId())) {
+						isCompatible = true;
+						score += 1000000;
+					}
+				}
 
-							// Pseudo class
-							if (styleSelector.hasPseudoClass() && pseudoClasses
-									!= null) {
-								for (int i = pseudoClasses.length - 1; i >= 0; --i) {
-									for (int j =
-											styleSelector.getPseudoClasses().length
-											- 1; j >= 0; --j) {
-										if (pseudoClasses[i].equals(styleSelector.getPseudoClasses()[j])) {
-											isCompatible = true;
-											score += 100000000;
-										}
-									}
-								}
+				// Class
+				if (!isCompatible && styleSelector.hasClass()) {
+					String[] styleClasses = currentWidget.getStyleClasses();
+					if (styleClasses != null) {
+						int i = styleClasses.length - 1;
+						for (; i >= 0; --i) {
+							String styleClass = styleClasses[i];
+							if (styleClass != null && styleClass.equals(styleSelector.getStyleClass())) {
+								isCompatible = true;
+								score += 10000;
+								break;
 							}
-
-							currentWidget = currentWidget.parent;
 						}
+					}
+				}
 
-						styleSelector = styleSelector.parent;
-						if (currentWidget == null && styleSelector != null
-								|| !isCompatible) {
-							return 0;
-						}
+				if (styleSelector.hasTag()) {
+
+					// Tag
+					if (!isCompatible && currentWidget.getTag()
+							!= null && currentWidget.getTag().equals(styleSelector.getTag())) {
+						isCompatible = true;
+						score += 100;
+					}
 
+					// Inherited tag
+					if (!isCompatible && currentWidget.getInheritedTag() != null
+							&& currentWidget.getInheritedTag().
+							equals(styleSelector.getTag())) {
+						isCompatible = true;
+						score++;
 					}
-					return score;
 
 				}
-			};
 
-			Vector styles = registredStyles.findAll(filter);
-			if (widget.getAuthorStyle() != null) {
-				// Insert the author style at the first position
-				styles.insertElementAt(widget.getAuthorStyle(), 0);
+				if (!isCompatible && score == 0) {
+					return 0;
+				}
+
+				// Pseudo class
+				if (styleSelector.hasPseudoClass() && pseudoClasses
+						!= null) {
+					for (int i = pseudoClasses.length - 1; i >= 0; --i) {
+						for (int j =
+								styleSelector.getPseudoClasses().length
+								- 1; j >= 0; --j) {
+							if (pseudoClasses[i].equals(styleSelector.getPseudoClasses()[j])) {
+								isCompatible = true;
+								score += 100000000;
+							}
+						}
+					}
+				}
+
+				currentWidget = currentWidget.parent;
 			}
-			if (styles != null) {
-				return styles;
+
+			styleSelector = styleSelector.parent;
+			if (currentWidget == null && styleSelector != null
+					|| !isCompatible) {
+				return 0;
 			}
 
 		}
-		return null;
+		return score;
 	}
 
 	/**
@@ -1683,6 +1954,9 @@ public final class Kuix {
 	 */
 	public static void removeAllStyles() {
 		registredStyles.removeAll();
+		styleIndex.clear();
+		styleOrdinals.clear();
+		matchedStyles.clear();
 	}
 
 	/**
@@ -95,6 +95,7 @@ public final class KuixCanvas extends GameCanvas {
 	private boolean needToRepaint = false;
 	private final Metrics repaintRegion = new Metrics();
 	private WorkerTask workerTask;
+	private boolean workerTaskPushed = false;
 	
 	// DebugInfos properties
 	private int debugInfosKuixKeyCode = KuixConstants.KUIX_KEY_STAR;
@@ -279,34 +280,40 @@ public final class KuixCanvas extends GameCanvas {
 						
 						// Key events
 						if (!keyEvents.isEmpty()) {
-							synchronized (this) {
-								for (int i = 0; i < keyEvents.size(); ++i) {
-									int[] keyEvent = ((int[]) keyEvents.elementAt(i));
-									FocusManager focusManager = desktop.getCurrentFocusManager();
-									if (focusManager != null && focusManager.processKeyEvent((byte) keyEvent[0], keyEvent[1])) {
-										repaintNextFrame();
-									}
+							int[][] events;
+							synchronized (KuixCanvas.this) {
+								events = new int[keyEvents.size()][];
+								keyEvents.copyInto(events);
+								keyEvents.removeAllElements();
+							}
+							for (int i = 0; i < events.length; ++i) {
+								int[] keyEvent = events[i];
+								FocusManager focusManager = desktop.getCurrentFocusManager();
+								if (focusManager != null && focusManager.processKeyEvent((byte) keyEvent[0], keyEvent[1])) {
+									repaintNextFrame();
 								}
 							}
-							keyEvents.removeAllElements();
 						}
 						
 						// Pointer events
 						if (!pointerEvents.isEmpty()) {
-							synchronized (this) {
-								for (int i = 0; i < pointerEvents.size(); ++i) {
-									int[] pointerEvent = ((int[]) pointerEvents.elementAt(i));
-									FocusManager focusManager = desktop.getCurrentFocusManager();
-									if (focusManager != null && focusManager.processPointerEvent((byte) pointerEvent[0], pointerEvent[1], pointerEvent[2])) {
-										repaintNextFrame();
-									} else if ((byte) pointerEvent[0] == KuixConstants.POINTER_DROPPED_EVENT_TYPE) {
-										if (desktop.getDraggedWidget() != null) {
-											desktop.removeDraggedWidget(true);
-										}
+							int[][] events;
+							synchronized (KuixCanvas.this) {
+								events = new int[pointerEvents.size()][];
+								pointerEvents.copyInto(events);
+								pointerEvents.removeAllElements();
+							}
+							for (int i = 0; i < events.length; ++i) {
+								int[] pointerEvent = events[i];
+								FocusManager focusManager = desktop.getCurrentFocusManager();
+								if (focusManager != null && focusManager.processPointerEvent((byte) pointerEvent[0], pointerEvent[1], pointerEvent[2])) {
+									repaintNextFrame();
+								} else if ((byte) pointerEvent[0] == KuixConstants.POINTER_DROPPED_EVENT_TYPE) {
+									if (desktop.getDraggedWidget() != null) {
+										desktop.removeDraggedWidget(true);
 									}
 								}
 							}
-							pointerEvents.removeAllElements();
 						}
 						
 						// Revalidate if needed
@@ -323,6 +330,13 @@ public final class KuixCanvas extends GameCanvas {
 				
 				}
 				
+				// Remove the task until the next event if nothing is pending (a running transition keeps needToRepaint)
+				synchronized (KuixCanvas.this) {
+					if (!needToChangeSize && !needToRevalidate && !needToRepaint && keyEvents.isEmpty() && pointerEvents.isEmpty()) {
+						workerTaskPushed = false;
+						return true;
+					}
+				}
 				return false;
 			}
 
@@ -335,6 +349,24 @@ public final class KuixCanvas extends GameCanvas {
 		initialized = true;
 		
 		// Push the canvas worker task and then the first revalidate and repaint will be done
+		pushWorkerTask();
+	}
+	
+	/**
+	 * Push the canvas worker task if it is not already in the {@link Worker}
+	 * task list. The task removes itself when no event, revalidation or
+	 * repaint is pending, letting the worker wait for the next one.
+	 */
+	private void pushWorkerTask() {
+		if (workerTask == null) {
+			return;
+		}
+		synchronized (this) {
+			if (workerTaskPushed) {
+				return;
+			}
+			workerTaskPushed = true;
+		}
 		Worker.instance.pushTask(workerTask);
 	}
 
@@ -413,6 +445,7 @@ public final class KuixCanvas extends GameCanvas {
 			needToChangeSize = true;
 			desiredWidth = w;
 			desiredHeight = h;
+			pushWorkerTask();
 			if (!hidded) {
 				revalidateNextFrame();
 			}
@@ -454,6 +487,7 @@ public final class KuixCanvas extends GameCanvas {
 	public void repaintNextFrame(int x, int y, int width, int height) {
 		needToRepaint = true;
 		repaintRegion.add(x, y, width, height);
+		pushWorkerTask();
 	}
 	
 	/**
@@ -782,6 +816,7 @@ public final class KuixCanvas extends GameCanvas {
 		buffer.append("Kuix ").append(KuixConstants.VERSION).append(" (").append(Worker.instance.getFrameDuration()).append("ms)")
 				.append("\ndisplay : ").append(getWidth()).append("x").append(getHeight())
 		 		.append("\nfps : ").append(fps)
+				.append("\nworker busy/idle : ").append(Worker.instance.getBusyTime()).append("/").append(Worker.instance.getIdleTime()).append("ms")
 				.append("\nplatform : ").append(getPlatformName())
 				.append("\ntotalMemory : ").append(totalMemory)
 				.append("\nfreeMemory : ").append(freeMemory)
@@ -840,6 +875,7 @@ public final class KuixCanvas extends GameCanvas {
 			synchronized (this) {
 				keyEvents.addElement(new int[] { type, kuixKeyCode });
 			}
+			pushWorkerTask();
 			
 		}
 	}
@@ -889,6 +925,7 @@ public final class KuixCanvas extends GameCanvas {
 			synchronized (this) {
 				pointerEvents.addElement(new int[] { type, x, y });
 			}
+			pushWorkerTask();
 		}
 	}
 
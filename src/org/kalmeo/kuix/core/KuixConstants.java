@@ -128,6 +128,8 @@ public interface KuixConstants {
 	public static final String SHOW_SCROLL_BAR_ATTRIBUTE = "showscrollbar";
 	public static final String RENDERER_ATTRIBUTE = "renderer";
 	public static final String ITEMS_ATTRIBUTE = "items";
+	public static final String VIRTUAL_ATTRIBUTE = "virtual";
+	public static final String OVERSCAN_ATTRIBUTE = "overscan";
 	public static final String DATAPROVIDER_ATTRIBUTE = "dataprovider";
 	public static final String FOCUS_LOOP_ATTRIBUTE = "focusloop";
 	public static final String CLEAN_UP_WHEN_REMOVED_ATTRIBUTE = "cleanupwhenremoved";
@@ -0,0 +1,190 @@
+/*
+ * This file is part of org.kalmeo.kuix.
+ *
+ * org.kalmeo.kuix is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.kalmeo.kuix is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with org.kalmeo.kuix.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kalmeo.kuix.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import org.kalmeo.kuix.core.style.Style;
+import org.kalmeo.util.xml.LightXmlParser;
+import org.kalmeo.util.xml.LightXmlParserHandler;
+
+/**
+ * An XML UI definition parsed once and kept in memory. Loading a template
+ * replays its elements to the Kuix XML loader without reading and decoding
+ * the XML again, and with the data independent <code>style</code> and
+ * <code>class</code> attributes already converted. Widgets, parse
+ * properties and bind instructions are still created for each load, as
+ * they depend on the {@link org.kalmeo.kuix.core.model.DataProvider}.
+ *
+ * @author mariotaku
+ */
+public final class WidgetTemplate {
+
+	private static final byte START_ELEMENT = 1;
+	private static final byte END_ELEMENT = 2;
+	private static final byte CHARACTERS = 3;
+	private static final byte CDATA = 4;
+
+	// Recorded events
+	private final byte[] types;
+	private final String[] values;
+	private final Hashtable[] attributes;
+
+	// Elements that need a fresh attributes table for each replay
+	private final boolean[] mutableAttributes;
+
+	private WidgetTemplate(Vector events) {
+		int count = events.size() / 3;
+		types = new byte[count];
+		values = new String[count];
+		attributes = new Hashtable[count];
+		mutableAttributes = new boolean[count];
+		for (int i = 0; i < count; ++i) {
+			types[i] = ((Byte) events.elementAt(i * 3)).byteValue();
+			values[i] = (String) events.elementAt(i * 3 + 1);
+			attributes[i] = (Hashtable) events.elementAt(i * 3 + 2);
+			mutableAttributes[i] = attributes[i] != null && attributes[i].containsKey(KuixConstants.PACKAGE_ATTRIBUTE);
+		}
+	}
+
+	/**
+	 * Parse an XML UI definition into a {@link WidgetTemplate}.
+	 *
+	 * @param inputStream
+	 * @return the compiled template
+	 * @throws IllegalArgumentException if the XML is invalid
+	 */
+	public static WidgetTemplate compile(InputStream inputStream) {
+		if (inputStream == null) {
+			throw new IllegalArgumentException("Invalid xml inputStream");
+		}
+		final Vector events = new Vector();
+		try {
+			LightXmlParser.parse(inputStream, KuixConstants.DEFAULT_CHARSET_NAME, new LightXmlParserHandler() {
+
+				public void startDocument() {
+				}
+
+				public void startElement(String name, Hashtable attributes) {
+					Hashtable converted = null;
+					if (attributes != null && !attributes.isEmpty()) {
+						String tag = name.toLowerCase();
+						converted = new Hashtable(attributes.size());
+						Enumeration keys = attributes.keys();
+						while (keys.hasMoreElements()) {
+							String key = (String) keys.nextElement();
+							String attributeName = key.toLowerCase();
+							converted.put(attributeName, convertAttribute(tag, attributeName, (String) attributes.get(key)));
+						}
+					}
+					events.addElement(new Byte(START_ELEMENT));
+					events.addElement(name);
+					events.addElement(converted);
+				}
+
+				public void endElement(String name) {
+					events.addElement(new Byte(END_ELEMENT));
+					events.addElement(name);
+					events.addElement(null);
+				}
+
+				public void characters(String characters, boolean isCDATA) {
+					events.addElement(new Byte(isCDATA ? CDATA : CHARACTERS));
+					events.addElement(characters);
+					events.addElement(null);
+				}
+
+				public void endDocument() {
+				}
+
+			});
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid xml inputStream");
+		}
+		return new WidgetTemplate(events);
+	}
+
+	/**
+	 * Convert the attribute values that do not depend on the data provider.
+	 *
+	 * @param tag
+	 * @param name
+	 * @param value
+	 * @return The converted value, or <code>value</code>
+	 */
+	private static Object convertAttribute(String tag, String name, String value) {
+		if (value.indexOf(KuixConstants.PARSE_PROPERTY_START_PATTERN) != -1) {
+			return value;
+		}
+		KuixConverter converter = Kuix.getConverter();
+		if (KuixConstants.STYLE_ATTRIBUTE.equals(name)) {
+			Style[] styles = converter.convertStyleSheets(tag, value);
+			if (styles.length > 0) {
+				return styles[0];
+			}
+		} else if (KuixConstants.CLASS_ATTRIBUTE.equals(name)) {
+			String[] styleClasses = converter.convertStyleClasses(value);
+			if (styleClasses != null) {
+				return styleClasses;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Replay the template to <code>handler</code>.
+	 *
+	 * @param handler
+	 */
+	void replay(LightXmlParserHandler handler) {
+		handler.startDocument();
+		for (int i = 0; i < types.length; ++i) {
+			switch (types[i]) {
+				case START_ELEMENT: {
+					Hashtable elementAttributes = attributes[i];
+					if (mutableAttributes[i]) {
+						Hashtable copy = new Hashtable(elementAttributes.size());
+						Enumeration keys = elementAttributes.keys();
+						while (keys.hasMoreElements()) {
+							Object key = keys.nextElement();
+							copy.put(key, elementAttributes.get(key));
+						}
+						elementAttributes = copy;
+					}
+					handler.startElement(values[i], elementAttributes);
+					break;
+				}
+				case END_ELEMENT:
+					handler.endElement(values[i]);
+					break;
+				case CHARACTERS:
+					handler.characters(values[i], false);
+					break;
+				case CDATA:
+					handler.characters(values[i], true);
+					break;
+			}
+		}
+		handler.endDocument();
+	}
+
+}
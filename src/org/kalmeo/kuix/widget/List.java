@@ -24,13 +24,19 @@ package org.kalmeo.kuix.widget;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.Hashtable;
+import java.util.Vector;
 
 import org.kalmeo.kuix.core.Kuix;
 import org.kalmeo.kuix.core.KuixConstants;
+import org.kalmeo.kuix.core.WidgetTemplate;
+import org.kalmeo.kuix.core.focus.FocusManager;
 import org.kalmeo.kuix.core.model.DataProvider;
 import org.kalmeo.kuix.layout.InlineLayout;
 import org.kalmeo.kuix.layout.Layout;
 import org.kalmeo.kuix.util.Alignment;
+import org.kalmeo.kuix.util.Insets;
+import org.kalmeo.kuix.util.Metrics;
+import org.kalmeo.util.BooleanUtil;
 import org.kalmeo.util.LinkedList;
 import org.kalmeo.util.LinkedListItem;
 import org.kalmeo.util.LinkedList.LinkedListEnumeration;
@@ -38,6 +44,13 @@ import org.kalmeo.util.LinkedList.LinkedListEnumeration;
 /**
  * This class represents a list. <br>
  * <br>
+ * A <code>virtual</code> list only creates item widgets for the items that
+ * are visible in its {@link ScrollPane}, plus <code>overscan</code> items on
+ * each side. The widgets leaving the visible window are recycled and bound
+ * to the items entering it, so the renderer is parsed once per visible row
+ * instead of once per item. All the items of a virtual list are expected to
+ * have the height of the first one.<br>
+ * <br>
  * <strong>For further informations, visit the <a
  * href="http://www.kalmeo.org/files/kuix/widgetdoc/index.html"
  * target="new">Kuix widgets reference page</a></strong>.
@@ -49,12 +62,45 @@ public class List extends Widget {
 	// Defaults
 	private static final Alignment LIST_ALIGN = Alignment.FILL_TOP;
 	private static final Layout LIST_LAYOUT = new InlineLayout(false, Alignment.FILL);
+	private static final int DEFAULT_OVERSCAN = 2;
 	
 	// Default item widget renderer
 	private ByteArrayInputStream renderer;
 	
+	// The renderer compiled on first use
+	private WidgetTemplate rendererTemplate;
+	
 	// Represent the mapping between DataProviders and ItemWidgets
 	private final Hashtable dataProvidersMapping = new Hashtable();
+	
+	// Virtual mode
+	private boolean virtual = false;
+	private int overscan = DEFAULT_OVERSCAN;
+	
+	// Items of a virtual list (item widgets only exist for the window)
+	private final Vector items = new Vector();
+	
+	// Item widgets removed from the window, ready to be bound again
+	private final Vector spareItemWidgets = new Vector();
+	
+	// Size of a virtual list item, measured on the first item widget
+	private int itemWidth;
+	private int itemHeight;
+	private int measuredPreferredWidth = -1;
+	
+	// Indexes of the items owning an item widget [windowStart, windowEnd[
+	private int windowStart;
+	private int windowEnd;
+	
+	// Indexes of the items to show [visibleStart, visibleEnd[
+	private int visibleStart;
+	private int visibleEnd;
+	
+	// The ScrollPane telling this list when it scrolls
+	private ScrollPane scrollPane;
+	
+	// True while the item widgets are bound, they are placed right after
+	private boolean bindingWindow;
 
 	/**
 	 * Construct a {@link List}
@@ -83,6 +129,14 @@ public class List extends Widget {
 			}
 			return false;
 		}
+		if (KuixConstants.VIRTUAL_ATTRIBUTE.equals(name)) {
+			setVirtual(BooleanUtil.parseBoolean(value));
+			return true;
+		}
+		if (KuixConstants.OVERSCAN_ATTRIBUTE.equals(name)) {
+			setOverscan(Integer.parseInt(value));
+			return true;
+		}
 		return super.setAttribute(name, value);
 	}
 	
@@ -138,6 +192,75 @@ public class List extends Widget {
 	 */
 	public void setRenderer(ByteArrayInputStream renderer) {
 		this.renderer = renderer;
+		rendererTemplate = null;
+	}
+
+	/**
+	 * @return the renderer compiled as a {@link WidgetTemplate}, or
+	 *         <code>null</code> if no renderer is set
+	 */
+	private WidgetTemplate getRendererTemplate() {
+		if (rendererTemplate == null && renderer != null) {
+			renderer.reset();
+			rendererTemplate = WidgetTemplate.compile(renderer);
+		}
+		return rendererTemplate;
+	}
+
+	/**
+	 * @return <code>true</code> if only the visible items own an item widget
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Switch the virtual mode. Existing items are removed.
+	 * 
+	 * @param virtual
+	 */
+	public void setVirtual(boolean virtual) {
+		if (this.virtual != virtual) {
+			removeAllItems();
+			this.virtual = virtual;
+			if (!virtual) {
+				setScrollPane(null);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of item widgets kept on each side of the visible
+	 *         window
+	 */
+	public int getOverscan() {
+		return overscan;
+	}
+
+	/**
+	 * @param overscan the number of item widgets kept on each side of the
+	 *            visible window
+	 */
+	public void setOverscan(int overscan) {
+		this.overscan = Math.max(0, overscan);
+		invalidate();
+	}
+
+	/**
+	 * Replace the items of a virtual list, keeping its item widgets to be
+	 * bound again.
+	 * 
+	 * @param itemsEnumeration
+	 */
+	private void reloadItems(LinkedListEnumeration itemsEnumeration) {
+		items.removeAllElements();
+		if (itemsEnumeration != null) {
+			itemsEnumeration.reset();
+			while (itemsEnumeration.hasNextItems()) {
+				items.addElement(itemsEnumeration.nextItem());
+			}
+		}
+		invalidate();
 	}
 
 	/**
@@ -198,15 +321,31 @@ public class List extends Widget {
 	}
 	
 	/**
-	 * Add an item value near an other.
+	 * Add an item value near an other. The items of a virtual list are all
+	 * rendered with the list renderer.
 	 * 
 	 * @param item
 	 * @param renderer
 	 * @param referenceItem
 	 * @param after
 	 * @return The added {@link Widget}
+	 * @throws IllegalArgumentException if the list is virtual and
+	 *             <code>renderer</code> is not the list renderer
 	 */
 	public Widget addItem(DataProvider item, InputStream renderer, DataProvider referenceItem, boolean after) {
+		if (virtual) {
+			if (renderer != null && renderer != this.renderer) {
+				throw new IllegalArgumentException("Virtual list items use the list renderer");
+			}
+			int index = referenceItem != null ? items.indexOf(referenceItem) : -1;
+			if (index == -1) {
+				items.addElement(item);
+			} else {
+				items.insertElementAt(item, after ? index + 1 : index);
+			}
+			invalidate();
+			return getItemWidget(item);
+		}
 		return internalAddItem(item, renderer, referenceItem != null ? getItemWidget(referenceItem) : null, after);
 	}
 	
@@ -220,7 +359,13 @@ public class List extends Widget {
 	 * @return The added {@link Widget}
 	 */
 	private Widget internalAddItem(DataProvider item, InputStream renderer, Widget referenceWidget, boolean after) {
-		Widget itemWidget = Kuix.loadWidget(renderer, item);
+		Widget itemWidget;
+		if (renderer != null && renderer == this.renderer) {
+			// The list renderer is instantiated from its template
+			itemWidget = Kuix.loadWidget(getRendererTemplate(), item);
+		} else {
+			itemWidget = Kuix.loadWidget(renderer, item);
+		}
 		itemWidget.setDataProvider(item);
 		if (referenceWidget != null) {
 			add(itemWidget, referenceWidget, after);
@@ -239,6 +384,13 @@ public class List extends Widget {
 	 *         associated item widget removed
 	 */
 	public boolean removeItem(DataProvider item) {
+		if (virtual) {
+			if (items.removeElement(item)) {
+				invalidate();
+				return true;
+			}
+			return false;
+		}
 		Widget itemWidget = getItemWidget(item);
 		internalRemoveItem(itemWidget);
 		return itemWidget != null;
@@ -264,18 +416,327 @@ public class List extends Widget {
 		cleanUpChildren();
 		removeAll();
 		dataProvidersMapping.clear();
+		items.removeAllElements();
+		for (int i = spareItemWidgets.size() - 1; i >= 0; --i) {
+			((Widget) spareItemWidgets.elementAt(i)).cleanUp();
+		}
+		spareItemWidgets.removeAllElements();
+		itemHeight = 0;
+		measuredPreferredWidth = -1;
+		windowStart = windowEnd = 0;
 	}
 	
 	/**
 	 * @param item
 	 * @return The item {@link Widget} associated with the specified
-	 *         {@link DataProvider}. If no item is found <code>null</code> is
+	 *         {@link DataProvider}. If no item is found, or if the item is
+	 *         outside of the window of a virtual list, <code>null</code> is
 	 *         returned
 	 */
 	public Widget getItemWidget(DataProvider item) {
 		return (Widget) dataProvidersMapping.get(item);
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.kalmeo.kuix.widget.Widget#getPreferredSize(int)
+	 */
+	public Metrics getPreferredSize(int preferredWidth) {
+		if (!virtual) {
+			return super.getPreferredSize(preferredWidth);
+		}
+		Metrics metrics = getCachedMetrics();
+		if (isInvalidated() || preferredWidth != measuredPreferredWidth) {
+			Insets insets = getInsets();
+			Metrics minSize = getMinSize();
+			measureItem(preferredWidth - insets.left - insets.right);
+			metrics.width = insets.left + Math.max(minSize.width, itemWidth) + insets.right;
+			metrics.height = insets.top + Math.max(minSize.height, items.size() * itemHeight) + insets.bottom;
+			measuredPreferredWidth = preferredWidth;
+		}
+		return metrics;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.kalmeo.kuix.widget.Widget#doLayout()
+	 */
+	protected void doLayout() {
+		if (!virtual) {
+			super.doLayout();
+			return;
+		}
+		markAsValidate();
+		updateVisibleRange();
+		bindingWindow = true;
+		try {
+			bindWindow(visibleStart, visibleEnd);
+		} finally {
+			bindingWindow = false;
+		}
+		placeWindow();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.kalmeo.kuix.widget.Widget#invalidate(org.kalmeo.kuix.widget.Widget)
+	 */
+	protected void invalidate(Widget fromWidget) {
+		if (!bindingWindow) {
+			super.invalidate(fromWidget);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.kalmeo.kuix.widget.Widget#onRemoved(org.kalmeo.kuix.widget.Widget)
+	 */
+	protected void onRemoved(Widget parent) {
+		setScrollPane(null);
+		super.onRemoved(parent);
+	}
+
+	/**
+	 * Called by the {@link ScrollPane} of a virtual list when its offset
+	 * changes. The list is laid out again if other items become visible.
+	 * 
+	 * @param scrollPane
+	 */
+	void onScrolled(ScrollPane scrollPane) {
+		if (!virtual || isInvalidated()) {
+			return;
+		}
+		updateVisibleRange();
+		if (visibleStart != windowStart || visibleEnd != windowEnd) {
+			// Invalidated by the scroll pane, so it does not auto scroll
+			invalidate(scrollPane);
+		}
+	}
+
+	private void setScrollPane(ScrollPane scrollPane) {
+		if (this.scrollPane != scrollPane) {
+			if (this.scrollPane != null) {
+				this.scrollPane.removeVirtualList(this);
+			}
+			this.scrollPane = scrollPane;
+			if (scrollPane != null) {
+				scrollPane.addVirtualList(this);
+			}
+		}
+	}
+
+	/**
+	 * Measure the virtual items on the first one.
+	 * 
+	 * @param innerPreferredWidth
+	 */
+	private void measureItem(int innerPreferredWidth) {
+		if (items.isEmpty()) {
+			itemWidth = itemHeight = 0;
+			return;
+		}
+		Widget itemWidget = getChild();
+		if (itemWidget == null) {
+			DataProvider firstItem = (DataProvider) items.firstElement();
+			itemWidget = obtainItemWidget(firstItem);
+			if (itemWidget == null) {
+				itemWidth = itemHeight = 0;
+				return;
+			}
+			add(itemWidget);
+			dataProvidersMapping.put(firstItem, itemWidget);
+			windowStart = 0;
+			windowEnd = 1;
+		}
+		Metrics itemSize = itemWidget.getPreferredSize(innerPreferredWidth);
+		itemWidth = itemSize.width;
+		itemHeight = itemSize.height;
+	}
+
+	/**
+	 * Compute the indexes of the items to show, from the offset of the
+	 * {@link ScrollPane}.
+	 */
+	private void updateVisibleRange() {
+		int count = items.size();
+		int start = 0;
+		int end = count;
+		if (itemHeight > 0) {
+			Insets insets = getInsets();
+			int top = 0;
+			int bottom = getHeight();
+			ScrollPane pane = null;
+			Widget container = null;
+			for (Widget widget = parent; widget != null; widget = widget.parent) {
+				if (widget instanceof ScrollPane) {
+					pane = (ScrollPane) widget;
+					break;
+				}
+				container = widget;
+			}
+			setScrollPane(pane);
+			if (pane != null && !pane.isHorizontal() && container == pane.getContainer()) {
+				// Position of this list in the scrolled content
+				int y = getY() - container.getInsets().top;
+				for (Widget widget = parent; widget != container; widget = widget.parent) {
+					y += widget.getY();
+				}
+				top = pane.getYOffset() - y;
+				bottom = top + container.getInnerHeight();
+			}
+			start = Math.max(0, (top - insets.top) / itemHeight - overscan);
+			end = Math.min(count, (bottom - insets.top + itemHeight - 1) / itemHeight + overscan);
+			if (start >= end) {
+				start = end = Math.min(start, count);
+			}
+		} else {
+			end = Math.min(count, 1);
+		}
+		visibleStart = start;
+		visibleEnd = end;
+	}
+
+	/**
+	 * Make the children be the item widgets of the items [start, end[ in
+	 * order. Widgets already bound to one of these items are kept, the others
+	 * are bound again to the items that need one.
+	 * 
+	 * @param start
+	 * @param end
+	 */
+	private void bindWindow(int start, int end) {
+		
+		// Collect item widgets that are no more in the window
+		Vector freeItemWidgets = null;
+		for (Widget widget = getChild(); widget != null; widget = widget.next) {
+			DataProvider item = widget.getDataProvider();
+			int index = item != null ? items.indexOf(item, start) : -1;
+			if (index == -1 || index >= end) {
+				if (freeItemWidgets == null) {
+					freeItemWidgets = new Vector();
+				}
+				freeItemWidgets.addElement(widget);
+			}
+		}
+		if (freeItemWidgets != null) {
+			
+			// The focus can't follow a recycled widget
+			FocusManager focusManager = getFocusManager();
+			Widget focusedItemWidget = focusManager != null ? focusManager.getFocusedWidget() : null;
+			while (focusedItemWidget != null && focusedItemWidget.parent != this) {
+				focusedItemWidget = focusedItemWidget.parent;
+			}
+			if (focusedItemWidget != null && freeItemWidgets.contains(focusedItemWidget)) {
+				focusManager.requestFocus(null);
+			}
+			
+			for (int i = freeItemWidgets.size() - 1; i >= 0; --i) {
+				dataProvidersMapping.remove(((Widget) freeItemWidgets.elementAt(i)).getDataProvider());
+			}
+		}
+		
+		// Bind and order item widgets
+		Widget previousWidget = null;
+		int index;
+		for (index = start; index < end; ++index) {
+			DataProvider item = (DataProvider) items.elementAt(index);
+			Widget itemWidget = getItemWidget(item);
+			if (itemWidget == null) {
+				if (freeItemWidgets != null && !freeItemWidgets.isEmpty()) {
+					itemWidget = (Widget) freeItemWidgets.lastElement();
+					freeItemWidgets.removeElementAt(freeItemWidgets.size() - 1);
+					rebind(itemWidget, itemWidget.getDataProvider(), item);
+				} else {
+					itemWidget = obtainItemWidget(item);
+					if (itemWidget == null) {
+						break;
+					}
+				}
+				dataProvidersMapping.put(item, itemWidget);
+			}
+			if (itemWidget.parent != this) {
+				if (previousWidget == null) {
+					add(itemWidget, getChild(), false);
+				} else {
+					add(itemWidget, previousWidget, true);
+				}
+			} else if (previousWidget == null) {
+				bringToFront(itemWidget);
+			} else {
+				bringNear(itemWidget, previousWidget, true);
+			}
+			previousWidget = itemWidget;
+		}
+		
+		// Keep the remaining widgets for later
+		if (freeItemWidgets != null) {
+			for (int i = freeItemWidgets.size() - 1; i >= 0; --i) {
+				Widget widget = (Widget) freeItemWidgets.elementAt(i);
+				widget.remove();
+				spareItemWidgets.addElement(widget);
+			}
+		}
+		
+		windowStart = start;
+		windowEnd = index;
+	}
+
+	/**
+	 * Set the bounds of the window item widgets.
+	 */
+	private void placeWindow() {
+		Insets insets = getInsets();
+		int width = getWidth() - insets.left - insets.right;
+		int y = insets.top + windowStart * itemHeight;
+		for (Widget widget = getChild(); widget != null; widget = widget.next) {
+			widget.setBounds(insets.left, y, width, itemHeight);
+			y += itemHeight;
+		}
+	}
+
+	/**
+	 * Returns an item widget bound to <code>item</code>, recycled from the
+	 * spare item widgets if possible.
+	 * 
+	 * @param item
+	 * @return the item widget or <code>null</code> if no renderer is available
+	 */
+	private Widget obtainItemWidget(DataProvider item) {
+		if (!spareItemWidgets.isEmpty()) {
+			Widget itemWidget = (Widget) spareItemWidgets.lastElement();
+			spareItemWidgets.removeElementAt(spareItemWidgets.size() - 1);
+			rebind(itemWidget, itemWidget.getDataProvider(), item);
+			return itemWidget;
+		}
+		WidgetTemplate template = getRendererTemplate();
+		if (template == null) {
+			return null;
+		}
+		Widget itemWidget = Kuix.loadWidget(template, item);
+		itemWidget.setDataProvider(item);
+		return itemWidget;
+	}
+
+	/**
+	 * Move the <code>widget</code> tree bindings from <code>oldItem</code>
+	 * to <code>newItem</code>.
+	 * 
+	 * @param widget
+	 * @param oldItem
+	 * @param newItem
+	 */
+	private static void rebind(Widget widget, DataProvider oldItem, DataProvider newItem) {
+		if (widget.getDataProvider() == oldItem) {
+			if (widget.hasBindInstruction()) {
+				if (oldItem != null) {
+					oldItem.unbind(widget);
+				}
+				newItem.bind(widget);
+			} else {
+				widget.setDataProvider(newItem);
+			}
+		}
+		for (Widget child = widget.getChild(); child != null; child = child.next) {
+			rebind(child, oldItem, newItem);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see org.kalmeo.kuix.widget.Widget#processItemsModelUpdateEvent(byte, java.lang.String, org.kalmeo.kuix.core.model.DataProvider, org.kalmeo.util.LinkedList.LinkedListEnumeration)
 	 */
@@ -303,6 +764,11 @@ public class List extends Widget {
 
 						case DataProvider.SORT_MODEL_UPDATE_EVENT_TYPE: {
 							
+							if (virtual) {
+								reloadItems(itemsEnumeration);
+								return true;
+							}
+							
 							// Reorder item widgets
 							
 							Widget previousItemWidget = null;
@@ -327,6 +793,11 @@ public class List extends Widget {
 							
 						case DataProvider.FILTER_MODEL_UPDATE_EVENT_TYPE: {
 							
+							if (virtual) {
+								reloadItems(itemsEnumeration);
+								return true;
+							}
+							
 							itemsEnumeration.reset();
 							if (itemsEnumeration.hasNextItems()) {
 								
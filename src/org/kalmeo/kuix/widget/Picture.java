@@ -72,7 +72,6 @@ public class Picture extends Widget {
 	
 	// Internal use
 	private boolean needToResetSprite = true;
-	private long lastFrameTime;
 	
 	/**
 	 * Construct a {@link Picture}
@@ -352,7 +351,6 @@ public class Picture extends Widget {
 				if (animationWorkerTask == null) {
 					
 					// Init animation on first frame
-					lastFrameTime = 0;
 					sprite.setFrame(0);
 					
 					animationWorkerTask = new WorkerTask() {
@@ -362,14 +360,10 @@ public class Picture extends Widget {
 						 */
 						public boolean run() {
 							
+							// The worker runs the task once per frameDuration
 							if (isVisible()) {
-								if (lastFrameTime == 0) {
-									lastFrameTime = System.currentTimeMillis();
-								} else if (System.currentTimeMillis() - lastFrameTime > frameDuration) {
-									lastFrameTime = System.currentTimeMillis();
-									sprite.nextFrame();
-									invalidateAppearance();
-								}
+								sprite.nextFrame();
+								invalidateAppearance();
 							}
 							
 							// Remove the WorkerTask if the widget is not in the widget tree
@@ -381,7 +375,7 @@ public class Picture extends Widget {
 						}
 						
 					};
-					Worker.instance.pushTask(animationWorkerTask);
+					Worker.instance.pushTask(animationWorkerTask, frameDuration);
 				}
 			}
 			
@@ -21,6 +21,7 @@
 
 package org.kalmeo.kuix.widget;
 
+import java.util.Vector;
 import javax.microedition.lcdui.Graphics;
 
 import org.kalmeo.kuix.core.KuixConstants;
@@ -67,6 +68,9 @@ public class ScrollPane extends Widget {
 	// offsets
 	private int xOffset = 0;
 	private int yOffset = 0;
+	
+	// Virtual lists in the content, told when the offset changes
+	private final Vector virtualLists = new Vector();
 
 	// Internal use
 	private int innerWidth;
@@ -369,18 +373,36 @@ public class ScrollPane extends Widget {
 		return scrollBar;
 	}
 
+	/**
+	 * @return the current horizontal scroll offset of the content
+	 */
+	public int getXOffset() {
+		return xOffset;
+	}
+
+	/**
+	 * @return the current vertical scroll offset of the content
+	 */
+	public int getYOffset() {
+		return yOffset;
+	}
+
 	/**
 	 * @param xOffset the xOffset to set
 	 * @return <code>true</code> if the xOffset value has changed
 	 */
 	private boolean setXOffset(int xOffset) {
+		int lastXOffset = this.xOffset;
 		if (contentWidth <= innerWidth) {
 			this.xOffset = 0;
+		} else {
+			this.xOffset = Math.max(0, Math.min(contentWidth - innerWidth, xOffset));
+		}
+		if (lastXOffset != this.xOffset) {
+			fireScrolled();
 			return true;
 		}
-		int lastXOffset = this.xOffset;
-		this.xOffset = Math.max(0, Math.min(contentWidth - innerWidth, xOffset));
-		return lastXOffset != this.xOffset;
+		return contentWidth <= innerWidth;
 	}
 
 	/**
@@ -388,13 +410,45 @@ public class ScrollPane extends Widget {
 	 * @return <code>true</code> if the yOffset value has changed
 	 */
 	private boolean setYOffset(int yOffset) {
+		int lastYOffset = this.yOffset;
 		if (contentHeight <= innerHeight) {
 			this.yOffset = 0;
+		} else {
+			this.yOffset = Math.max(0, Math.min(contentHeight - innerHeight, yOffset));
+		}
+		if (lastYOffset != this.yOffset) {
+			fireScrolled();
 			return true;
 		}
-		int lastYOffset = this.yOffset;
-		this.yOffset = Math.max(0, Math.min(contentHeight - innerHeight, yOffset));
-		return lastYOffset != this.yOffset;
+		return contentHeight <= innerHeight;
+	}
+	
+	/**
+	 * Register a virtual {@link List} of the content, to be told when the
+	 * offset changes.
+	 * 
+	 * @param list
+	 */
+	void addVirtualList(List list) {
+		if (!virtualLists.contains(list)) {
+			virtualLists.addElement(list);
+		}
+	}
+	
+	/**
+	 * @param list
+	 */
+	void removeVirtualList(List list) {
+		virtualLists.removeElement(list);
+	}
+	
+	/**
+	 * Tell the virtual lists that the offset has changed.
+	 */
+	private void fireScrolled() {
+		for (int i = virtualLists.size() - 1; i >= 0; --i) {
+			((List) virtualLists.elementAt(i)).onScrolled(this);
+		}
 	}
 	
 	/* (non-Javadoc)
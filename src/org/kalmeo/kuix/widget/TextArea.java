@@ -29,10 +29,11 @@ import javax.microedition.lcdui.Font;
 import javax.microedition.lcdui.Graphics;
 
 import org.kalmeo.kuix.core.KuixConstants;
-import org.kalmeo.kuix.layout.FlowLayout;
 import org.kalmeo.kuix.layout.Layout;
 import org.kalmeo.kuix.util.Alignment;
+import org.kalmeo.kuix.util.Color;
 import org.kalmeo.kuix.util.Gap;
+import org.kalmeo.kuix.util.Insets;
 import org.kalmeo.kuix.util.Metrics;
 import org.kalmeo.util.BooleanUtil;
 import org.kalmeo.util.xml.LightXmlParser;
@@ -41,6 +42,10 @@ import org.kalmeo.util.xml.LightXmlParserHandler;
 /**
  * This class represents a textarea. <br>
  * <br>
+ * The text is split into words that are measured, broken into lines and
+ * painted by the textarea itself. Only hyperlinks and images are child
+ * widgets. <br>
+ * <br>
  * <strong>For further informations, visit the <a
  * href="http://www.kalmeo.org/files/kuix/widgetdoc/index.html"
  * target="new">Kuix widgets reference page</a></strong>.
@@ -49,8 +54,55 @@ import org.kalmeo.util.xml.LightXmlParserHandler;
  */
 public class TextArea extends TextWidget {
 
+	/**
+	 * This class hold a word, an inline widget or a line break
+	 */
+	private static class Token {
+		
+		// Word font style and characters
+		public int style;
+		public int start;
+		public int length;
+		
+		// Inline widget
+		public Widget widget;
+		
+		// Line break
+		public boolean isBreak;
+		
+		// Measured size
+		public int width;
+		public int height;
+		
+		// Line and position in the line
+		public int line;
+		public int lineX;
+		
+		// Position in the textarea
+		public int x;
+		public int y;
+		
+	}
+	
 	// Defaults
-	private static final Layout TEXTAREA_DEFAULT_LAYOUT = new FlowLayout(Alignment.BOTTOM);
+	private static final Layout TEXTAREA_DEFAULT_LAYOUT = new Layout() {
+
+		/* (non-Javadoc)
+		 * @see org.kalmeo.kuix.layout.Layout#measurePreferredSize(org.kalmeo.kuix.widget.Widget, int, org.kalmeo.kuix.util.Metrics)
+		 */
+		public void measurePreferredSize(Widget target, int preferredWidth, Metrics metrics) {
+			((TextArea) target).measurePreferredSize(preferredWidth, metrics);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.kalmeo.kuix.layout.Layout#doLayout(org.kalmeo.kuix.widget.Widget)
+		 */
+		public void doLayout(Widget target) {
+			((TextArea) target).layoutTokens();
+		}
+		
+	};
+	private static final Alignment LINE_ALIGNMENT = Alignment.BOTTOM;
 
 	// Indicate is the text input need to be parse to extract HTML style tags during reflow 
 	private boolean styled = false;
@@ -58,8 +110,30 @@ public class TextArea extends TextWidget {
 	// Indicate if the textArea need to be reflow before next getPreferredSize call
 	private boolean needToReflow;
 	
+	// The words characters
+	private char[] chars = new char[0];
+	private int charsLength;
+	
+	// The tokens (Token instances are reused by the next reflow)
+	private Token[] tokens = new Token[0];
+	private int tokenCount;
+	private boolean hasWidgetTokens;
+	
+	// Indicate if the words need to be measured before the next line breaking
+	private boolean needToMeasure;
+	
+	// The lines computed for lineBreakWidth
+	private int lineBreakWidth = -1;
+	private int lineCount;
+	private int[] lineWidths = new int[0];
+	private int[] lineHeights = new int[0];
+	private int[] lineYs = new int[0];
+	private int contentWidth;
+	private int contentHeight;
+	
 	// The cached objects
 	private Gap cachedGap;
+	private Font[] cachedFonts;
 	
 	/**
 	 * Construct a {@link TextArea}
@@ -102,6 +176,7 @@ public class TextArea extends TextWidget {
 	public void setStyled(boolean styled) {
 		this.styled = styled;
 		needToReflow = true;
+		invalidate();
 	}
 
 	/* (non-Javadoc)
@@ -130,6 +205,23 @@ public class TextArea extends TextWidget {
 		}
 		return cachedGap;
 	}
+	
+	/**
+	 * @param style
+	 * @return The font of the words with the <code>style</code> font style
+	 */
+	private Font getFont(int style) {
+		if (cachedFonts == null) {
+			cachedFonts = new Font[(Font.STYLE_BOLD | Font.STYLE_ITALIC | Font.STYLE_UNDERLINED) + 1];
+		}
+		Font font = cachedFonts[style];
+		if (font == null) {
+			Font baseFont = getFont();
+			font = Font.getFont(baseFont.getFace(), baseFont.getStyle() | style, baseFont.getSize());
+			cachedFonts[style] = font;
+		}
+		return font;
+	}
 
 	/* (non-Javadoc)
 	 * @see org.kalmeo.kuix.widget.Widget#paintChildrenImpl(javax.microedition.lcdui.Graphics)
@@ -137,9 +229,19 @@ public class TextArea extends TextWidget {
 	protected void paintChildrenImpl(Graphics g) {
 		int minY = g.getClipY();
 		int maxY = minY + g.getClipHeight();
-		for (Widget widget = getChild(); widget != null; widget = widget.next) {
-			if (widget.getY() + widget.getHeight() >= minY && widget.getY() < maxY) {	// Optimized children paint if in scrollContainer
-				widget.paintImpl(g);
+		Color color = getColor();
+		int rgb = color != null ? color.getRGB() : 0x000000;
+		for (int i = 0; i < tokenCount; ++i) {
+			Token token = tokens[i];
+			if (token.isBreak || token.y + token.height < minY || token.y >= maxY) {	// Optimized paint if in scrollContainer
+				continue;
+			}
+			if (token.widget != null) {
+				token.widget.paintImpl(g);
+			} else {
+				g.setColor(rgb);
+				g.setFont(getFont(token.style));
+				g.drawChars(chars, token.start, token.length, token.x, token.y, 0);
 			}
 		}
 	}
@@ -149,6 +251,9 @@ public class TextArea extends TextWidget {
 	 */
 	public void clearCachedStyle(boolean clearCachedStyle) {
 		cachedGap = null;
+		cachedFonts = null;
+		needToMeasure = true;
+		lineBreakWidth = -1;
 		super.clearCachedStyle(clearCachedStyle);
 	}
 
@@ -160,11 +265,222 @@ public class TextArea extends TextWidget {
 	}
 	
 	/**
-	 * Construct all Text child according to the text input ans styled option
+	 * Measure the preferred size of the text broken into lines of
+	 * <code>preferredWidth</code>.
+	 * 
+	 * @param preferredWidth
+	 * @param metrics
+	 */
+	private void measurePreferredSize(int preferredWidth, Metrics metrics) {
+		Insets insets = getInsets();
+		Metrics minSize = getMinSize();
+		breakLines(preferredWidth - insets.left - insets.right);
+		metrics.width = insets.left + Math.max(minSize.width, contentWidth) + insets.right;
+		metrics.height = insets.top + Math.max(minSize.height, contentHeight) + insets.bottom;
+	}
+	
+	/**
+	 * Break the text into lines of the current width and place the tokens.
+	 */
+	private void layoutTokens() {
+		if (needToReflow) {
+			reflow();
+		}
+		
+		Insets insets = getInsets();
+		int width = getWidth() - insets.left - insets.right;
+		int height = getHeight() - insets.top - insets.bottom;
+		breakLines(width);
+		
+		Alignment alignment = getAlign();
+		int x = insets.left;
+		int y = insets.top;
+		if (alignment != null) {
+			x += alignment.alignX(width, contentWidth);
+			y += alignment.alignY(height, contentHeight);
+		}
+		for (int i = 0; i < tokenCount; ++i) {
+			Token token = tokens[i];
+			if (token.isBreak) {
+				continue;
+			}
+			int line = token.line;
+			token.x = x + token.lineX;
+			if (alignment != null) {
+				token.x += alignment.alignX(contentWidth, lineWidths[line]);
+			}
+			token.y = y + lineYs[line] + LINE_ALIGNMENT.alignY(lineHeights[line], token.height);
+			if (token.widget != null) {
+				token.widget.setBounds(token.x, token.y, token.width, token.height);
+			}
+		}
+	}
+	
+	/**
+	 * Compute the line breaks for <code>width</code>. The words are only
+	 * measured after a text or style change and the lines are only computed
+	 * again if the width changed, or if an inline widget could have been
+	 * resized.
+	 * 
+	 * @param width
+	 */
+	private void breakLines(int width) {
+		if (needToMeasure) {
+			for (int i = 0; i < tokenCount; ++i) {
+				Token token = tokens[i];
+				if (!token.isBreak && token.widget == null) {
+					Font font = getFont(token.style);
+					token.width = font.charsWidth(chars, token.start, token.length);
+					token.height = font.getHeight();
+				}
+			}
+			needToMeasure = false;
+			lineBreakWidth = -1;
+		}
+		if (width == lineBreakWidth && !hasWidgetTokens) {
+			return;
+		}
+		lineBreakWidth = width;
+		
+		Gap gap = getGap();
+		if (lineWidths.length < tokenCount + 1) {
+			lineWidths = new int[tokenCount + 1];
+			lineHeights = new int[tokenCount + 1];
+			lineYs = new int[tokenCount + 1];
+		}
+		lineCount = 0;
+		contentWidth = 0;
+		contentHeight = 0;
+		int lineWidth = 0;
+		int lineHeight = 0;
+		for (int i = 0; i < tokenCount; ++i) {
+			Token token = tokens[i];
+			if (!token.isBreak) {
+				if (token.widget != null) {
+					Metrics preferredSize = token.widget.getPreferredSize(width);
+					token.width = preferredSize.width;
+					token.height = preferredSize.height;
+				}
+				if (lineWidth == 0 || lineWidth + gap.horizontalGap + token.width <= width) {
+					token.lineX = lineWidth == 0 ? 0 : lineWidth + gap.horizontalGap;
+					token.line = lineCount;
+					lineWidth = token.lineX + token.width;
+					lineHeight = Math.max(lineHeight, token.height);
+					continue;
+				}
+			}
+			
+			// Close the current line
+			addLine(lineWidth, lineHeight, gap);
+			lineWidth = 0;
+			lineHeight = 0;
+			if (!token.isBreak) {
+				token.lineX = 0;
+				token.line = lineCount;
+				lineWidth = token.width;
+				lineHeight = token.height;
+			}
+		}
+		if (lineWidth != 0 || lineHeight != 0) {
+			addLine(lineWidth, lineHeight, gap);
+		}
+	}
+	
+	/**
+	 * @param lineWidth
+	 * @param lineHeight
+	 * @param gap
+	 */
+	private void addLine(int lineWidth, int lineHeight, Gap gap) {
+		if (lineCount != 0) {
+			contentHeight += gap.verticalGap;
+		}
+		lineWidths[lineCount] = lineWidth;
+		lineHeights[lineCount] = lineHeight;
+		lineYs[lineCount] = contentHeight;
+		lineCount++;
+		contentWidth = Math.max(contentWidth, lineWidth);
+		contentHeight += lineHeight;
+	}
+	
+	/**
+	 * @return a cleared {@link Token} added at the end of the tokens
+	 */
+	private Token addToken() {
+		if (tokenCount == tokens.length) {
+			Token[] newTokens = new Token[Math.max(16, tokenCount * 2)];
+			System.arraycopy(tokens, 0, newTokens, 0, tokenCount);
+			tokens = newTokens;
+		}
+		Token token = tokens[tokenCount];
+		if (token == null) {
+			token = new Token();
+			tokens[tokenCount] = token;
+		}
+		tokenCount++;
+		token.widget = null;
+		token.isBreak = false;
+		token.width = 0;
+		token.height = 0;
+		return token;
+	}
+	
+	/**
+	 * Add a line break
+	 */
+	private void addBreak() {
+		addToken().isBreak = true;
+	}
+	
+	/**
+	 * Add an inline widget
+	 * 
+	 * @param widget
+	 */
+	private void addWidget(Widget widget) {
+		addToken().widget = widget;
+		hasWidgetTokens = true;
+		add(widget);
+	}
+	
+	/**
+	 * Add the <code>fullText</code> characters between
+	 * <code>beginIndex</code> and <code>endIndex</code> as a word
+	 * 
+	 * @param fullText
+	 * @param beginIndex
+	 * @param endIndex
+	 * @param style
+	 */
+	private void addWord(String fullText, int beginIndex, int endIndex, int style) {
+		int length = endIndex - beginIndex;
+		if (charsLength + length > chars.length) {
+			char[] newChars = new char[Math.max(charsLength + length, chars.length * 2)];
+			System.arraycopy(chars, 0, newChars, 0, charsLength);
+			chars = newChars;
+		}
+		fullText.getChars(beginIndex, endIndex, chars, charsLength);
+		Token token = addToken();
+		token.style = style;
+		token.start = charsLength;
+		token.length = length;
+		charsLength += length;
+	}
+	
+	/**
+	 * Construct the tokens according to the text input ans styled option
 	 */
 	private void reflow() {
 		needToReflow = false;
+		needToMeasure = true;
+		lineBreakWidth = -1;
 		removeAll();
+		for (int i = 0; i < tokenCount; ++i) {
+			tokens[i].widget = null;
+		}
+		tokenCount = 0;
+		charsLength = 0;
+		hasWidgetTokens = false;
 		
 		if (text == null || text.length() == 0) {
 			return;
@@ -214,7 +530,7 @@ public class TextArea extends TextWidget {
 						Object attribute = attributes.get(KuixConstants.IMAGE_TAG_SRC_ATTRIBUTE);
 						if (attribute != null) {
 							Picture picture = new Picture().setSource((String) attribute);
-							add(picture);
+							addWidget(picture);
 						}
 					}
 				}
@@ -237,18 +553,18 @@ public class TextArea extends TextWidget {
 							hyperlink.setOnAction("goUrl(" + lastHref + ")");
 							lastHref = null;
 						}
-						add(hyperlink);
+						addWidget(hyperlink);
 						lastCharacters = null;
 					} else {
 						processLastCharacters();
 						if (KuixConstants.BREAD_RETURN_TAG.equals(name) 
 								|| KuixConstants.PARAGRAPH_TAG.equals(name) 
 								|| KuixConstants.DIV_TAG.equals(name)) {
-							add(new Widget(KuixConstants.BREAK_WIDGET_TAG));
+							addBreak();
 							if (KuixConstants.PARAGRAPH_TAG.equals(name) 
 									|| KuixConstants.DIV_TAG.equals(name)) {
-								add(new Text().setText(" "));
-								add(new Widget(KuixConstants.BREAK_WIDGET_TAG));
+								addWord(" ", 0, 1, Font.STYLE_PLAIN);
+								addBreak();
 							}
 						} else if (KuixConstants.BOLD_TAG.equals(name) || KuixConstants.STRONG_TAG.equals(name)) {
 							bold--;
@@ -296,21 +612,11 @@ public class TextArea extends TextWidget {
 	private void splitWords(String fullText, int style) {
 		int beginIndex = 0;
 		int endIndex = 0;
-		String word;
 		do {
 			endIndex = fullText.indexOf(' ', beginIndex);
-			if (endIndex == -1) {
-				word = fullText.substring(beginIndex);
-			} else {
-				word = fullText.substring(beginIndex, endIndex);
-			}
-			if (word.length() != 0) {
-				Text textWidget = new Text();
-				textWidget.setText(word);
-				if (style != Font.STYLE_PLAIN) {
-					textWidget.setDefaultFontStyle(style);
-				}
-				add(textWidget);
+			int wordEndIndex = endIndex == -1 ? fullText.length() : endIndex;
+			if (wordEndIndex != beginIndex) {
+				addWord(fullText, beginIndex, wordEndIndex, style);
 			}
 			beginIndex = endIndex + 1;
 		} while (endIndex  != -1);
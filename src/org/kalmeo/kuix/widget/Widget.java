@@ -467,11 +467,8 @@ public class Widget {
 	 * @param styleClass the styleClass to set
 	 */
 	public void setStyleClass(String styleClass) {
-		if (styleClasses != null && styleClasses.length == 1) {
-			styleClasses[0] = styleClass;
-		} else {
-			styleClasses = new String[]{styleClass};
-		}
+		// A new array, the current one can be shared with a WidgetTemplate
+		styleClasses = new String[]{styleClass};
 		clearCachedStyle(true);
 	}
 
@@ -0,0 +1,76 @@
+/*
+ * This file is part of org.kalmeo.util.
+ *
+ * org.kalmeo.util is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.kalmeo.util is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.kalmeo.util.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kalmeo.util;
+
+/**
+ * Table driven CRC-32 checksum, as used by the GZIP trailer.
+ *
+ * @author mariotaku
+ */
+public final class CRC32 {
+
+	/** CRC of every byte value, shared by all the instances. */
+	private static final int[] TABLE = new int[256];
+
+	static {
+		for (int n = 0; n < 256; n++) {
+			int c = n;
+			for (int k = 0; k < 8; k++) {
+				if ((c & 1) != 0) {
+					c = 0xEDB88320 ^ (c >>> 1);
+				} else {
+					c >>>= 1;
+				}
+			}
+			TABLE[n] = c;
+		}
+	}
+
+	private int crc = 0xFFFFFFFF;
+
+	/**
+	 * Update the checksum with <code>len</code> bytes of <code>b</code>
+	 * starting at <code>off</code>.
+	 *
+	 * @param b
+	 * @param off
+	 * @param len
+	 */
+	public void update(byte[] b, int off, int len) {
+		int c = crc;
+		for (int end = off + len; off < end; off++) {
+			c = TABLE[(c ^ b[off]) & 0xFF] ^ (c >>> 8);
+		}
+		crc = c;
+	}
+
+	/**
+	 * @return the checksum of the data since the last reset
+	 */
+	public int getValue() {
+		return ~crc;
+	}
+
+	/**
+	 * Restart the checksum.
+	 */
+	public void reset() {
+		crc = 0xFFFFFFFF;
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of org.kalmeo.util.
+ *
+ * org.kalmeo.util is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.kalmeo.util is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.kalmeo.util.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kalmeo.util;
+
+/**
+ * Lookup tables for decoding canonical Huffman codes. The root table is
+ * indexed by the next <code>rootBits</code> bits of input (LSB first, so
+ * the codes are stored bit reversed), codes longer than that are looked
+ * up in sub-tables which follow the root table in the same array.
+ * <p>
+ * An entry is either a symbol, <code>(symbol &lt;&lt; 16) | bits</code>
+ * where bits is the number of bits to drop at this level, or a link to a
+ * sub-table, <code>(offset &lt;&lt; 16) | LINK | (subBits &lt;&lt; 8)</code>.
+ * Zero entries are unused codes.
+ *
+ * @author mariotaku
+ */
+final class HuffmanTable {
+
+	static final int LITERAL_ROOT_BITS = 9;
+	static final int DISTANCE_ROOT_BITS = 6;
+	static final int CODE_LENGTH_ROOT_BITS = 7;
+	static final int LINK = 0x8000;
+	static final int LINK_BITS_SHIFT = 8;
+	static final int LENGTH_MASK = 0xff;
+	private static final int MAX_BITS = 15;
+
+	final int[] entries;
+	final int rootBits;
+
+	HuffmanTable(int[] lengths, int off, int count, int rootBits) throws IllegalArgumentException {
+		int[] blCount = new int[MAX_BITS + 1];
+		int maxLen = 0;
+		for (int i = 0; i < count; i++) {
+			int len = lengths[off + i];
+			++blCount[len];
+			if (len > maxLen) {
+				maxLen = len;
+			}
+		}
+		if (rootBits > maxLen) {
+			rootBits = Math.max(maxLen, 1);
+		}
+		this.rootBits = rootBits;
+
+		int[] nextCode = new int[MAX_BITS + 2];
+		int code = 0;
+		blCount[0] = 0;
+		for (int bits = 1; bits <= MAX_BITS; bits++) {
+			code = (code + blCount[bits - 1]) << 1;
+			nextCode[bits] = code;
+			if (code + blCount[bits] > 1 << bits) {
+				throw new IllegalArgumentException("Over-subscribed code lengths");
+			}
+		}
+
+		int rootSize = 1 << rootBits;
+		int rootMask = rootSize - 1;
+
+		// Find the longest code behind each root prefix to size the sub-tables
+		int[] subBits = null;
+		int size = rootSize;
+		if (maxLen > rootBits) {
+			subBits = new int[rootSize];
+			int[] codes = new int[MAX_BITS + 2];
+			System.arraycopy(nextCode, 0, codes, 0, codes.length);
+			for (int i = 0; i < count; i++) {
+				int len = lengths[off + i];
+				if (len > rootBits) {
+					int prefix = reverse(codes[len]++, len) & rootMask;
+					if (len - rootBits > subBits[prefix]) {
+						subBits[prefix] = len - rootBits;
+					}
+				}
+			}
+			for (int i = 0; i < rootSize; i++) {
+				if (subBits[i] > 0) {
+					size += 1 << subBits[i];
+				}
+			}
+		}
+
+		int[] table = new int[size];
+		int next = rootSize;
+		for (int i = 0; i < count; i++) {
+			int len = lengths[off + i];
+			if (len == 0) {
+				continue;
+			}
+			int rev = reverse(nextCode[len]++, len);
+			if (len <= rootBits) {
+				int entry = (i << 16) | len;
+				for (int j = rev; j < rootSize; j += 1 << len) {
+					table[j] = entry;
+				}
+			} else {
+				int prefix = rev & rootMask;
+				int sub = subBits[prefix];
+				if (table[prefix] == 0) {
+					table[prefix] = (next << 16) | LINK | (sub << LINK_BITS_SHIFT);
+					next += 1 << sub;
+				}
+				int base = table[prefix] >>> 16;
+				int drop = len - rootBits;
+				int entry = (i << 16) | drop;
+				for (int j = rev >>> rootBits; j < (1 << sub); j += 1 << drop) {
+					table[base + j] = entry;
+				}
+			}
+		}
+		this.entries = table;
+	}
+
+	private static int reverse(int code, int len) {
+		int rev = 0;
+		for (int i = 0; i < len; i++) {
+			rev = (rev << 1) | (code & 1);
+			code >>= 1;
+		}
+		return rev;
+	}
+}
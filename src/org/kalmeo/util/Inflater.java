@@ -0,0 +1,742 @@
+/*
+ * This file is part of org.kalmeo.util.
+ *
+ * org.kalmeo.util is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * org.kalmeo.util is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with org.kalmeo.util.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.kalmeo.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * GZIP/DEFLATE decoder shared by {@link GZIP} and the HTTP response
+ * streams.
+ * <p>
+ * Data can either be decoded in one go from a byte array with
+ * {@link #inflate(byte[], int, int)}, the output array is then used as
+ * the history for back references, or on demand from an
+ * <code>InputStream</code> after {@link #start(InputStream)}, the output
+ * is then kept in a 32K sliding window which serves both as the history
+ * and as the output buffer, so the memory used stays the same regardless
+ * of the size of the compressed data.
+ * <p>
+ * Compressed data is consumed through a bit buffer and Huffman codes are
+ * decoded with lookup tables (see {@link HuffmanTable}), the tables of the
+ * fixed codes are built once and shared. An instance can be reused for
+ * any number of GZIP members, its buffers are only allocated once.
+ *
+ * @author mariotaku
+ */
+public final class Inflater {
+
+	/** Size of the sliding window, the maximum distance of a back reference. */
+	private static final int WINDOW_SIZE = 32768;
+	/** Size of the buffer for compressed data read from a stream. */
+	private static final int INPUT_BUFFER_SIZE = 512;
+
+	// Header flags
+	private static final int FHCRC_MASK = 2;
+	private static final int FEXTRA_MASK = 4;
+	private static final int FNAME_MASK = 8;
+	private static final int FCOMMENT_MASK = 16;
+
+	// Decoder states
+	private static final int STATE_BLOCK_HEADER = 0;
+	private static final int STATE_STORED = 1;
+	private static final int STATE_HUFFMAN = 2;
+	private static final int STATE_TRAILER = 3;
+	private static final int STATE_EOF = 4;
+
+	private static final int[] DYNAMIC_LENGTH_ORDER = { 16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15 };
+	private static final int[] LENGTH_EXTRA_BITS = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0 };
+	private static final int[] LENGTH_VALUES = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258 };
+	private static final int[] DISTANCE_EXTRA_BITS = { 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13 };
+	private static final int[] DISTANCE_VALUES = { 1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577 };
+
+	/** Literal/length table of the fixed Huffman codes. */
+	private static final HuffmanTable FIXED_LITERAL_TABLE;
+	/** Distance table of the fixed Huffman codes. */
+	private static final HuffmanTable FIXED_DISTANCE_TABLE;
+
+	static {
+		int[] lengths = new int[288];
+		for (int i = 0; i < 144; i++) {
+			lengths[i] = 8;
+		}
+		for (int i = 144; i < 256; i++) {
+			lengths[i] = 9;
+		}
+		for (int i = 256; i < 280; i++) {
+			lengths[i] = 7;
+		}
+		for (int i = 280; i < 288; i++) {
+			lengths[i] = 8;
+		}
+		FIXED_LITERAL_TABLE = new HuffmanTable(lengths, 0, 288, HuffmanTable.LITERAL_ROOT_BITS);
+
+		for (int i = 0; i < 30; i++) {
+			lengths[i] = 5;
+		}
+		FIXED_DISTANCE_TABLE = new HuffmanTable(lengths, 0, 30, HuffmanTable.DISTANCE_ROOT_BITS);
+	}
+
+	// Source of the compressed data, in == null when decoding an array
+	private InputStream in;
+	private byte[] input;
+	private int inPos;
+	private int inLen;
+	/** Buffer for the compressed data read from a stream, allocated once. */
+	private byte[] streamBuffer;
+
+	/** Bits read from the compressed data but not consumed yet, LSB first. */
+	private int bitBuf;
+	/** Number of valid bits in bitBuf, including the padding. */
+	private int bitCount;
+	/** Number of zero bits padded to bitBuf after the end of the source. */
+	private int bitPadding;
+
+	// Output, either the sliding window or the destination array
+	private byte[] window;
+	private int windowSize;
+	/** Mask applied to window positions, -1 when the window does not wrap. */
+	private int windowMask;
+	/** The sliding window, allocated once. */
+	private byte[] slidingWindow;
+	/** Position in the window where the next decoded byte is written. */
+	private int windowPos;
+	/** Number of decoded bytes which have not been read yet. */
+	private int pending;
+	/** Number of bytes decoded so far, up to the window size. */
+	private int windowFill;
+	/** Position in the window from which the checksum is not computed. */
+	private int checkedPos;
+	/** Number of decoded bytes not added to the checksum yet. */
+	private int unchecked;
+
+	private int state = STATE_EOF;
+	private boolean lastBlock;
+	private HuffmanTable lltable;
+	private HuffmanTable dtable;
+	/** Bytes left to copy in the current stored block. */
+	private int storedRemaining;
+	/** Bytes left to copy of the current back reference. */
+	private int copyLength;
+	private int copyDistance;
+
+	private final CRC32 crc = new CRC32();
+	/** Number of bytes decoded in the current member, modulo 2^32. */
+	private int totalOut;
+	private boolean checksumVerified = true;
+
+	/**
+	 * Enable or disable the CRC32 and ISIZE verification of the GZIP
+	 * trailer, enabled by default.
+	 *
+	 * @param checksumVerified
+	 */
+	public void setChecksumVerified(boolean checksumVerified) {
+		this.checksumVerified = checksumVerified;
+	}
+
+	/**
+	 * @return <code>true</code> if the GZIP trailer is verified
+	 */
+	public boolean isChecksumVerified() {
+		return checksumVerified;
+	}
+
+	/**
+	 * Start decoding a GZIP member from <code>in</code>. The header is read
+	 * immediately, the data is decoded as it is read from this instance.
+	 *
+	 * @param in
+	 * @throws IOException if the header is invalid
+	 */
+	public void start(InputStream in) throws IOException {
+		if (in == null) {
+			throw new NullPointerException();
+		}
+		if (streamBuffer == null) {
+			streamBuffer = new byte[INPUT_BUFFER_SIZE];
+		}
+		if (slidingWindow == null) {
+			slidingWindow = new byte[WINDOW_SIZE];
+		}
+		this.in = in;
+		input = streamBuffer;
+		inPos = inLen = 0;
+		initOutput(slidingWindow, WINDOW_SIZE, WINDOW_SIZE - 1);
+		readHeader();
+	}
+
+	/**
+	 * Decode a whole GZIP member. The size of the output is read from the
+	 * trailer so the data is decoded directly in the returned array.
+	 *
+	 * @param gzip array with the compressed data
+	 * @param offset
+	 * @param length
+	 * @return the decompressed data
+	 * @throws IOException if the data is invalid
+	 */
+	public byte[] inflate(byte[] gzip, int offset, int length) throws IOException {
+		int end = Math.min(offset + length, gzip.length);
+		if (end - offset < 18) {
+			throw new IOException("Invalid GZIP format");
+		}
+		int size = (gzip[end - 4] & 0xFF) | ((gzip[end - 3] & 0xFF) << 8)
+				| ((gzip[end - 2] & 0xFF) << 16) | ((gzip[end - 1] & 0xFF) << 24);
+		if (size < 0) {
+			throw new IOException("GZIP data too large");
+		}
+		byte[] out = new byte[size];
+		try {
+			in = null;
+			input = gzip;
+			inPos = offset;
+			inLen = end;
+			initOutput(out, size, -1);
+			readHeader();
+			fill(size);
+			finish();
+			if (pending != size) {
+				throw new IOException("Invalid GZIP size");
+			}
+		} finally {
+			end();
+		}
+		return out;
+	}
+
+	/**
+	 * Release the source and the output of the current member, the
+	 * buffers are kept for the next one.
+	 */
+	public void end() {
+		in = null;
+		input = null;
+		window = null;
+		lltable = null;
+		dtable = null;
+		pending = 0;
+		state = STATE_EOF;
+	}
+
+	/**
+	 * @return <code>true</code> if the end of the current member has been
+	 *         reached and all the data has been read
+	 */
+	public boolean finished() {
+		return state == STATE_EOF && pending == 0;
+	}
+
+	/**
+	 * @return the number of decoded bytes which can be read without
+	 *         blocking
+	 */
+	public int available() {
+		return pending;
+	}
+
+	/**
+	 * Read one decoded byte.
+	 *
+	 * @return the byte, or -1 at the end of the member
+	 * @throws IOException
+	 */
+	public int read() throws IOException {
+		if (pending == 0) {
+			fill(1);
+			if (pending == 0) {
+				return -1;
+			}
+		}
+		return window[(windowPos - pending--) & windowMask] & 0xFF;
+	}
+
+	/**
+	 * Read up to <code>len</code> decoded bytes, decoding only what is
+	 * needed when nothing is pending.
+	 *
+	 * @param b
+	 * @param off
+	 * @param len
+	 * @return the number of bytes read, or -1 at the end of the member
+	 * @throws IOException
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (pending == 0) {
+			fill(len);
+			if (pending == 0) {
+				return -1;
+			}
+		}
+		int n = Math.min(len, pending);
+		int start = (windowPos - pending) & windowMask;
+		int first = Math.min(n, windowSize - start);
+		System.arraycopy(window, start, b, off, first);
+		if (first < n) {
+			System.arraycopy(window, 0, b, off + first, n - first);
+		}
+		pending -= n;
+		return n;
+	}
+
+	/**
+	 * Skip up to <code>n</code> decoded bytes.
+	 *
+	 * @param n
+	 * @return the number of bytes skipped
+	 * @throws IOException
+	 */
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			if (pending == 0) {
+				fill((int) Math.min(n - skipped, windowSize));
+				if (pending == 0) {
+					break;
+				}
+			}
+			int count = (int) Math.min(n - skipped, pending);
+			pending -= count;
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	private void initOutput(byte[] window, int size, int mask) {
+		this.window = window;
+		windowSize = size;
+		windowMask = mask;
+		windowPos = pending = windowFill = checkedPos = unchecked = 0;
+		bitBuf = bitCount = bitPadding = 0;
+		lltable = dtable = null;
+		storedRemaining = copyLength = 0;
+		crc.reset();
+		totalOut = 0;
+		state = STATE_BLOCK_HEADER;
+	}
+
+	private void readHeader() throws IOException {
+		if (readByte() != 31 || readByte() != 139 || readByte() != 8) {
+			throw new IOException("Invalid GZIP format");
+		}
+		int flg = readByte();
+		// MTIME, XFL and OS
+		for (int i = 0; i < 6; i++) {
+			readByte();
+		}
+		if ((flg & FEXTRA_MASK) != 0) {
+			int xlen = readByte() | (readByte() << 8);
+			for (int i = 0; i < xlen; i++) {
+				readByte();
+			}
+		}
+		if ((flg & FNAME_MASK) != 0) {
+			while (readByte() != 0) {
+			}
+		}
+		if ((flg & FCOMMENT_MASK) != 0) {
+			while (readByte() != 0) {
+			}
+		}
+		if ((flg & FHCRC_MASK) != 0) {
+			readByte();
+			readByte();
+		}
+	}
+
+	/**
+	 * Read more compressed data from the stream.
+	 *
+	 * @return false if the end of the source is reached
+	 */
+	private boolean fillInput() throws IOException {
+		if (in == null) {
+			return false;
+		}
+		int n = in.read(input, 0, input.length);
+		if (n <= 0) {
+			return false;
+		}
+		inPos = 0;
+		inLen = n;
+		return true;
+	}
+
+	/**
+	 * Read a byte at a byte boundary, from the bit buffer first.
+	 */
+	private int readByte() throws IOException {
+		if (bitCount - bitPadding >= 8) {
+			int b = bitBuf & 0xFF;
+			bitBuf >>>= 8;
+			bitCount -= 8;
+			return b;
+		}
+		if (inPos == inLen && !fillInput()) {
+			throw new IOException("Unexpected end of GZIP data");
+		}
+		return input[inPos++] & 0xFF;
+	}
+
+	/**
+	 * Make sure there are at least <code>n</code> bits in the bit buffer,
+	 * the buffer is padded with zeros after the end of the source so that
+	 * peeking for a short final code does not fail.
+	 */
+	private void needBits(int n) throws IOException {
+		while (bitCount < n) {
+			if (inPos == inLen && (bitPadding > 0 || !fillInput())) {
+				bitPadding += 8;
+				bitCount += 8;
+				continue;
+			}
+			bitBuf |= (input[inPos++] & 0xFF) << bitCount;
+			bitCount += 8;
+		}
+	}
+
+	private void dropBits(int n) throws IOException {
+		if (n > bitCount - bitPadding) {
+			throw new IOException("Unexpected end of GZIP data");
+		}
+		bitBuf >>>= n;
+		bitCount -= n;
+	}
+
+	private int readBits(int n) throws IOException {
+		needBits(n);
+		int val = bitBuf & ((1 << n) - 1);
+		dropBits(n);
+		return val;
+	}
+
+	/**
+	 * Decode one symbol with the given table.
+	 */
+	private int readSymbol(HuffmanTable table) throws IOException {
+		int[] entries = table.entries;
+		int rootBits = table.rootBits;
+
+		needBits(rootBits);
+		int entry = entries[bitBuf & ((1 << rootBits) - 1)];
+
+		if ((entry & HuffmanTable.LINK) != 0) {
+			dropBits(rootBits);
+			int subBits = (entry >> HuffmanTable.LINK_BITS_SHIFT) & 0xF;
+			needBits(subBits);
+			entry = entries[(entry >>> 16) + (bitBuf & ((1 << subBits) - 1))];
+		}
+		if (entry == 0) {
+			throw new IOException("Invalid Huffman code");
+		}
+
+		dropBits(entry & HuffmanTable.LENGTH_MASK);
+		return entry >>> 16;
+	}
+
+	/**
+	 * Decode data until at least <code>want</code> bytes are pending or
+	 * the end of the member is reached.
+	 */
+	private void fill(int want) throws IOException {
+		if (want > windowSize) {
+			want = windowSize;
+		}
+		try {
+			while (pending < want && state != STATE_EOF) {
+				switch (state) {
+					case STATE_BLOCK_HEADER:
+						readBlockHeader();
+						break;
+					case STATE_STORED:
+						copyStored(want);
+						if (storedRemaining == 0) {
+							endBlock();
+						}
+						break;
+					case STATE_HUFFMAN:
+						inflateBlock(want);
+						break;
+					case STATE_TRAILER:
+						updateChecksum();
+						readTrailer();
+						state = STATE_EOF;
+						break;
+				}
+			}
+		} finally {
+			updateChecksum();
+		}
+	}
+
+	/**
+	 * Decode what is left of the member once the output is full, that is
+	 * the end of the last block and the trailer.
+	 */
+	private void finish() throws IOException {
+		while (state != STATE_EOF) {
+			switch (state) {
+				case STATE_BLOCK_HEADER:
+					readBlockHeader();
+					break;
+				case STATE_STORED:
+					if (storedRemaining > 0) {
+						throw new IOException("Invalid GZIP size");
+					}
+					endBlock();
+					break;
+				case STATE_HUFFMAN:
+					if (copyLength > 0 || readSymbol(lltable) != 256) {
+						throw new IOException("Invalid GZIP size");
+					}
+					endBlock();
+					break;
+				case STATE_TRAILER:
+					updateChecksum();
+					readTrailer();
+					state = STATE_EOF;
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Add the data decoded since the last call to the checksum.
+	 */
+	private void updateChecksum() {
+		int n = unchecked;
+		if (n == 0) {
+			return;
+		}
+		if (checksumVerified) {
+			if (checkedPos + n > windowSize) {
+				int first = windowSize - checkedPos;
+				crc.update(window, checkedPos, first);
+				crc.update(window, 0, n - first);
+			} else {
+				crc.update(window, checkedPos, n);
+			}
+		}
+		totalOut += n;
+		checkedPos = windowPos;
+		unchecked = 0;
+	}
+
+	private void readTrailer() throws IOException {
+		// CRC32 and ISIZE, at the byte boundary
+		dropBits((bitCount - bitPadding) & 7);
+		int crc32 = readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+		int isize = readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+		if (checksumVerified) {
+			if (crc32 != crc.getValue()) {
+				throw new IOException("GZIP CRC32 mismatch");
+			}
+			if (isize != totalOut) {
+				throw new IOException("GZIP ISIZE mismatch");
+			}
+		}
+	}
+
+	private void readBlockHeader() throws IOException {
+		lastBlock = readBits(1) == 1;
+		int btype = readBits(2);
+
+		if (btype == 0) {
+			// Uncompressed data, skip to the byte boundary
+			dropBits((bitCount - bitPadding) & 7);
+			int len = readByte() | (readByte() << 8);
+			int nlen = readByte() | (readByte() << 8);
+			if ((len ^ 0xFFFF) != nlen) {
+				throw new IOException("Invalid stored block length");
+			}
+			storedRemaining = len;
+			state = STATE_STORED;
+		} else if (btype == 1) {
+			lltable = FIXED_LITERAL_TABLE;
+			dtable = FIXED_DISTANCE_TABLE;
+			state = STATE_HUFFMAN;
+		} else if (btype == 2) {
+			int hlit = readBits(5) + 257;
+			int hdist = readBits(5) + 1;
+			int hclen = readBits(4) + 4;
+
+			int[] lengths = new int[hlit + hdist];
+			for (int i = 0; i < hclen; i++) {
+				lengths[DYNAMIC_LENGTH_ORDER[i]] = readBits(3);
+			}
+			HuffmanTable htable = createTable(lengths, 0, 19, HuffmanTable.CODE_LENGTH_ROOT_BITS);
+			for (int i = 0; i < 19; i++) {
+				lengths[i] = 0;
+			}
+
+			int idx = 0;
+			do {
+				int sym = readSymbol(htable);
+				if (sym <= 15) {
+					lengths[idx++] = sym;
+				} else {
+					int repeat;
+					int value = 0;
+					if (sym == 16) {
+						if (idx == 0) {
+							throw new IOException("Invalid code lengths");
+						}
+						repeat = readBits(2) + 3;
+						value = lengths[idx - 1];
+					} else if (sym == 17) {
+						repeat = readBits(3) + 3;
+					} else {
+						repeat = readBits(7) + 11;
+					}
+					if (idx + repeat > lengths.length) {
+						throw new IOException("Invalid code lengths");
+					}
+					while (repeat-- > 0) {
+						lengths[idx++] = value;
+					}
+				}
+			} while (idx < lengths.length);
+
+			lltable = createTable(lengths, 0, hlit, HuffmanTable.LITERAL_ROOT_BITS);
+			dtable = createTable(lengths, hlit, hdist, HuffmanTable.DISTANCE_ROOT_BITS);
+			state = STATE_HUFFMAN;
+		} else {
+			throw new IOException("Invalid block type " + btype);
+		}
+	}
+
+	private static HuffmanTable createTable(int[] lengths, int off, int count, int rootBits) throws IOException {
+		try {
+			return new HuffmanTable(lengths, off, count, rootBits);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	private void endBlock() {
+		lltable = null;
+		dtable = null;
+		state = lastBlock ? STATE_TRAILER : STATE_BLOCK_HEADER;
+	}
+
+	private void copyStored(int want) throws IOException {
+		// Whole bytes left in the bit buffer come first
+		while (storedRemaining > 0 && pending < want && bitCount - bitPadding >= 8) {
+			emit(readByte());
+			--storedRemaining;
+		}
+		while (storedRemaining > 0 && pending < want) {
+			if (inPos == inLen && !fillInput()) {
+				throw new IOException("Unexpected end of GZIP data");
+			}
+			int n = Math.min(Math.min(storedRemaining, want - pending), inLen - inPos);
+			n = Math.min(n, windowSize - windowPos);
+			System.arraycopy(input, inPos, window, windowPos, n);
+			inPos += n;
+			windowPos = (windowPos + n) & windowMask;
+			pending += n;
+			unchecked += n;
+			windowFill = Math.min(windowFill + n, windowSize);
+			storedRemaining -= n;
+		}
+	}
+
+	private void emit(int b) {
+		window[windowPos] = (byte) b;
+		windowPos = (windowPos + 1) & windowMask;
+		++pending;
+		++unchecked;
+		if (windowFill < windowSize) {
+			++windowFill;
+		}
+	}
+
+	private void inflateBlock(int want) throws IOException {
+		while (pending < want) {
+			if (copyLength > 0) {
+				// Continue the back reference, it may not fit at once
+				int n = Math.min(copyLength, want - pending);
+				int src = (windowPos - copyDistance) & windowMask;
+				int dst = windowPos;
+				if (windowMask == -1 || (src + n <= windowSize && dst + n <= windowSize)) {
+					if (copyDistance >= n) {
+						System.arraycopy(window, src, window, dst, n);
+					} else {
+						for (int i = 0; i < n; i++) {
+							window[dst + i] = window[src + i];
+						}
+					}
+					dst += n;
+					if (dst == windowSize && windowMask != -1) {
+						dst = 0;
+					}
+				} else {
+					for (int i = 0; i < n; i++) {
+						window[dst] = window[src];
+						dst = (dst + 1) & windowMask;
+						src = (src + 1) & windowMask;
+					}
+				}
+				windowPos = dst;
+				pending += n;
+				unchecked += n;
+				windowFill = Math.min(windowFill + n, windowSize);
+				copyLength -= n;
+				continue;
+			}
+
+			int llcode = readSymbol(lltable);
+
+			if (llcode < 256) {
+				emit(llcode);
+			} else if (llcode == 256) {
+				endBlock();
+				return;
+			} else if (llcode <= 285) {
+				int length = LENGTH_VALUES[llcode - 257];
+				int extraLengthBits = LENGTH_EXTRA_BITS[llcode - 257];
+				if (extraLengthBits > 0) {
+					length += readBits(extraLengthBits);
+				}
+
+				int distanceCode = readSymbol(dtable);
+				if (distanceCode >= 30) {
+					throw new IOException("Invalid distance code " + distanceCode);
+				}
+
+				int distance = DISTANCE_VALUES[distanceCode];
+				int extraDistBits = DISTANCE_EXTRA_BITS[distanceCode];
+				if (extraDistBits > 0) {
+					distance += readBits(extraDistBits);
+				}
+				if (distance > windowFill) {
+					throw new IOException("Invalid distance " + distance);
+				}
+
+				copyLength = length;
+				copyDistance = distance;
+			} else {
+				throw new IOException("Invalid literal/length code " + llcode);
+			}
+		}
+	}
+
+}
@@ -24,10 +24,36 @@ package org.kalmeo.util.worker;
 import java.util.Vector;
 
 /**
+ * The worker thread runs the pushed {@link WorkerTask}s. A task is run
+ * every frame, or every period given to <code>pushTask</code>, until it
+ * asks to be removed. Between two runs the thread waits until the next task
+ * is due or a new task is pushed. With no task it waits for the next push.
+ * 
  * @author bbeaulant
  */
 public class Worker implements Runnable {
 
+	/**
+	 * This class hold a task and its schedule
+	 */
+	private static class ScheduledTask {
+		
+		public final WorkerTask task;
+		
+		// The period in ms or 0 to run every frame
+		public final int period;
+		
+		// Next execution time
+		public long nextRunTime;
+		
+		public ScheduledTask(WorkerTask task, int period, long nextRunTime) {
+			this.task = task;
+			this.period = period;
+			this.nextRunTime = nextRunTime;
+		}
+		
+	}
+
 	// The Worker static instance
 	public static final Worker instance = new Worker();
 	
@@ -43,13 +69,24 @@ public class Worker implements Runnable {
 	// Frame duration (in ms)
 	private int frameDuration = 60;
 
-	// Task list
+	// Task list (ScheduledTask instances)
 	private final Vector tasks = new Vector();
 	
-	// Running task index
-	private int runningTaskIndex = -1;
+	// Running task, or null
+	private ScheduledTask runningTask = null;
+	
+	// Tasks due in the current run, only used by the worker thread
+	private final Vector dueTasks = new Vector();
 	
-	// Synchronization mutex
+	// Indicate if a task was pushed since the last tasks run
+	private boolean wakeUpPending = false;
+	
+	// Time spent running tasks and waiting (in ms)
+	private long busyTime = 0;
+	private long idleTime = 0;
+	
+	// Synchronization mutex, guarding the task list but not held while the
+	// tasks run, so pushing a task never waits for the current frame
 	private final Object mutex = new Object(); 
 	
 	/**
@@ -86,15 +123,46 @@ public class Worker implements Runnable {
 	public void setFrameDuration(int frameDuration) {
 		this.frameDuration = frameDuration;
 	}
+	
+	/**
+	 * @return the time spent running tasks in milliseconds
+	 */
+	public long getBusyTime() {
+		return busyTime;
+	}
 
 	/**
-	 * Push a task to th worker task list.
+	 * @return the time spent waiting for a task in milliseconds
+	 */
+	public long getIdleTime() {
+		return idleTime;
+	}
+
+	/**
+	 * Push a task to th worker task list. The task is run as soon as
+	 * possible and then every frame.
 	 * 
 	 * @param task
 	 */
 	public void pushTask(WorkerTask task) {
 		synchronized (mutex) {
-			tasks.addElement(task);
+			tasks.addElement(new ScheduledTask(task, 0, System.currentTimeMillis()));
+			wakeUp();
+		}
+	}
+	
+	/**
+	 * Push a task to th worker task list. The task is run every
+	 * <code>period</code> milliseconds, starting one period after this call.
+	 * 
+	 * @param task
+	 * @param period the period in milliseconds, or <code>0</code> to run
+	 *            the task every frame
+	 */
+	public void pushTask(WorkerTask task, int period) {
+		synchronized (mutex) {
+			tasks.addElement(new ScheduledTask(task, period, System.currentTimeMillis() + getPeriod(period)));
+			wakeUp();
 		}
 	}
 
@@ -106,15 +174,12 @@ public class Worker implements Runnable {
 	 */
 	public boolean removeTask(WorkerTask task) {
 		synchronized (mutex) {
-			int taskIndex = tasks.indexOf(task);
+			int taskIndex = indexOf(task);
 			if (taskIndex != -1) {
-				if (taskIndex == runningTaskIndex) {
+				if (tasks.elementAt(taskIndex) == runningTask && isCurrentThread()) {
 					throw new IllegalArgumentException("A WorkerTask couldn't remove itself");
 				}
 				tasks.removeElementAt(taskIndex);
-				if (taskIndex < runningTaskIndex) {
-					runningTaskIndex--;
-				}
 				return true;
 			}
 			return false;
@@ -146,7 +211,41 @@ public class Worker implements Runnable {
 	 * Stop the worker
 	 */
 	public void stop() {
-		running = false;
+		synchronized (mutex) {
+			running = false;
+			wakeUp();
+		}
+	}
+	
+	/**
+	 * Wake up the worker thread if it is waiting. Must be called with the
+	 * mutex held.
+	 */
+	private void wakeUp() {
+		wakeUpPending = true;
+		mutex.notify();
+	}
+	
+	/**
+	 * @param task
+	 * @return the index of the first {@link ScheduledTask} of
+	 *         <code>task</code> or <code>-1</code>
+	 */
+	private int indexOf(WorkerTask task) {
+		for (int i = 0; i < tasks.size(); ++i) {
+			if (((ScheduledTask) tasks.elementAt(i)).task == task) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @param period
+	 * @return the effective period of a task pushed with <code>period</code>
+	 */
+	private int getPeriod(int period) {
+		return period > 0 ? period : frameDuration;
 	}
 
 	/* (non-Javadoc)
@@ -156,17 +255,35 @@ public class Worker implements Runnable {
 		while (running) {
 			WorkerTask task = null;
 			long startTime = System.currentTimeMillis();
+			dueTasks.removeAllElements();
 			try {
 				synchronized (mutex) {
-					if (!tasks.isEmpty()) {
-						for (runningTaskIndex = 0; runningTaskIndex < tasks.size(); ++runningTaskIndex) {
-							task = (WorkerTask) tasks.elementAt(runningTaskIndex);
-							if (task.run()) {
-								tasks.removeElementAt(runningTaskIndex);
-								runningTaskIndex--;
-							}
+					wakeUpPending = false;
+					for (int i = 0; i < tasks.size(); ++i) {
+						ScheduledTask scheduledTask = (ScheduledTask) tasks.elementAt(i);
+						if (scheduledTask.nextRunTime <= startTime) {
+							dueTasks.addElement(scheduledTask);
+						}
+					}
+				}
+				for (int i = 0; i < dueTasks.size(); ++i) {
+					ScheduledTask scheduledTask = (ScheduledTask) dueTasks.elementAt(i);
+					synchronized (mutex) {
+						if (!tasks.contains(scheduledTask)) {
+							// Removed since the run started
+							continue;
+						}
+						runningTask = scheduledTask;
+					}
+					task = scheduledTask.task;
+					boolean done = task.run();
+					synchronized (mutex) {
+						runningTask = null;
+						if (done) {
+							tasks.removeElement(scheduledTask);
+						} else {
+							scheduledTask.nextRunTime = startTime + getPeriod(scheduledTask.period);
 						}
-						runningTaskIndex = -1;
 					}
 				}
 			} catch (Exception e) {
@@ -177,7 +294,7 @@ public class Worker implements Runnable {
 				}
 				// Remove the task responsible of the exception
 				if (task != null) {
-					runningTaskIndex = -1;
+					runningTask = null;
 					removeTask(task);
 				}
 			} catch (Error e) {
@@ -188,17 +305,32 @@ public class Worker implements Runnable {
 				}
 				// Remove the task responsible of the error
 				if (task != null) {
-					runningTaskIndex = -1;
+					runningTask = null;
 					removeTask(task);
 				}
 			}
-			if (running) {
-				long executionTime = System.currentTimeMillis() - startTime;
-				try {
-					Thread.sleep(!running || executionTime > frameDuration ? 1 : frameDuration - executionTime);
-				} catch (InterruptedException e) {
+			long waitStartTime = System.currentTimeMillis();
+			busyTime += waitStartTime - startTime;
+			synchronized (mutex) {
+				if (running && !wakeUpPending) {
+					
+					// Wait until the next task is due, or a task is pushed
+					long nextRunTime = Long.MAX_VALUE;
+					for (int i = tasks.size() - 1; i >= 0; --i) {
+						nextRunTime = Math.min(nextRunTime, ((ScheduledTask) tasks.elementAt(i)).nextRunTime);
+					}
+					try {
+						if (nextRunTime == Long.MAX_VALUE) {
+							mutex.wait();
+						} else if (nextRunTime > waitStartTime) {
+							mutex.wait(nextRunTime - waitStartTime);
+						}
+					} catch (InterruptedException e) {
+					}
+					
 				}
 			}
+			idleTime += System.currentTimeMillis() - waitStartTime;
 		}
 		thread = null;
 	}
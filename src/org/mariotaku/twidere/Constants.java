@@ -15,6 +15,8 @@ public interface Constants {
 	public static final String OAUTH_CALLBACK_OOB = "oob";
 	public static final String DATASTORE_NAME_ACCOUNTS = "accounts";
 	public static final String DATASTORE_NAME_PREFERENCES = "preferences";
+	public static final String DATASTORE_NAME_SSL_SESSIONS = "ssl_sessions";
+	public static final String DATASTORE_NAME_SSL_CERTIFICATES = "ssl_certificates";
 	/*
 	 * Action ids
 	 */
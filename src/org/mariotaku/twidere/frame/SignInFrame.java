@@ -17,6 +17,7 @@ import org.mariotaku.twidere.util.DataStore;
 import org.mariotaku.twidere.provider.HashMapDataProvider;
 import org.mariotaku.twidere.util.OAuthPasswordAuthenticator;
 import org.mariotaku.twidere.util.ParseUtils;
+import org.mariotaku.twidere.util.RequestExecutor;
 import org.mariotaku.twidere.util.TwidereHostAddressResolver;
 import org.mariotaku.twidere.util.Utils;
 import org.mariotaku.twidere.util.http.TwidereHttpClientFactory;
@@ -96,14 +97,22 @@ public class SignInFrame extends BaseFrame {
 			final TextField password = (TextField) getWidget(WIDGET_ID_PASSWORD);
 			provider.put(DATA_PROVIDER_KEY_USER_NAME, user_name.getText());
 			provider.put(DATA_PROVIDER_KEY_PASSWORD, password.getText());
-			new Thread() {
+			final PopupBox popup = Kuix.showPopupBox("progressbar_indeterminate_popup.xml", null);
+			RequestExecutor.getInstance().execute(new RequestExecutor.Request(RequestExecutor.PRIORITY_INTERACTIVE, null) {
 
-				public void run() {
-					final PopupBox popup = Kuix.showPopupBox("progressbar_indeterminate_popup.xml", null);
+				protected Object run() {
 					testTwitter();
+					return null;
+				}
+
+				protected void onResult(Object result) {
+					popup.remove();
+				}
+
+				protected void onError(Exception e) {
 					popup.remove();
 				}
-			}.start();
+			});
 		} else {
 			return false;
 		}
@@ -14,6 +14,8 @@ import org.mariotaku.twidere.Constants;
 import org.mariotaku.twidere.frame.MainFrame;
 import org.mariotaku.twidere.util.CustomWidgetConverter;
 import org.mariotaku.twidere.util.DataStore;
+import repackaged.com.sun.midp.ssl.CertificateCache;
+import repackaged.com.sun.midp.ssl.SessionStore;
 
 /**
  *
@@ -58,6 +60,8 @@ public class TwidereMIDlet extends KuixMIDlet implements Constants {
 	protected void startApp() throws MIDletStateChangeException {
 		if (!isPaused) {
 			instance = this;
+			SessionStore.setRecordStoreName(DATASTORE_NAME_SSL_SESSIONS);
+			CertificateCache.setRecordStoreName(DATASTORE_NAME_SSL_CERTIFICATES);
 		}
 		isPaused = false;
 		super.startApp();
@@ -0,0 +1,271 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.mariotaku.twidere.util;
+
+import java.util.Hashtable;
+import java.util.Vector;
+import org.kalmeo.util.worker.Worker;
+import org.kalmeo.util.worker.WorkerTask;
+import org.mariotaku.twidere.util.http.SocketHttpConnection;
+
+/**
+ * Runs network requests on a small, fixed set of threads. Queued requests
+ * run by priority, then in the order they were executed. One thread is kept
+ * for the interactive requests, so a user action does not wait behind
+ * background refreshes. Requests to the same host are limited to the
+ * persistent connections the HTTP connection pool keeps for a host.
+ * Results are delivered on the Kuix {@link Worker} thread.
+ *
+ * @author mariotaku
+ */
+public final class RequestExecutor {
+
+	/** A request the user is waiting for. */
+	public static final int PRIORITY_INTERACTIVE = 0;
+	/** A request for data the user is likely to need next. */
+	public static final int PRIORITY_PREFETCH = 1;
+	/** A refresh the user is not waiting for. */
+	public static final int PRIORITY_BACKGROUND = 2;
+	private static final int WORKER_COUNT = 3;
+	private static RequestExecutor instance;
+	private final Vector[] queues = new Vector[PRIORITY_BACKGROUND + 1];
+	private final Hashtable runningPerHost = new Hashtable();
+	private final int maxPerHost;
+	private int workers;
+	private int idleWorkers;
+	private int runningNonInteractive;
+
+	private RequestExecutor() {
+		for (int i = 0; i < queues.length; i++) {
+			queues[i] = new Vector();
+		}
+		final int max = SocketHttpConnection.getConnectionPool().getMaxConnectionsPerHost();
+		maxPerHost = max > 0 ? max : 1;
+	}
+
+	public static synchronized RequestExecutor getInstance() {
+		if (instance == null) {
+			instance = new RequestExecutor();
+		}
+		return instance;
+	}
+
+	/**
+	 * Queues a request.
+	 *
+	 * @param request
+	 * @throws IllegalStateException if the request has already been executed
+	 */
+	public synchronized void execute(final Request request) {
+		if (request.executor != null) {
+			throw new IllegalStateException("Request has already been executed");
+		}
+		request.executor = this;
+		queues[request.priority].addElement(request);
+		if (idleWorkers > 0) {
+			notify();
+		} else if (workers < WORKER_COUNT) {
+			workers++;
+			new Thread(new RequestWorker()).start();
+		}
+	}
+
+	/**
+	 * Removes a request from the queue.
+	 *
+	 * @return <code>true</code> if the request was queued
+	 */
+	private synchronized boolean remove(final Request request) {
+		return queues[request.priority].removeElement(request);
+	}
+
+	/**
+	 * Takes the next request that can run, waiting for one if necessary.
+	 */
+	private synchronized Request take() {
+		for (;;) {
+			final Request request = next();
+			if (request != null) {
+				queues[request.priority].removeElement(request);
+				if (request.host != null) {
+					runningPerHost.put(request.host, new Integer(getRunning(request.host) + 1));
+				}
+				if (request.priority != PRIORITY_INTERACTIVE) {
+					runningNonInteractive++;
+				}
+				return request;
+			}
+			idleWorkers++;
+			try {
+				wait();
+			} catch (final InterruptedException e) {
+				// look again
+			} finally {
+				idleWorkers--;
+			}
+		}
+	}
+
+	private Request next() {
+		for (int priority = 0; priority < queues.length; priority++) {
+			if (priority != PRIORITY_INTERACTIVE && runningNonInteractive >= WORKER_COUNT - 1) {
+				return null;
+			}
+			final Vector queue = queues[priority];
+			final int size = queue.size();
+			for (int i = 0; i < size; i++) {
+				final Request request = (Request) queue.elementAt(i);
+				if (request.host == null || getRunning(request.host) < maxPerHost) {
+					return request;
+				}
+			}
+		}
+		return null;
+	}
+
+	private synchronized void finished(final Request request) {
+		if (request.host != null) {
+			final int running = getRunning(request.host) - 1;
+			if (running > 0) {
+				runningPerHost.put(request.host, new Integer(running));
+			} else {
+				runningPerHost.remove(request.host);
+			}
+		}
+		if (request.priority != PRIORITY_INTERACTIVE) {
+			runningNonInteractive--;
+		}
+		// A request waiting for this host or worker may run now
+		notifyAll();
+	}
+
+	private synchronized void workerDied() {
+		workers--;
+	}
+
+	private int getRunning(final String host) {
+		final Integer running = (Integer) runningPerHost.get(host);
+		return running != null ? running.intValue() : 0;
+	}
+
+	/**
+	 * A request run by a {@link RequestExecutor}.
+	 */
+	public static abstract class Request {
+
+		private final int priority;
+		private final String host;
+		private RequestExecutor executor;
+		private volatile boolean cancelled;
+
+		/**
+		 * @param priority one of the <code>PRIORITY_</code> constants
+		 * @param host the host the request connects to, or <code>null</code>
+		 *            if it is not limited by host
+		 */
+		protected Request(final int priority, final String host) {
+			if (priority < PRIORITY_INTERACTIVE || priority > PRIORITY_BACKGROUND) {
+				throw new IllegalArgumentException("Invalid priority " + priority);
+			}
+			this.priority = priority;
+			this.host = host;
+		}
+
+		/**
+		 * Cancels the request. A queued request is removed from the queue, a
+		 * running request keeps running but its result is dropped. Either
+		 * way {@link #onCancelled()} is called instead of the other
+		 * callbacks.
+		 */
+		public final void cancel() {
+			if (cancelled) {
+				return;
+			}
+			cancelled = true;
+			final RequestExecutor executor = this.executor;
+			if (executor != null && executor.remove(this)) {
+				post(null, null);
+			}
+		}
+
+		public final boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * Makes the request, on a thread of the executor.
+		 *
+		 * @return the result passed to {@link #onResult(Object)}
+		 */
+		protected abstract Object run() throws Exception;
+
+		/**
+		 * Called on the Kuix worker thread with the result of {@link #run()}.
+		 */
+		protected void onResult(final Object result) {
+		}
+
+		/**
+		 * Called on the Kuix worker thread with the exception thrown by
+		 * {@link #run()}.
+		 */
+		protected void onError(final Exception e) {
+		}
+
+		/**
+		 * Called on the Kuix worker thread when the request has been
+		 * cancelled.
+		 */
+		protected void onCancelled() {
+		}
+
+		private void post(final Object result, final Exception exception) {
+			final WorkerTask task = new WorkerTask() {
+
+				public boolean run() {
+					if (cancelled) {
+						onCancelled();
+					} else if (exception != null) {
+						onError(exception);
+					} else {
+						onResult(result);
+					}
+					return true;
+				}
+			};
+			if (Worker.instance.isRunning()) {
+				Worker.instance.pushTask(task);
+			} else {
+				task.run();
+			}
+		}
+	}
+
+	private final class RequestWorker implements Runnable {
+
+		public void run() {
+			try {
+				for (;;) {
+					final Request request = take();
+					Object result = null;
+					Exception exception = null;
+					try {
+						if (!request.cancelled) {
+							result = request.run();
+						}
+					} catch (final Exception e) {
+						exception = e;
+					} finally {
+						finished(request);
+					}
+					request.post(result, exception);
+				}
+			} finally {
+				// e.g. OutOfMemoryError, the next request starts a new worker
+				workerDied();
+			}
+		}
+	}
+}
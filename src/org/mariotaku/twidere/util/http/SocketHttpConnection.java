@@ -40,7 +40,9 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 	/** How much data can be put in the output buffer. */
 	private static int outputDataSize;
 	/** Maximum number of persistent connections. */
-	private static int maxNumberOfPersistentConnections = 1;
+	private static int maxNumberOfPersistentConnections = 4;
+	/** Maximum number of persistent connections to the same host. */
+	private static int maxNumberOfPersistentConnectionsPerHost = 2;
 	/** Connection linger time in the pool, default 60 seconds. */
 	private static long connectionLingerTime = 60000;
 	/** Persistent connection pool. */
@@ -53,12 +55,6 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		String prop;
 		int temp;
 
-		/*
-		 * if first time intialize the connection pool and create
-		 * a connection (you could create more)
-		 */
-		maxNumberOfPersistentConnections = 1;
-
 		/*
 		 * bug#4455443 - allows for configuration options to shut off 
 		 * the persistent connection feature for http 
@@ -76,7 +72,7 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		if (prop != null) {
 			try {
 				temp = Integer.parseInt(prop);
-				if (temp <= 0) {
+				if (temp > 0) {
 					maxNumberOfPersistentConnections = temp;
 				}
 			} catch (NumberFormatException nfe) {
@@ -84,6 +80,22 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 			}
 		}
 
+		/*
+		 * Get the maximum number of persistent connections to one
+		 * host from the configuration file.
+		 */
+		prop = System.getProperty("com.sun.midp.io.http.max_persistent_connections_per_host");
+		if (prop != null) {
+			try {
+				temp = Integer.parseInt(prop);
+				if (temp > 0) {
+					maxNumberOfPersistentConnectionsPerHost = temp;
+				}
+			} catch (NumberFormatException nfe) {
+				// keep the default
+			}
+		}
+
 		// Get how long a not in use connection should stay in the pool.
 		prop = System.getProperty("com.sun.midp.io.http.persistent_connection_linger_time");
 		if (prop != null) {
@@ -97,7 +109,8 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 			}
 		}
 
-		connectionPool = new StreamConnectionPool(maxNumberOfPersistentConnections, connectionLingerTime);
+		connectionPool = new StreamConnectionPool(maxNumberOfPersistentConnections,
+				maxNumberOfPersistentConnectionsPerHost, connectionLingerTime);
 
 		/*
 		 * Get the  maximum number of persistent connections
@@ -150,8 +163,6 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 	private DataOutputStream streamOutput;
 	/** Low level socket input stream. */
 	private DataInputStream streamInput;
-	/** A shared temporary header buffer. */
-	private StringBuffer stringbuffer;
 	/** HTTP version string set with all incoming HTTP responses. */
 	private String httpVer = null;
 	/** Used when appl calls setRequestProperty("Connection", "close"). */
@@ -180,11 +191,15 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 	private boolean requestFinished;
 	/** True if eof seen. */
 	private boolean eof;
-	/** Internal stream buffer to minimize the number of TCP socket reads. */
+	/**
+	 * Internal stream buffer to minimize the number of TCP socket reads.
+	 * The response head is parsed from it and the bytes read after the
+	 * head are the start of the body.
+	 */
 	private byte[] readbuf;
 	/** Number of bytes left in internal input stream buffer. */
 	private int bytesleft;
-	/** Number of bytes read from the internal input stream buffer. */
+	/** Offset of the first byte left in the internal input stream buffer. */
 	private int bytesread;
 	/** Buffered data output for content length calculation. */
 	private byte[] writebuf;
@@ -214,7 +229,6 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 	public SocketHttpConnection() {
 		reqProperties = new Properties();
 		headerFields = new Properties();
-		stringbuffer = new StringBuffer(32);
 
 		method = GET;
 		responseCode = -1;
@@ -363,9 +377,7 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 					 */
 					rc = streamInput.read(b, off, len);
 				} else {
-					rc = streamInput.read(readbuf, 0, inputBufferSize);
-					bytesleft = rc;
-					bytesread = 0;
+					rc = fillBuffer(inputBufferSize);
 				}
 
 				if (rc == -1) {
@@ -376,17 +388,17 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 					return -1;
 				}
 
-				totalbytesread += rc;
-
 				if (bytesleft == 0) {
 					/*
 					 * The data was read directly into the caller's buffer.
 					 */
+					totalbytesread += rc;
 					return rc;
 				}
 			}
 
 			rc = readFromBuffer(b, off, len);
+			totalbytesread += rc;
 			return rc;
 		} finally {
 			synchronized (streamInput) {
@@ -432,6 +444,143 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		return rc;
 	}
 
+	/**
+	 * Reads from the stream into the internal buffer, after the bytes
+	 * left in it. The buffer is compacted first, and grows when it is
+	 * full so that a line longer than the buffer can be scanned.
+	 *
+	 * @param max maximum number of bytes to read
+	 * @return the number of bytes read, or <code>-1</code> at the end of
+	 *         the stream
+	 * @exception IOException if an I/O error occurs
+	 */
+	private int fillBuffer(int max) throws IOException {
+		if (bytesread > 0) {
+			System.arraycopy(readbuf, bytesread, readbuf, 0, bytesleft);
+			bytesread = 0;
+		}
+
+		if (bytesleft == readbuf.length) {
+			byte[] newbuf = new byte[readbuf.length << 1];
+			System.arraycopy(readbuf, 0, newbuf, 0, bytesleft);
+			readbuf = newbuf;
+		}
+
+		int room = readbuf.length - bytesleft;
+		int rc = streamInput.read(readbuf, bytesleft, max < room ? max : room);
+		if (rc > 0) {
+			bytesleft += rc;
+		}
+
+		return rc;
+	}
+
+	/**
+	 * Reads the bytes that are available from the stream without
+	 * blocking into the internal buffer.
+	 *
+	 * @exception IOException if an I/O error occurs
+	 */
+	private void fillBufferNonBlocking() throws IOException {
+		int len = streamInput.available();
+		if (len > 0) {
+			fillBuffer(len);
+		}
+	}
+
+	/**
+	 * Makes sure a whole line, terminated by LF, is in the internal
+	 * buffer starting at <code>bytesread</code>. Blocks until the line is
+	 * done or end of stream.
+	 *
+	 * @return the index of the LF in the buffer, or <code>-1</code> if
+	 *         the stream ended before the line
+	 * @exception IOException if an I/O error occurs
+	 */
+	private int bufferLine() throws IOException {
+		int scanned = 0;
+
+		for (;;) {
+			int lf = indexOf('\n', bytesread + scanned, bytesread + bytesleft);
+			if (lf >= 0) {
+				return lf;
+			}
+
+			scanned = bytesleft;
+			if (fillBuffer(Integer.MAX_VALUE) < 0) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Gets the end of the line starting at <code>bytesread</code>,
+	 * without the CR of the CRLF.
+	 *
+	 * @param lf index of the LF ending the line
+	 * @return the index after the last character of the line
+	 */
+	private int lineEnd(int lf) {
+		if (lf > bytesread && readbuf[lf - 1] == '\r') {
+			return lf - 1;
+		}
+
+		return lf;
+	}
+
+	/**
+	 * Consumes the line starting at <code>bytesread</code>. Its bytes
+	 * stay valid until the buffer is filled again.
+	 *
+	 * @param lf index of the LF ending the line
+	 */
+	private void consumeLine(int lf) {
+		bytesleft -= lf + 1 - bytesread;
+		bytesread = lf + 1;
+	}
+
+	/**
+	 * Finds a character in a part of the internal buffer.
+	 *
+	 * @param c the character
+	 * @param start index where the search starts
+	 * @param end index where the search ends
+	 * @return the index of the character, or <code>-1</code> if not found
+	 */
+	private int indexOf(char c, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (readbuf[i] == c) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Creates a string from a part of the internal buffer. Header bytes
+	 * are ISO-8859-1 characters.
+	 *
+	 * @param start index of the first character
+	 * @param end index after the last character
+	 * @param lowerCase true to convert the characters to lower case
+	 * @return the string
+	 */
+	private String headerString(int start, int end, boolean lowerCase) {
+		char[] chars = new char[end - start];
+
+		for (int i = start; i < end; i++) {
+			char c = (char) (readbuf[i] & 0xff);
+			if (lowerCase && c >= 'A' && c <= 'Z') {
+				c += 'a' - 'A';
+			}
+
+			chars[i - start] = c;
+		}
+
+		return new String(chars);
+	}
+
 	/**
 	 * Returns the number of bytes that can be read (or skipped over) from
 	 * this input stream without blocking by the next caller of a method for
@@ -453,20 +602,25 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 			return 0;
 		}
 
+		if (chunkedIn && totalbytesread == chunksize) {
+			/* 
+			 * Check if a new chunk size header is available.
+			 */
+			return readChunkSizeNonBlocking();
+		}
+
 		/*
 		 * Regardless of chunked or non-chunked transfers -
 		 * if data is already buffered return the amount 
-		 * buffered.
+		 * buffered, up to the end of the chunk.
 		 */
+		int remaining = chunksize - totalbytesread;
 		if (bytesleft > 0) {
-			return bytesleft;
-		}
+			if (chunksize >= 0 && remaining < bytesleft) {
+				return remaining;
+			}
 
-		if (chunkedIn && totalbytesread == chunksize) {
-			/* 
-			 * Check if a new chunk size header is available.
-			 */
-			return readChunkSizeNonBlocking();
+			return bytesleft;
 		}
 
 		/*
@@ -474,85 +628,48 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		 * count for the nonchunked input stream.
 		 */
 		bytesAvailable = streamInput.available();
-		if (chunksize <= bytesAvailable) {
-			return chunksize;
+		if (chunksize >= 0 && remaining <= bytesAvailable) {
+			return remaining;
 		}
 
 		return bytesAvailable;
 	}
 
 	/** 
-	 * Read a chunk size header into the readLine buffer
-	 * without blocking. The stringbuffer is populated
-	 * with characters one at a time. This routine is design
-	 * so that a partial chunk size header could be read
-	 * and then completed by a blocking read of the chunk 
-	 * or a subsequent call to available.
+	 * Read the CRLF ending a chunk and the next chunk size header
+	 * without blocking. Nothing is consumed until both are in the
+	 * internal buffer, so a partial chunk size header is completed
+	 * by a blocking read of the chunk or a subsequent call to available.
 	 *
 	 * @return available data that can be read
 	 */
 	int readChunkSizeNonBlocking() throws IOException {
 		/*
-		 * Check the underlying stream to see how many bytes are
-		 * available. Do not read beyond the available characters,
-		 * because that would block.
+		 * Do not read beyond the available characters, because that
+		 * would block.
 		 */
-		int len = streamInput.available();
-
-		/* Reset the last character from the current readLine buffer. */
-		int sblen = stringbuffer.length();
-		char lastchar = '\0';
-		if (sblen > 0) {
-			lastchar = stringbuffer.charAt(sblen - 1);
-		}
+		fillBufferNonBlocking();
 
-		int size = -1;
-		/*
-		 * Loop through the available characters until a full 
-		 * chunk size header is in the readLine buffer.
-		 */
-		for (; len > 0; len--) {
-			char c = (char) streamInput.read();
-
-			if (lastchar == '\r' && c == '\n') {
-				// remove the '\r' from the buffer
-				stringbuffer.setLength(stringbuffer.length() - 1);
-
-				if (stringbuffer.length() > 0) {
-					// this is a size, not the CRLF at the end of a chunk
-					try {
-						String temp = stringbuffer.toString();
-						int semi = temp.indexOf(';');
-
-						// skip extensions
-						if (semi > 0) {
-							temp = temp.substring(0, semi);
-						}
-
-						/*
-						 * Reset the string buffer length so readline() will
-						 * not parse this line.
-						 */
-						stringbuffer.setLength(0);
-
-						size = Integer.parseInt(temp, 16);
-					} catch (NumberFormatException nfe) {
-						throw new IOException(
-								"invalid chunk size number format");
-					}
-					break;
-				}
-			} else {
-				stringbuffer.append(c);
-				lastchar = c;
-			}
+		int end = bytesread + bytesleft;
+		int crlf = indexOf('\n', bytesread, end);
+		if (crlf < 0) {
+			return 0;
 		}
 
-		if (size < 0) {
+		int lf = indexOf('\n', crlf + 1, end);
+		if (lf < 0) {
 			// did not get the size
 			return 0;
 		}
 
+		if (lineEnd(crlf) != bytesread) {
+			throw new IOException("missing the CRLF at the end of a chunk");
+		}
+
+		consumeLine(crlf);
+		int size = parseChunkSize(bytesread, lineEnd(lf));
+		consumeLine(lf);
+
 		/*
 		 * Update the chunksize and the total bytes that have been
 		 * read from the chunk. This will trigger the next call to
@@ -561,17 +678,17 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		chunksize = size;
 		if (size == 0) {
 			eof = true;
+			skipTrailer();
 			return 0;
 		}
 
 		totalbytesread = 0;
 
 		/*
-		 * If the full chunk is available, return chunksize,
-		 * otherwise return the remainder of the available
-		 * bytes (e.g. partial chunk).
+		 * If the full chunk is buffered, return chunksize,
+		 * otherwise return the buffered part of the chunk.
 		 */
-		return (chunksize < len ? chunksize : len);
+		return (chunksize < bytesleft ? chunksize : bytesleft);
 
 	}
 
@@ -596,77 +713,59 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 
 		int rc;
 
-
-		if (bytesleft == 0) {
+		if (totalbytesread == chunksize) {
 			/*
-			 * the internal input stream buffer is empty, read from the stream
+			 * read the end of the chunk and get the size of the
+			 * the next if there is one
 			 */
 
-			if (totalbytesread == chunksize) {
+			if (!chunkedIn) {
 				/*
-				 * read the end of the chunk and get the size of the
-				 * the next if there is one
+				 * non-chucked data is treated as one big chunk so there
+				 * is no more data so just return as if there are no
+				 * more chunks
 				 */
+				eof = true;
+				return -1;
+			}
 
-				if (!chunkedIn) {
-					/*
-					 * non-chucked data is treated as one big chunk so there
-					 * is no more data so just return as if there are no
-					 * more chunks
-					 */
-					eof = true;
-					return -1;
-				}
-
-				skipEndOfChunkCRLF();
-
-				chunksize = readChunkSize();
-				if (chunksize == 0) {
-					eof = true;
+			skipEndOfChunkCRLF();
 
-					/*
-					 * REFERENCE: HTTP1.1 document 
-					 * SECTION: 3.6.1 Chunked Transfer Coding
-					 * in some cases there may be an OPTIONAL trailer
-					 * containing entity-header fields. since we don't support
-					 * the available() method for TCP socket input streams and
-					 * for performance and reuse reasons we do not attempt to
-					 * clean up the current connections input stream. 
-					 * check readResponseMessage() method in this class for
-					 * more details
-					 */
-					return -1;
-				}
-
-				/*
-				 * we have not read any bytes from this new chunk
-				 */
-				totalbytesread = 0;
+			chunksize = readChunkSize();
+			if (chunksize == 0) {
+				eof = true;
+				return -1;
 			}
 
-			int bytesToRead = chunksize - totalbytesread;
+			/*
+			 * we have not read any bytes from this new chunk
+			 */
+			totalbytesread = 0;
+		}
 
-			if (len >= bytesToRead) {
+		int bytesToRead = chunksize - totalbytesread;
+		if (len > bytesToRead) {
+			len = bytesToRead;
+		}
 
+		if (bytesleft == 0) {
+			/*
+			 * the internal input stream buffer is empty, read from the stream
+			 */
+			if (len >= inputBufferSize) {
 				/*
 				 * No need to buffer, if the caller has given a big buffer.
 				 */
-				rc = streamInput.read(b, off, bytesToRead);
-
-			} else if (len >= inputBufferSize) {
+				rc = streamInput.read(b, off, len);
+			} else if (chunkedIn) {
 				/*
-				 * No need to buffer, if the caller has given a big buffer.
+				 * Read past the chunk, the CRLF and the next chunk size
+				 * header are then parsed from the buffer.
 				 */
-				rc = streamInput.read(b, off, len);
+				rc = fillBuffer(inputBufferSize);
 			} else {
-				if (inputBufferSize >= bytesToRead) {
-					rc = streamInput.read(readbuf, 0, bytesToRead);
-				} else {
-					rc = streamInput.read(readbuf, 0, inputBufferSize);
-				}
-
-				bytesleft = rc;
-				bytesread = 0;
+				// do not read beyond the content length
+				rc = fillBuffer(bytesToRead);
 			}
 
 			if (rc == -1) {
@@ -677,17 +776,17 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 				throw new IOException("unexpected end of stream");
 			}
 
-			totalbytesread += rc;
-
 			if (bytesleft == 0) {
 				/*
 				 * The data was read directly into the caller's buffer.
 				 */
+				totalbytesread += rc;
 				return rc;
 			}
 		}
 
 		rc = readFromBuffer(b, off, len);
+		totalbytesread += rc;
 
 		return rc;
 	}
@@ -700,32 +799,48 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 	 * @return size of the buffered read
 	 */
 	private int readChunkSize() throws IOException {
-		int size = -1;
+		int lf = bufferLine();
+		if (lf < 0) {
+			throw new IOException("No Chunk Size");
+		}
 
-		try {
-			String chunk = null;
+		int size = parseChunkSize(bytesread, lineEnd(lf));
+		consumeLine(lf);
 
-			try {
-				chunk = readLine(streamInput);
-			} catch (IOException ioe) {
-				/* throw new IOException(ioe.getMessage()); */
-			}
+		if (size == 0) {
+			skipTrailer();
+		}
+
+		return size;
+	}
+
+	/**
+	 * Parses a chunk size header in the internal buffer.
+	 *
+	 * @param start index of the header
+	 * @param end index after the header, without the CRLF
+	 * @return the chunk size
+	 * @exception IOException if the header is not a hex number
+	 */
+	private int parseChunkSize(int start, int end) throws IOException {
+		int size = 0;
+		int i;
 
-			if (chunk == null) {
-				throw new IOException("No Chunk Size");
+		for (i = start; i < end; i++) {
+			int digit = Character.digit((char) readbuf[i], 16);
+			if (digit == -1) {
+				break;
 			}
 
-			int i;
-			for (i = 0; i < chunk.length(); i++) {
-				char ch = chunk.charAt(i);
-				if (Character.digit(ch, 16) == -1) {
-					break;
-				}
+			if (size > 0x7ffffff) {
+				throw new IOException("invalid chunk size number format");
 			}
 
-			/* look at extensions?.... */
-			size = Integer.parseInt(chunk.substring(0, i), 16);
-		} catch (NumberFormatException e) {
+			size = (size << 4) + digit;
+		}
+
+		/* look at extensions?.... */
+		if (i == start) {
 			throw new IOException("invalid chunk size number format");
 		}
 
@@ -735,51 +850,44 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 	/**
 	 * Skips the CRLF at the end of each chunk in the InputStream.
 	 *
-	 * @exception IOException if the LF half of the ending CRLF
-	 * is missing.
+	 * @exception IOException if the ending CRLF is missing.
 	 */
 	private void skipEndOfChunkCRLF() throws IOException {
-		int ch;
-
-		if (stringbuffer.length() > 1) {
-			/*
-			 * readChunkSizeNonBlocking does not leave CRLF in the buffer
-			 * so assume that the ending CRLF has been skipped already
-			 */
-			return;
+		int lf = bufferLine();
+		if (lf < 0 || lineEnd(lf) != bytesread) {
+			throw new IOException("missing the CRLF at the end of a chunk");
 		}
 
-		// readChunkSizeNonBlocking could have left a \r single in the buffer
-		if (stringbuffer.length() == 1) {
-			if (stringbuffer.charAt(0) != '\r') {
-				// assume that the ending CRLF has been skipped already
+		consumeLine(lf);
+	}
+
+	/**
+	 * Skips the trailer after the last chunk as far as it has been
+	 * received, without blocking.
+	 * <p>
+	 * REFERENCE: HTTP1.1 document 
+	 * SECTION: 3.6.1 Chunked Transfer Coding
+	 * The last chunk is followed by an OPTIONAL trailer containing 
+	 * entity-header fields and a CRLF. Whatever of it is already
+	 * buffered is consumed, so the connection can be reused. The rest,
+	 * if any, is skipped by readResponseMessage() on the next request.
+	 *
+	 * @exception IOException if an I/O error occurs
+	 */
+	private void skipTrailer() throws IOException {
+		fillBufferNonBlocking();
+
+		for (;;) {
+			int lf = indexOf('\n', bytesread, bytesread + bytesleft);
+			if (lf < 0) {
 				return;
 			}
 
-			// remove the '\r'
-			stringbuffer.setLength(0);
-			ch = streamInput.read();
-			if (ch != '\n') {
-				throw new IOException("missing the LF of an expected CRLF");
+			boolean empty = lineEnd(lf) == bytesread;
+			consumeLine(lf);
+			if (empty) {
+				return;
 			}
-
-			return;
-		}
-
-		ch = streamInput.read();
-		if (ch != '\r') {
-			/*
-			 * assume readChunkSizeNonBlocking has read the end of the chunk
-			 * and that this is the next chunk size, so put the char in the
-			 * buffer for readChunkSize and return
-			 */
-			stringbuffer.append(ch);
-			return;
-		}
-
-		ch = streamInput.read();
-		if (ch != '\n') {
-			throw new IOException("missing the LF of an expected CRLF");
 		}
 	}
 
@@ -1361,6 +1469,8 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 				streamInput = null;
 				streamOutput = null;
 				bytesToWrite = bytesToRetry;
+				bytesleft = 0;
+				bytesread = 0;
 
 				startRequest();
 				sendRequestBody();
@@ -1663,16 +1773,16 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 
 		streamOutput.flush();
 
-		readResponseMessage(streamInput);
-		readHeaders(streamInput);
+		readResponseMessage();
+		readHeaders();
 
 		/*
 		 * Ignore a continuation header and read the true headers again.
 		 * (Bug# 4382226 discovered with Jetty HTTP 1.1 web server.
 		 */
 		if (responseCode == 100) {
-			readResponseMessage(streamInput);
-			readHeaders(streamInput);
+			readResponseMessage();
+			readHeaders();
 		}
 	}
 
@@ -1710,17 +1820,15 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 	 * appropriate HTTP version string. Parse the response 
 	 * code for easy application branching on condition codes.
 	 *
-	 * @param in input stream where the response headers are read
 	 * @exception IOException  is thrown if the header response can 
 	 *                         not be parsed
 	 */
-	private void readResponseMessage(InputStream in) throws IOException {
+	private void readResponseMessage() throws IOException {
 
-		String line = null;
 		responseCode = -1;
 		responseMsg = null;
 
-		line = readLine(in);
+		int lf = bufferLine();
 
 		/*
 		 * REFERENCE: HTTP1.1 document 
@@ -1732,76 +1840,72 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		 * stream. the first thing we do here is read the stream and 
 		 * discard it.
 		 */
-		if (line != null && line.length() == 0) {
-			line = readLine(in);
+		if (lf >= 0 && lineEnd(lf) == bytesread) {
+			consumeLine(lf);
+			lf = bufferLine();
 		}
 
-		int httpEnd, codeEnd;
-
-		responseCode = -1;
-		responseMsg = null;
-
-		if (line == null) {
+		if (lf < 0) {
 			throw new IOException("response empty");
 		}
 
-		httpEnd = line.indexOf(' ');
-		if (httpEnd < 0) {
-			if (line.length() > 10) {
-				// only put the first 10 chars in the exception
-				line = line.substring(0, 10);
-			}
+		int start = bytesread;
+		int end = lineEnd(lf);
+		consumeLine(lf);
 
+		int httpEnd = indexOf(' ', start, end);
+		if (httpEnd < 0) {
+			// only put the first 10 chars in the exception
 			throw new IOException("cannot find status code in response: "
-					+ line);
+					+ headerString(start, end - start > 10 ? start + 10 : end,
+					false));
 		}
 
-		String temp = line.substring(0, httpEnd);
-		if (!temp.startsWith("HTTP")) {
-			if (httpEnd > 10) {
-				// only put the first 10 chars in the exception
-				temp = temp.substring(0, 10);
-			}
-
+		if (httpEnd - start < 4 || readbuf[start] != 'H'
+				|| readbuf[start + 1] != 'T' || readbuf[start + 2] != 'T'
+				|| readbuf[start + 3] != 'P') {
+			// only put the first 10 chars in the exception
 			throw new IOException("response does not start with HTTP "
-					+ "it starts with: " + temp);
+					+ "it starts with: " + headerString(start,
+					httpEnd - start > 10 ? start + 10 : httpEnd, false));
 		}
 
-		httpVer = temp;
-		if (line.length() <= httpEnd) {
-			throw new IOException("status line ends after HTTP version");
-		}
+		httpVer = headerString(start, httpEnd, false);
 
-		codeEnd = line.substring(httpEnd + 1).indexOf(' ');
+		int codeEnd = indexOf(' ', httpEnd + 1, end);
 		if (codeEnd < 0) {
 			throw new IOException("cannot find reason phrase in response");
 		}
 
-		codeEnd += (httpEnd + 1);
-		if (line.length() <= codeEnd) {
-			throw new IOException("status line end after status code");
+		if (codeEnd == httpEnd + 1) {
+			throw new IOException("status code in response is not a number");
 		}
 
-		try {
-			responseCode = Integer.parseInt(line.substring(httpEnd + 1,
-					codeEnd));
-		} catch (NumberFormatException nfe) {
-			throw new IOException("status code in response is not a number");
+		int code = 0;
+		for (int i = httpEnd + 1; i < codeEnd; i++) {
+			int digit = readbuf[i] - '0';
+			if (digit < 0 || digit > 9 || code > 99999) {
+				throw new IOException(
+						"status code in response is not a number");
+			}
+
+			code = code * 10 + digit;
 		}
 
-		responseMsg = line.substring(codeEnd + 1);
+		responseCode = code;
+		responseMsg = headerString(codeEnd + 1, end, false);
 	}
 
 	/** 
 	 * Read the response message headers.
 	 * Parse the response headers name value pairs for easy application use.
+	 * The names and values are parsed in the internal buffer, the bytes
+	 * left in it after the headers are the start of the response data.
 	 *
-	 * @param in input stream where the response headers are read
 	 * @exception IOException  is thrown if the response headers cannot 
 	 *                         be parsed
 	 */
-	private void readHeaders(InputStream in) throws IOException {
-		String line;
+	private void readHeaders() throws IOException {
 		String key = null;
 		int prevPropIndex = headerFields.size() - 1;
 		boolean firstLine = true;
@@ -1812,34 +1916,35 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		/*
 		 * Initialize and set the current input stream variables
 		 */
-		bytesleft = 0;
 		chunksize = -1;
-		bytesread = 0;
 		totalbytesread = 0;
 		chunkedIn = false;
 		eof = false;
 
 
 		for (;;) {
-			try {
-				line = readLine(in);
-			} catch (IOException ioe) {
-				throw new IOException(ioe.getMessage());
+			int lf = bufferLine();
+			if (lf < 0) {
+				break;
 			}
 
-			if (line == null || line.equals("")) {
+			int start = bytesread;
+			int end = lineEnd(lf);
+			consumeLine(lf);
+
+			if (start == end) {
 				break;
 			}
 
-			if ((!firstLine) && (line.charAt(0) == ' '
-					|| line.charAt(0) == '\t')) {
+			if ((!firstLine) && (readbuf[start] == ' '
+					|| readbuf[start] == '\t')) {
 				// This line is a contiuation of the previous line.
 
 				/*
 				 * The continuation is for the user readablility so restore
 				 * the CR LF when appending.
 				 */
-				value = prevValue + "\r\n" + line;
+				value = prevValue + "\r\n" + headerString(start, end, false);
 
 				/*
 				 * Set value by index, since there can be multiple properties
@@ -1850,22 +1955,31 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 				continue;
 			}
 
-			index = line.indexOf(':');
+			index = indexOf(':', start, end);
 			if (index < 0) {
-				throw new IOException("malformed header field " + line);
+				throw new IOException("malformed header field "
+						+ headerString(start, end, false));
 			}
 
-			key = line.substring(0, index).toLowerCase();
-			if (key.length() == 0) {
-				throw new IOException("malformed header field, no key " + line);
+			if (index == start) {
+				throw new IOException("malformed header field, no key "
+						+ headerString(start, end, false));
 			}
 
-			if (line.length() <= index + 1) {
-				value = "";
-			} else {
-				value = line.substring(index + 1).trim();
+			key = headerString(start, index, true);
+
+			int valueStart = index + 1;
+			while (valueStart < end && (readbuf[valueStart] & 0xff) <= ' ') {
+				valueStart++;
 			}
 
+			int valueEnd = end;
+			while (valueEnd > valueStart && (readbuf[valueEnd - 1] & 0xff) <= ' ') {
+				valueEnd--;
+			}
+
+			value = headerString(valueStart, valueEnd, false);
+
 			/**
 			 * Check the response header to see if the server would like
 			 * to close the connection.
@@ -1924,45 +2038,6 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		}
 	}
 
-	/**
-	 * Uses the shared stringbuffer to read a line terminated by CRLF 
-	 * and return it as string. Blocks until the line is done or end of
-	 * stream.
-	 *
-	 * @param     in  InputStream to read the data
-	 * @return    one line of input header or null if end of stream
-	 * @exception IOException if error encountered while reading headers
-	 */
-	private String readLine(InputStream in) throws IOException {
-		int c;
-
-		try {
-			for (;;) {
-				c = in.read();
-				if (c < 0) {
-					return null;
-				}
-
-				if (c == '\r') {
-					continue;
-				}
-
-				if (c == '\n') {
-					break;
-				}
-
-				stringbuffer.append((char) c);
-			}
-
-			/* Return a whole line and reset the string buffer. */
-			String line = stringbuffer.toString();
-
-			return line;
-		} finally {
-			stringbuffer.setLength(0);
-		}
-	}
-
 	/**
 	 * Close the OutputStream and transition to connected state.
 	 *
@@ -2017,6 +2092,7 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		 * 3. it is a 1.0 connection
 		 * 4. there was a signal to close the connection
 		 * 5. reading in progress on this connection in another thread
+		 * 6. bytes of the next response are in the internal buffer
 		 */
 		synchronized (streamInput) {
 			if (readInProgress) {
@@ -2025,6 +2101,18 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 			}
 		}
 
+		/*
+		 * Bytes read ahead beyond the response would be lost for the
+		 * next request on this connection, but for the start of the
+		 * empty line ending a trailer, which readResponseMessage() skips.
+		 */
+		for (int i = bytesread + bytesleft - 1; i >= bytesread; i--) {
+			if (readbuf[i] != '\r' && readbuf[i] != '\n') {
+				ConnectionCloseFlag = true;
+				break;
+			}
+		}
+
 		if (!requestFinished || !eof || httpVer.equals("HTTP/1.0")
 				|| ConnectionCloseFlag) {
 			if (streamConnection instanceof StreamConnectionElement) {
@@ -2089,6 +2177,16 @@ public class SocketHttpConnection extends ConnectionBaseAdapter
 		}
 	}
 
+	/**
+	 * Get the persistent connection pool shared by all the HTTP
+	 * connections, e.g. to read its hit, miss and eviction counters.
+	 *
+	 * @return persistent connection pool
+	 */
+	public static StreamConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+
 	public static SocketHttpConnection open(final String url) throws IOException {
 		final SocketHttpConnection conn = new SocketHttpConnection();
 		conn.openPrim(url);
@@ -7,6 +7,7 @@ package org.mariotaku.twidere.util.http;
 import twitter2me.conf.Configuration;
 import twitter2me.http.HttpClient;
 import twitter2me.http.HttpClientFactory;
+import twitter2me.http.impl.HttpCache;
 
 /**
  *
@@ -14,8 +15,22 @@ import twitter2me.http.HttpClientFactory;
  */
 public class TwidereHttpClientFactory implements HttpClientFactory {
 
+	private static final String HTTP_CACHE_NAME = "http_cache";
+	private static HttpCache cache;
+
 	public HttpClient newInstance(final Configuration conf) {
-		return new TwidereHttpClientImpl(conf);
+		return new TwidereHttpClientImpl(conf, getHttpCache());
+	}
+
+	/**
+	 * @return the cache shared by the clients, or <code>null</code> if it
+	 *         could not be opened
+	 */
+	public static synchronized HttpCache getHttpCache() {
+		if (cache == null) {
+			cache = HttpCache.openHttpCache(HTTP_CACHE_NAME, HttpCache.DEFAULT_MAX_SIZE);
+		}
+		return cache;
 	}
 	
 }
@@ -7,6 +7,7 @@ package org.mariotaku.twidere.util.http;
 import java.io.IOException;
 import javax.microedition.io.Connection;
 import twitter2me.conf.Configuration;
+import twitter2me.http.impl.HttpCache;
 import twitter2me.http.impl.HttpClientImpl;
 import twitter2me.internal.util.HttpUrl;
 
@@ -20,6 +21,10 @@ public final class TwidereHttpClientImpl extends HttpClientImpl {
 		super(conf);
 	}
 
+	public TwidereHttpClientImpl(Configuration conf, HttpCache cache) {
+		super(conf, cache);
+	}
+
 	protected Connection createConnection(String url) throws IOException {
 		if (url == null) throw new NullPointerException();
 		final SocketHttpConnection conn = SocketHttpConnection.open(url);
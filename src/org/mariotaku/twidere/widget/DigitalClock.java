@@ -9,17 +9,19 @@ import java.util.Date;
 import org.kalmeo.kuix.core.Kuix;
 import org.kalmeo.kuix.widget.Text;
 import org.kalmeo.kuix.widget.Widget;
+import org.kalmeo.util.worker.Worker;
+import org.kalmeo.util.worker.WorkerTask;
 import org.mariotaku.twidere.util.Utils;
 
 /**
  *
  * @author mariotaku
  */
-public class DigitalClock extends Text implements Runnable {
+public class DigitalClock extends Text implements WorkerTask {
 
 	public static final String WIDGET_TAG = "digitalclock";
+	private static final int REFRESH_PERIOD = 10000;
 	private final boolean is24HourFormat;
-	private Thread clockThread;
 	private boolean isRemoved;
 
 	public DigitalClock() {
@@ -37,13 +39,13 @@ public class DigitalClock extends Text implements Runnable {
 	protected void onAdded(Widget parent) {
 		super.onAdded(parent);
 		isRemoved = false;
-		clockThread = new Thread(this);
-		clockThread.start();
+		refreshClock();
+		Worker.instance.pushTask(this, REFRESH_PERIOD);
 	}
 
 	protected void onRemoved(Widget parent) {
 		isRemoved = true;
-		clockThread = null;
+		Worker.instance.removeTask(this);
 		super.onRemoved(parent);
 	}
 
@@ -63,15 +65,8 @@ public class DigitalClock extends Text implements Runnable {
 
 	}
 
-	public void run() {
-		while (true && !isRemoved) {
-			refreshClock();
-			try {
-				Thread.sleep(10000);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-
+	public boolean run() {
+		refreshClock();
+		return isRemoved;
 	}
 }
\ No newline at end of file
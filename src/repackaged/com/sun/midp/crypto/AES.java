@@ -0,0 +1,348 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.crypto;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+
+/**
+ * This class implements the AES block cipher (FIPS 197) with 128, 192 or
+ * 256 bit keys, in ECB or CBC mode and without padding. Rounds are
+ * computed from four lookup tables per direction, built once when the
+ * class is loaded, and blocks are processed in place without allocating.
+ * In CBC mode the chaining value carries over from one update to the
+ * next, as SSL expects.
+ *
+ * @author mariotaku
+ */
+public final class AES extends Cipher {
+
+	/** AES block size in bytes. */
+	public static final int BLOCK_SIZE = 16;
+	/** S-box and inverse S-box. */
+	private static final int[] S = new int[256];
+	private static final int[] SI = new int[256];
+	/** Round tables: SubBytes combined with MixColumns, and their inverse. */
+	private static final int[] TE0 = new int[256];
+	private static final int[] TE1 = new int[256];
+	private static final int[] TE2 = new int[256];
+	private static final int[] TE3 = new int[256];
+	private static final int[] TD0 = new int[256];
+	private static final int[] TD1 = new int[256];
+	private static final int[] TD2 = new int[256];
+	private static final int[] TD3 = new int[256];
+	/** Round constants of the key schedule. */
+	private static final int[] RCON = {
+		0x01, 0x02, 0x04, 0x08, 0x10, 0x20, 0x40, 0x80, 0x1b, 0x36
+	};
+
+	static {
+		// Powers and logarithms of the generator 3 in GF(2^8)
+		int[] pow = new int[256];
+		int[] log = new int[256];
+		int x = 1;
+		for (int i = 0; i < 255; i++) {
+			pow[i] = x;
+			log[x] = i;
+			x ^= (x << 1) ^ ((x & 0x80) != 0 ? 0x11b : 0);
+		}
+
+		for (int i = 0; i < 256; i++) {
+			int inv = (i == 0) ? 0 : pow[(255 - log[i]) % 255];
+			int s = inv ^ (inv << 1) ^ (inv << 2) ^ (inv << 3) ^ (inv << 4);
+			s = (s ^ (s >>> 8) ^ 0x63) & 0xff;
+			S[i] = s;
+			SI[s] = i;
+		}
+
+		for (int i = 0; i < 256; i++) {
+			int s = S[i];
+			int te = (mul(pow, log, s, 2) << 24) | (s << 16) | (s << 8) | mul(pow, log, s, 3);
+			TE0[i] = te;
+			TE1[i] = (te >>> 8) | (te << 24);
+			TE2[i] = (te >>> 16) | (te << 16);
+			TE3[i] = (te >>> 24) | (te << 8);
+
+			int si = SI[i];
+			int td = (mul(pow, log, si, 14) << 24) | (mul(pow, log, si, 9) << 16)
+					| (mul(pow, log, si, 13) << 8) | mul(pow, log, si, 11);
+			TD0[i] = td;
+			TD1[i] = (td >>> 8) | (td << 24);
+			TD2[i] = (td >>> 16) | (td << 16);
+			TD3[i] = (td >>> 24) | (td << 8);
+		}
+	}
+
+	private int mode = MODE_UNINITIALIZED;
+	private boolean cbc;
+	private SecretKey skey;
+	/** IV given to init, restored by doFinal. */
+	private byte[] iv;
+	/** Number of rounds, 10, 12 or 14. */
+	private int rounds;
+	/** Round keys, for encryption or for the equivalent inverse cipher. */
+	private int[] rk;
+	/** CBC chaining value. */
+	private int c0, c1, c2, c3;
+
+	public AES() {
+	}
+
+	private static int mul(int[] pow, int[] log, int a, int b) {
+		if (a == 0 || b == 0) {
+			return 0;
+		}
+		return pow[(log[a] + log[b]) % 255];
+	}
+
+	/**
+	 * Called by the factory method to set the mode and padding parameters.
+	 *
+	 * @param mode the mode parsed from the transformation parameter of
+	 *             getInstance and upper cased
+	 * @param padding the padding parsed from the transformation parameter
+	 *                of getInstance and upper cased
+	 *
+	 * @exception NoSuchPaddingException if <code>transformation</code>
+	 * contains a padding scheme that is not available
+	 * @exception IllegalArgumentException if the mode is invalid for the
+	 * cipher
+	 */
+	protected void setChainingModeAndPadding(String mode, String padding)
+			throws NoSuchPaddingException {
+		if (mode.equals("CBC")) {
+			cbc = true;
+		} else if (mode.equals("") || mode.equals("ECB")) {
+			cbc = false;
+		} else {
+			throw new IllegalArgumentException();
+		}
+
+		// The SSL record layer pads the data itself
+		if (!(padding.equals("") || padding.equals("NOPADDING"))) {
+			throw new NoSuchPaddingException();
+		}
+	}
+
+	public void init(int opmode, Key key, CryptoParameter params)
+			throws InvalidKeyException, InvalidAlgorithmParameterException {
+		if (!(key instanceof SecretKey)) {
+			throw new InvalidKeyException();
+		}
+		if (opmode != Cipher.ENCRYPT_MODE && opmode != Cipher.DECRYPT_MODE) {
+			throw new IllegalArgumentException();
+		}
+
+		byte[] k = ((SecretKey) key).getEncoded();
+		if (k.length != 16 && k.length != 24 && k.length != 32) {
+			throw new InvalidKeyException();
+		}
+
+		if (cbc) {
+			if (params instanceof IvParameter) {
+				iv = ((IvParameter) params).getIV();
+				if (iv.length != BLOCK_SIZE) {
+					throw new InvalidAlgorithmParameterException();
+				}
+			} else {
+				throw new InvalidAlgorithmParameterException();
+			}
+		}
+
+		mode = opmode;
+		skey = (SecretKey) key;
+		expandKey(k, opmode == Cipher.DECRYPT_MODE);
+		resetChain();
+	}
+
+	public byte[] getIV() {
+		return cbc ? Util.cloneArray(iv) : null;
+	}
+
+	public int update(byte[] input, int inputOffset, int inputLen,
+			byte[] output, int outputOffset)
+			throws IllegalStateException, ShortBufferException {
+		if (mode == MODE_UNINITIALIZED) {
+			throw new IllegalStateException();
+		}
+		if ((inputLen % BLOCK_SIZE) != 0) {
+			throw new IllegalArgumentException("Input not a multiple of the block size");
+		}
+		if (output.length - outputOffset < inputLen) {
+			throw new ShortBufferException();
+		}
+
+		int end = inputOffset + inputLen;
+		if (mode == Cipher.ENCRYPT_MODE) {
+			for (; inputOffset < end; inputOffset += BLOCK_SIZE, outputOffset += BLOCK_SIZE) {
+				encryptBlock(input, inputOffset, output, outputOffset);
+			}
+		} else {
+			for (; inputOffset < end; inputOffset += BLOCK_SIZE, outputOffset += BLOCK_SIZE) {
+				decryptBlock(input, inputOffset, output, outputOffset);
+			}
+		}
+		return inputLen;
+	}
+
+	public int doFinal(byte[] input, int inputOffset, int inputLen,
+			byte[] output, int outputOffset)
+			throws IllegalStateException, ShortBufferException,
+			IllegalBlockSizeException, BadPaddingException {
+		if ((inputLen % BLOCK_SIZE) != 0) {
+			throw new IllegalBlockSizeException();
+		}
+		int val = update(input, inputOffset, inputLen, output, outputOffset);
+		resetChain();
+		return val;
+	}
+
+	private void resetChain() {
+		if (cbc) {
+			c0 = getInt(iv, 0);
+			c1 = getInt(iv, 4);
+			c2 = getInt(iv, 8);
+			c3 = getInt(iv, 12);
+		} else {
+			c0 = c1 = c2 = c3 = 0;
+		}
+	}
+
+	/**
+	 * Computes the round keys, turning them into the keys of the
+	 * equivalent inverse cipher for decryption.
+	 */
+	private void expandKey(byte[] key, boolean forDecryption) {
+		int nk = key.length >> 2;
+		rounds = nk + 6;
+		int total = (rounds + 1) << 2;
+		int[] w = new int[total];
+		for (int i = 0; i < nk; i++) {
+			w[i] = getInt(key, i << 2);
+		}
+		for (int i = nk; i < total; i++) {
+			int t = w[i - 1];
+			if (i % nk == 0) {
+				t = (t << 8) | (t >>> 24);
+				t = subWord(t) ^ (RCON[i / nk - 1] << 24);
+			} else if (nk > 6 && i % nk == 4) {
+				t = subWord(t);
+			}
+			w[i] = w[i - nk] ^ t;
+		}
+
+		if (forDecryption) {
+			// Reverse the order of the rounds and apply InvMixColumns
+			int[] d = new int[total];
+			for (int r = 0; r <= rounds; r++) {
+				for (int j = 0; j < 4; j++) {
+					int t = w[((rounds - r) << 2) + j];
+					if (r > 0 && r < rounds) {
+						t = TD0[S[t >>> 24]] ^ TD1[S[(t >>> 16) & 0xff]]
+								^ TD2[S[(t >>> 8) & 0xff]] ^ TD3[S[t & 0xff]];
+					}
+					d[(r << 2) + j] = t;
+				}
+			}
+			w = d;
+		}
+		rk = w;
+	}
+
+	private static int subWord(int t) {
+		return (S[t >>> 24] << 24) | (S[(t >>> 16) & 0xff] << 16)
+				| (S[(t >>> 8) & 0xff] << 8) | S[t & 0xff];
+	}
+
+	private void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+		final int[] k = rk;
+		int s0 = getInt(in, inOff) ^ c0 ^ k[0];
+		int s1 = getInt(in, inOff + 4) ^ c1 ^ k[1];
+		int s2 = getInt(in, inOff + 8) ^ c2 ^ k[2];
+		int s3 = getInt(in, inOff + 12) ^ c3 ^ k[3];
+		int t0, t1, t2, t3;
+		int r = 4;
+		for (int round = 1; round < rounds; round++, r += 4) {
+			t0 = TE0[s0 >>> 24] ^ TE1[(s1 >>> 16) & 0xff] ^ TE2[(s2 >>> 8) & 0xff] ^ TE3[s3 & 0xff] ^ k[r];
+			t1 = TE0[s1 >>> 24] ^ TE1[(s2 >>> 16) & 0xff] ^ TE2[(s3 >>> 8) & 0xff] ^ TE3[s0 & 0xff] ^ k[r + 1];
+			t2 = TE0[s2 >>> 24] ^ TE1[(s3 >>> 16) & 0xff] ^ TE2[(s0 >>> 8) & 0xff] ^ TE3[s1 & 0xff] ^ k[r + 2];
+			t3 = TE0[s3 >>> 24] ^ TE1[(s0 >>> 16) & 0xff] ^ TE2[(s1 >>> 8) & 0xff] ^ TE3[s2 & 0xff] ^ k[r + 3];
+			s0 = t0;
+			s1 = t1;
+			s2 = t2;
+			s3 = t3;
+		}
+		t0 = ((S[s0 >>> 24] << 24) | (S[(s1 >>> 16) & 0xff] << 16) | (S[(s2 >>> 8) & 0xff] << 8) | S[s3 & 0xff]) ^ k[r];
+		t1 = ((S[s1 >>> 24] << 24) | (S[(s2 >>> 16) & 0xff] << 16) | (S[(s3 >>> 8) & 0xff] << 8) | S[s0 & 0xff]) ^ k[r + 1];
+		t2 = ((S[s2 >>> 24] << 24) | (S[(s3 >>> 16) & 0xff] << 16) | (S[(s0 >>> 8) & 0xff] << 8) | S[s1 & 0xff]) ^ k[r + 2];
+		t3 = ((S[s3 >>> 24] << 24) | (S[(s0 >>> 16) & 0xff] << 16) | (S[(s1 >>> 8) & 0xff] << 8) | S[s2 & 0xff]) ^ k[r + 3];
+		if (cbc) {
+			c0 = t0;
+			c1 = t1;
+			c2 = t2;
+			c3 = t3;
+		}
+		putInt(t0, out, outOff);
+		putInt(t1, out, outOff + 4);
+		putInt(t2, out, outOff + 8);
+		putInt(t3, out, outOff + 12);
+	}
+
+	private void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) {
+		final int[] k = rk;
+		// Read the whole block first, out may be in
+		int i0 = getInt(in, inOff);
+		int i1 = getInt(in, inOff + 4);
+		int i2 = getInt(in, inOff + 8);
+		int i3 = getInt(in, inOff + 12);
+		int s0 = i0 ^ k[0];
+		int s1 = i1 ^ k[1];
+		int s2 = i2 ^ k[2];
+		int s3 = i3 ^ k[3];
+		int t0, t1, t2, t3;
+		int r = 4;
+		for (int round = 1; round < rounds; round++, r += 4) {
+			t0 = TD0[s0 >>> 24] ^ TD1[(s3 >>> 16) & 0xff] ^ TD2[(s2 >>> 8) & 0xff] ^ TD3[s1 & 0xff] ^ k[r];
+			t1 = TD0[s1 >>> 24] ^ TD1[(s0 >>> 16) & 0xff] ^ TD2[(s3 >>> 8) & 0xff] ^ TD3[s2 & 0xff] ^ k[r + 1];
+			t2 = TD0[s2 >>> 24] ^ TD1[(s1 >>> 16) & 0xff] ^ TD2[(s0 >>> 8) & 0xff] ^ TD3[s3 & 0xff] ^ k[r + 2];
+			t3 = TD0[s3 >>> 24] ^ TD1[(s2 >>> 16) & 0xff] ^ TD2[(s1 >>> 8) & 0xff] ^ TD3[s0 & 0xff] ^ k[r + 3];
+			s0 = t0;
+			s1 = t1;
+			s2 = t2;
+			s3 = t3;
+		}
+		t0 = ((SI[s0 >>> 24] << 24) | (SI[(s3 >>> 16) & 0xff] << 16) | (SI[(s2 >>> 8) & 0xff] << 8) | SI[s1 & 0xff]) ^ k[r];
+		t1 = ((SI[s1 >>> 24] << 24) | (SI[(s0 >>> 16) & 0xff] << 16) | (SI[(s3 >>> 8) & 0xff] << 8) | SI[s2 & 0xff]) ^ k[r + 1];
+		t2 = ((SI[s2 >>> 24] << 24) | (SI[(s1 >>> 16) & 0xff] << 16) | (SI[(s0 >>> 8) & 0xff] << 8) | SI[s3 & 0xff]) ^ k[r + 2];
+		t3 = ((SI[s3 >>> 24] << 24) | (SI[(s2 >>> 16) & 0xff] << 16) | (SI[(s1 >>> 8) & 0xff] << 8) | SI[s0 & 0xff]) ^ k[r + 3];
+		putInt(t0 ^ c0, out, outOff);
+		putInt(t1 ^ c1, out, outOff + 4);
+		putInt(t2 ^ c2, out, outOff + 8);
+		putInt(t3 ^ c3, out, outOff + 12);
+		if (cbc) {
+			c0 = i0;
+			c1 = i1;
+			c2 = i2;
+			c3 = i3;
+		}
+	}
+
+	private static int getInt(byte[] b, int off) {
+		return (b[off] << 24) | ((b[off + 1] & 0xff) << 16)
+				| ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+	}
+
+	private static void putInt(int v, byte[] b, int off) {
+		b[off] = (byte) (v >>> 24);
+		b[off + 1] = (byte) (v >>> 16);
+		b[off + 2] = (byte) (v >>> 8);
+		b[off + 3] = (byte) v;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.crypto;
+
+import java.security.DigestException;
+
+/**
+ * Base of the digests that hash the message in 64 byte blocks and pad it
+ * with its length in bits, MD5 and SHA-1. The partial block and the chaining
+ * state are all a digest holds, so cloning one costs a few small arrays.
+ *
+ * @author mariotaku
+ */
+abstract class BlockDigest extends MessageDigest {
+
+	/** Block size of the hash function. */
+	static final int BLOCK_SIZE = 64;
+	/** Input not yet processed, less than a block. */
+	byte[] buffer = new byte[BLOCK_SIZE];
+	/** Number of bytes hashed since the last reset. */
+	long count;
+
+	public void update(byte[] input, int offset, int len) {
+		if (offset < 0 || len < 0 || input.length - offset < len) {
+			throw new IllegalArgumentException();
+		}
+		int used = (int) count & (BLOCK_SIZE - 1);
+		count += len;
+		if (used > 0) {
+			int n = BLOCK_SIZE - used;
+			if (len < n) {
+				System.arraycopy(input, offset, buffer, used, len);
+				return;
+			}
+			System.arraycopy(input, offset, buffer, used, n);
+			processBlock(buffer, 0);
+			offset += n;
+			len -= n;
+		}
+		while (len >= BLOCK_SIZE) {
+			processBlock(input, offset);
+			offset += BLOCK_SIZE;
+			len -= BLOCK_SIZE;
+		}
+		if (len > 0) {
+			System.arraycopy(input, offset, buffer, 0, len);
+		}
+	}
+
+	public int digest(byte[] buf, int offset, int len) throws DigestException {
+		checkDigestBuffer(buf, offset, len);
+		long bits = count << 3;
+		int used = (int) count & (BLOCK_SIZE - 1);
+		buffer[used++] = (byte) 0x80;
+		if (used > BLOCK_SIZE - 8) {
+			fill(used, BLOCK_SIZE);
+			processBlock(buffer, 0);
+			used = 0;
+		}
+		fill(used, BLOCK_SIZE - 8);
+		writeLength(buffer, BLOCK_SIZE - 8, bits);
+		processBlock(buffer, 0);
+		writeState(buf, offset);
+		reset();
+		return getDigestLength();
+	}
+
+	public void reset() {
+		count = 0;
+		resetState();
+	}
+
+	/**
+	 * Copies the input buffer and counter into a new instance.
+	 *
+	 * @param copy the digest to initialize
+	 * @return <code>copy</code>
+	 */
+	BlockDigest copyTo(BlockDigest copy) {
+		System.arraycopy(buffer, 0, copy.buffer, 0, BLOCK_SIZE);
+		copy.count = count;
+		return copy;
+	}
+
+	private void fill(int from, int to) {
+		for (int i = from; i < to; i++) {
+			buffer[i] = 0;
+		}
+	}
+
+	/**
+	 * Hashes one block into the chaining state.
+	 *
+	 * @param block input data
+	 * @param offset offset of the 64 byte block
+	 */
+	abstract void processBlock(byte[] block, int offset);
+
+	/**
+	 * Sets the chaining state to its initial value.
+	 */
+	abstract void resetState();
+
+	/**
+	 * Writes the message length in bits at the end of the padding.
+	 *
+	 * @param buf output buffer
+	 * @param offset offset of the 8 bytes of length
+	 * @param bits message length in bits
+	 */
+	abstract void writeLength(byte[] buf, int offset, long bits);
+
+	/**
+	 * Writes the chaining state, that is the hash value.
+	 *
+	 * @param buf output buffer
+	 * @param offset offset of the hash value
+	 */
+	abstract void writeState(byte[] buf, int offset);
+}
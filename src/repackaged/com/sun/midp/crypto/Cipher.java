@@ -113,6 +113,8 @@ public abstract class Cipher {
 			cipher = new RSA();
 		} else if ("ARC4".equals(alg)) {
 			cipher = new ARC4();
+		} else if ("AES".equals(alg)) {
+			cipher = new AES();
 		} else {
 			throw new NoSuchAlgorithmException(transformation);
 		}
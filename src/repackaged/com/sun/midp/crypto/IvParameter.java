@@ -0,0 +1,37 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.crypto;
+
+/**
+ * The initialization vector of a block cipher in a chaining mode.
+ *
+ * @author mariotaku
+ */
+public final class IvParameter implements CryptoParameter {
+
+	/** The initialization vector. */
+	private final byte[] iv;
+
+	/**
+	 * Uses the first len bytes of iv, starting at offset, as the
+	 * initialization vector.
+	 *
+	 * @param iv the buffer with the IV
+	 * @param offset the offset in iv where the IV starts
+	 * @param len the length of the IV
+	 */
+	public IvParameter(byte[] iv, int offset, int len) {
+		this.iv = Util.cloneSubarray(iv, offset, len);
+	}
+
+	/**
+	 * Returns the initialization vector.
+	 *
+	 * @return the IV in a new buffer
+	 */
+	public byte[] getIV() {
+		return Util.cloneArray(iv);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.crypto;
+
+import java.security.DigestException;
+
+/**
+ * The MD2 message digest, as specified in RFC 1319. Only certificates
+ * signed with MD2 still need it.
+ *
+ * @author mariotaku
+ */
+final class MD2 extends MessageDigest {
+
+	/** Permutation of 0..255 constructed from the digits of pi. */
+	private static final byte[] PI_SUBST = {
+		41, 46, 67, -55, -94, -40, 124, 1, 61, 54, 84, -95, -20, -16, 6, 19,
+		98, -89, 5, -13, -64, -57, 115, -116, -104, -109, 43, -39, -68, 76, -126, -54,
+		30, -101, 87, 60, -3, -44, -32, 22, 103, 66, 111, 24, -118, 23, -27, 18,
+		-66, 78, -60, -42, -38, -98, -34, 73, -96, -5, -11, -114, -69, 47, -18, 122,
+		-87, 104, 121, -111, 21, -78, 7, 63, -108, -62, 16, -119, 11, 34, 95, 33,
+		-128, 127, 93, -102, 90, -112, 50, 39, 53, 62, -52, -25, -65, -9, -105, 3,
+		-1, 25, 48, -77, 72, -91, -75, -47, -41, 94, -110, 42, -84, 86, -86, -58,
+		79, -72, 56, -46, -106, -92, 125, -74, 118, -4, 107, -30, -100, 116, 4, -15,
+		69, -99, 112, 89, 100, 113, -121, 32, -122, 91, -49, 101, -26, 45, -88, 2,
+		27, 96, 37, -83, -82, -80, -71, -10, 28, 70, 97, 105, 52, 64, 126, 15,
+		85, 71, -93, 35, -35, 81, -81, 58, -61, 92, -7, -50, -70, -59, -22, 38,
+		44, 83, 13, 110, -123, 40, -124, 9, -45, -33, -51, -12, 65, -127, 77, 82,
+		106, -36, 55, -56, 108, -63, -85, -6, 36, -31, 123, 8, 12, -67, -79, 74,
+		120, -120, -107, -117, -29, 99, -24, 109, -23, -53, -43, -2, 59, 0, 29, 57,
+		-14, -17, -73, 14, 102, 88, -48, -28, -90, 119, 114, -8, -21, 117, 75, 10,
+		49, 68, 80, -76, -113, -19, 31, 26, -37, -103, -115, 51, -97, 17, -125, 20
+	};
+	private final byte[] state = new byte[48];
+	private final byte[] checksum = new byte[16];
+	private final byte[] buffer = new byte[16];
+	private int used;
+
+	MD2() {
+	}
+
+	public String getAlgorithm() {
+		return DIGEST_NAME_MD2;
+	}
+
+	public int getDigestLength() {
+		return DIGEST_LENGTH_MD2;
+	}
+
+	public Object clone() {
+		MD2 copy = new MD2();
+		System.arraycopy(state, 0, copy.state, 0, 48);
+		System.arraycopy(checksum, 0, copy.checksum, 0, 16);
+		System.arraycopy(buffer, 0, copy.buffer, 0, 16);
+		copy.used = used;
+		return copy;
+	}
+
+	public void reset() {
+		for (int i = 0; i < 48; i++) {
+			state[i] = 0;
+		}
+		for (int i = 0; i < 16; i++) {
+			checksum[i] = 0;
+			buffer[i] = 0;
+		}
+		used = 0;
+	}
+
+	public void update(byte[] input, int offset, int len) {
+		if (offset < 0 || len < 0 || input.length - offset < len) {
+			throw new IllegalArgumentException();
+		}
+		while (len > 0) {
+			int n = Math.min(16 - used, len);
+			System.arraycopy(input, offset, buffer, used, n);
+			used += n;
+			offset += n;
+			len -= n;
+			if (used == 16) {
+				processBlock(buffer);
+				used = 0;
+			}
+		}
+	}
+
+	public int digest(byte[] buf, int offset, int len) throws DigestException {
+		checkDigestBuffer(buf, offset, len);
+		int pad = 16 - used;
+		for (int i = used; i < 16; i++) {
+			buffer[i] = (byte) pad;
+		}
+		processBlock(buffer);
+		System.arraycopy(checksum, 0, buffer, 0, 16);
+		processBlock(buffer);
+		System.arraycopy(state, 0, buf, offset, DIGEST_LENGTH_MD2);
+		reset();
+		return DIGEST_LENGTH_MD2;
+	}
+
+	private void processBlock(byte[] block) {
+		int l = checksum[15] & 0xff;
+		for (int i = 0; i < 16; i++) {
+			state[16 + i] = block[i];
+			state[32 + i] = (byte) (state[i] ^ block[i]);
+			l = (checksum[i] ^= PI_SUBST[(block[i] ^ l) & 0xff]) & 0xff;
+		}
+		int t = 0;
+		for (int j = 0; j < 18; j++) {
+			for (int k = 0; k < 48; k++) {
+				t = (state[k] ^= PI_SUBST[t]) & 0xff;
+			}
+			t = (t + j) & 0xff;
+		}
+	}
+}
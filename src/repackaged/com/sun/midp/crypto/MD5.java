@@ -0,0 +1,126 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.crypto;
+
+/**
+ * The MD5 message digest, as specified in RFC 1321.
+ *
+ * @author mariotaku
+ */
+final class MD5 extends BlockDigest {
+
+	/** Shift amounts of each round. */
+	private static final int[] S = {
+		7, 12, 17, 22, 5, 9, 14, 20, 4, 11, 16, 23, 6, 10, 15, 21
+	};
+	/** Sine constants, the integer part of abs(sin(i + 1)) * 2^32. */
+	private static final int[] T = {
+		0xd76aa478, 0xe8c7b756, 0x242070db, 0xc1bdceee,
+		0xf57c0faf, 0x4787c62a, 0xa8304613, 0xfd469501,
+		0x698098d8, 0x8b44f7af, 0xffff5bb1, 0x895cd7be,
+		0x6b901122, 0xfd987193, 0xa679438e, 0x49b40821,
+		0xf61e2562, 0xc040b340, 0x265e5a51, 0xe9b6c7aa,
+		0xd62f105d, 0x02441453, 0xd8a1e681, 0xe7d3fbc8,
+		0x21e1cde6, 0xc33707d6, 0xf4d50d87, 0x455a14ed,
+		0xa9e3e905, 0xfcefa3f8, 0x676f02d9, 0x8d2a4c8a,
+		0xfffa3942, 0x8771f681, 0x6d9d6122, 0xfde5380c,
+		0xa4beea44, 0x4bdecfa9, 0xf6bb4b60, 0xbebfbc70,
+		0x289b7ec6, 0xeaa127fa, 0xd4ef3085, 0x04881d05,
+		0xd9d4d039, 0xe6db99e5, 0x1fa27cf8, 0xc4ac5665,
+		0xf4292244, 0x432aff97, 0xab9423a7, 0xfc93a039,
+		0x655b59c3, 0x8f0ccc92, 0xffeff47d, 0x85845dd1,
+		0x6fa87e4f, 0xfe2ce6e0, 0xa3014314, 0x4e0811a1,
+		0xf7537e82, 0xbd3af235, 0x2ad7d2bb, 0xeb86d391
+	};
+	private final int[] state = new int[4];
+	/** Block as little endian words, kept to avoid an allocation. */
+	private final int[] x = new int[16];
+
+	MD5() {
+		resetState();
+	}
+
+	public String getAlgorithm() {
+		return DIGEST_NAME_MD5;
+	}
+
+	public int getDigestLength() {
+		return DIGEST_LENGTH_MD5;
+	}
+
+	public Object clone() {
+		MD5 copy = new MD5();
+		System.arraycopy(state, 0, copy.state, 0, state.length);
+		return copyTo(copy);
+	}
+
+	void resetState() {
+		state[0] = 0x67452301;
+		state[1] = 0xefcdab89;
+		state[2] = 0x98badcfe;
+		state[3] = 0x10325476;
+	}
+
+	void processBlock(byte[] block, int offset) {
+		final int[] x = this.x;
+		for (int i = 0; i < 16; i++, offset += 4) {
+			x[i] = (block[offset] & 0xff) | ((block[offset + 1] & 0xff) << 8)
+					| ((block[offset + 2] & 0xff) << 16) | (block[offset + 3] << 24);
+		}
+
+		int a = state[0];
+		int b = state[1];
+		int c = state[2];
+		int d = state[3];
+		int f, g, t;
+		for (int i = 0; i < 64; i++) {
+			switch (i >> 4) {
+				case 0:
+					f = (b & c) | (~b & d);
+					g = i;
+					break;
+				case 1:
+					f = (d & b) | (~d & c);
+					g = (5 * i + 1) & 15;
+					break;
+				case 2:
+					f = b ^ c ^ d;
+					g = (3 * i + 5) & 15;
+					break;
+				default:
+					f = c ^ (b | ~d);
+					g = (7 * i) & 15;
+					break;
+			}
+			int s = S[((i >> 4) << 2) | (i & 3)];
+			t = a + f + T[i] + x[g];
+			a = d;
+			d = c;
+			c = b;
+			b += (t << s) | (t >>> (32 - s));
+		}
+		state[0] += a;
+		state[1] += b;
+		state[2] += c;
+		state[3] += d;
+	}
+
+	void writeLength(byte[] buf, int offset, long bits) {
+		for (int i = 0; i < 8; i++) {
+			buf[offset + i] = (byte) bits;
+			bits >>>= 8;
+		}
+	}
+
+	void writeState(byte[] buf, int offset) {
+		for (int i = 0; i < 4; i++) {
+			int s = state[i];
+			buf[offset++] = (byte) s;
+			buf[offset++] = (byte) (s >>> 8);
+			buf[offset++] = (byte) (s >>> 16);
+			buf[offset++] = (byte) (s >>> 24);
+		}
+	}
+}
@@ -27,8 +27,6 @@ package repackaged.com.sun.midp.crypto;
 
 import java.security.DigestException;
 import java.security.NoSuchAlgorithmException;
-import java.util.Vector;
-import repackaged.com.sun.midp.pki.Utils;
 
 /**
  * This MessageDigest class provides applications the functionality of a
@@ -47,8 +45,11 @@ import repackaged.com.sun.midp.pki.Utils;
  * of updates. After <code>digest</code> has been called, 
  * the <code>MessageDigest</code>
  * object is reset to its initialized state.
+ *
+ * <p>The algorithms are implemented here rather than by the platform, so
+ * {@link #clone() clone} only copies the internal state of the digest.
  */
-public class MessageDigest {
+public abstract class MessageDigest {
 
 	public static final int DIGEST_LENGTH_MD2 = 16;
 	public static final int DIGEST_LENGTH_MD5 = 16;
@@ -56,47 +57,18 @@ public class MessageDigest {
 	public static final String DIGEST_NAME_MD2 = "MD2";
 	public static final String DIGEST_NAME_MD5 = "MD5";
 	public static final String DIGEST_NAME_SHA = "SHA-1";
-	private final java.security.MessageDigest digest;
-	private final String algorithm;
-	private final Vector transactions;
 
-	private MessageDigest(final String algorithm) throws NoSuchAlgorithmException {
-		this.digest = java.security.MessageDigest.getInstance(algorithm);
-		this.algorithm = algorithm;
-		this.transactions = new Vector();
+	/**
+	 * Protected constructor, use {@link #getInstance(String)}.
+	 */
+	protected MessageDigest() {
 	}
 
 	/** 
 	 * Clones the MessageDigest object.
 	 * @return a clone of this object
 	 */
-	public Object clone() {
-		try {
-			final MessageDigest md = getInstance(algorithm);
-			final int count = transactions.size();
-			for (int i = 0; i < count; i++) {
-				final Transaction transaction = (Transaction) transactions.elementAt(i);
-				switch (transaction.action) {
-					case Transaction.UPDATE: {
-						md.update(transaction.arg0, transaction.arg1, transaction.arg2);
-						break;
-					}
-					case Transaction.DIGEST: {
-						try {
-							md.digest(transaction.arg0, transaction.arg1, transaction.arg2);
-						} catch (DigestException ex) {
-							// ignore
-						}
-						break;
-					}
-				}
-			}
-			return md;
-		} catch (NoSuchAlgorithmException ex) {
-			// should never happen
-			throw new IllegalStateException();
-		}
-	}
+	public abstract Object clone();
 
 	/*
 	 * Completes the hash computation by performing final operations
@@ -112,43 +84,24 @@ public class MessageDigest {
 	 *
 	 * @exception DigestException if an error occurs.
 	 */
-	public int digest(byte[] buf, int offset, int len) throws DigestException {
-		final int val = digest.digest(buf, offset, len);
-		transactions.addElement(new Transaction(Transaction.UPDATE, copyByteArray(buf), offset, len));
-		return val;
-	}
+	public abstract int digest(byte[] buf, int offset, int len) throws DigestException;
 
 	/** 
 	 * Gets the message digest algorithm.
 	 * @return algorithm implemented by this MessageDigest object
 	 */
-	public String getAlgorithm() {
-		return algorithm;
-	}
+	public abstract String getAlgorithm();
 
 	/** 
 	 * Gets the length (in bytes) of the hash.
 	 * @return byte-length of the hash produced by this object
 	 */
-	public int getDigestLength() {
-		if (DIGEST_NAME_MD2.equals(algorithm)) {
-			return DIGEST_LENGTH_MD2;
-		} else if (DIGEST_NAME_MD5.equals(algorithm)) {
-			return DIGEST_LENGTH_MD5;
-		} else if (DIGEST_NAME_SHA.equals(algorithm)) {
-			return DIGEST_LENGTH_SHA;
-		}
-		// should never happen
-		throw new IllegalStateException();
-	}
+	public abstract int getDigestLength();
 
 	/**
 	 * Resets the digest for further use.
 	 */
-	public void reset() {
-		digest.reset();
-		transactions.removeAllElements();
-	}
+	public abstract void reset();
 
 	/**
 	 * Updates the digest using the specified array of bytes, starting
@@ -161,10 +114,7 @@ public class MessageDigest {
 	 * @param len the number of bytes to use, starting at
 	 * <code>offset</code>.
 	 */
-	public void update(byte[] input, int offset, int len) {
-		digest.update(input, offset, len);
-		transactions.addElement(new Transaction(Transaction.UPDATE, copyByteArray(input), offset, len));
-	}
+	public abstract void update(byte[] input, int offset, int len);
 
 	/**
 	 * Generates a <code>MessageDigest</code> object that implements
@@ -184,41 +134,33 @@ public class MessageDigest {
 	 */
 	public static MessageDigest getInstance(String algorithm)
 			throws NoSuchAlgorithmException {
-		return new MessageDigest(algorithm);
-	}
-
-	private static byte[] copyByteArray(byte[] in) {
-		if (in == null) {
-			return null;
+		if (algorithm == null) {
+			throw new NoSuchAlgorithmException();
 		}
-		final int length = in.length;
-		if (length == 0) {
-			return new byte[0];
+		String name = algorithm.toUpperCase();
+		if (DIGEST_NAME_SHA.equals(name) || "SHA".equals(name)
+				|| "SHA1".equals(name)) {
+			return new SHA();
+		} else if (DIGEST_NAME_MD5.equals(name)) {
+			return new MD5();
+		} else if (DIGEST_NAME_MD2.equals(name)) {
+			return new MD2();
 		}
-		final byte[] out = new byte[length];
-		System.arraycopy(in, 0, out, 0, length);
-		return out;
+		throw new NoSuchAlgorithmException(algorithm);
 	}
 
-	private static class Transaction {
-
-		static final byte UPDATE = 0x01;
-		static final byte DIGEST = 0x02;
-		final byte action;
-		final byte[] arg0;
-		final int arg1, arg2;
-
-		Transaction(byte action, byte[] arg0, int arg1, int arg2) {
-			this.action = action;
-			this.arg0 = arg0;
-			this.arg1 = arg1;
-			this.arg2 = arg2;
-		}
-
-		public String toString() {
-			return "Transaction{" + "action=" + action + ", arg0=" + Utils.hexEncode(arg0) + ", arg1=" + arg1 + ", arg2=" + arg2 + '}';
+	/**
+	 * Checks the output buffer of <code>digest</code>.
+	 *
+	 * @param buf output buffer for the computed digest
+	 * @param offset offset into the output buffer
+	 * @param len number of bytes within buf allotted for the digest
+	 * @exception DigestException if the digest does not fit
+	 */
+	void checkDigestBuffer(byte[] buf, int offset, int len) throws DigestException {
+		int length = getDigestLength();
+		if (len < length || offset < 0 || buf.length - offset < length) {
+			throw new DigestException("Buffer too short");
 		}
-		
-		
 	}
 }
@@ -53,17 +53,6 @@ public final class RSA extends Cipher {
 	/** Number of bytes in the message to sign. */
 	private int bytesInMessage;
 
-	private static byte[] addSignByte(final byte[] orig) {
-		if (orig == null || orig.length == 0) {
-			return orig;
-		}
-		final int orig_length = orig.length;
-		final int length = orig[0] == 0x00 ? orig_length : orig_length + 1;
-		final byte[] res = new byte[length];
-		System.arraycopy(orig, 0, res, length - orig_length, orig_length);
-		return res;
-	}
-
 	private static byte[] removeSignByte(final byte[] orig) {
 		if (orig == null || orig.length == 0) {
 			return orig;
@@ -83,25 +72,18 @@ public final class RSA extends Cipher {
 	}
 
 	/**
-	 * A native method for performing modular exponentiation.
+	 * Performs the modular exponentiation of an RSA operation.
 	 *
 	 * @param data      contains the data on which exponentiation is to
 	 *                  be performed
-	 * @param exp  contains the exponent, e.g. 65537 (decimal) is 
-	 *                  written as a three-byte array containing 
-	 *                  0x01, 0x00, 0x01
-	 * @param mod   contains the modulus
+	 * @param key       the key, giving the exponent and the modulus
 	 * @param result    the result of the modular exponentiation is 
 	 *                  returned in this array
 	 * @return          length of the result in bytes
-	 * @exception IllegalArgumentException if a argument is too long for
-	 *    the native code to handle. (currently (32K - 8) bits max)
 	 */
-	private static int modExp(byte[] data, byte[] exp, byte[] mod, byte[] result) throws IllegalArgumentException {
-		final BigInteger d = new BigInteger(addSignByte(data));
-		final BigInteger e = new BigInteger(addSignByte(exp));
-		final BigInteger m = new BigInteger(addSignByte(mod));
-		final byte[] val = removeSignByte(d.modPow(e, m).toByteArray());
+	private static int modExp(byte[] data, RSAKey key, byte[] result) {
+		final BigInteger d = new BigInteger(1, data);
+		final byte[] val = removeSignByte(key.getModContext().modPow(d, key.getExponentValue()).toByteArray());
 		final int len = val.length;
 		System.arraycopy(val, 0, result, 0, len);
 		return len;
@@ -121,18 +103,12 @@ public final class RSA extends Cipher {
 	private byte[] doIt(byte[] data) {
 		int modLen = ckey.getModulusLen();
 		byte[] buf = new byte[modLen];
-		byte[] mod = new byte[modLen];
+		byte[] tmp = new byte[modLen];
 		int bufLen;
 
 		// Note: Both RSAPublicKey and RSAPrivateKey provide the same
 		// interface
-		short val = ckey.getModulus(mod, (short) 0);
-		byte[] tmp = new byte[modLen];
-		val = ckey.getExponent(tmp, (short) 0);
-		byte[] exp = new byte[val];
-		System.arraycopy(tmp, 0, exp, 0, val);
-
-		bufLen = modExp(data, exp, mod, buf);
+		bufLen = modExp(data, ckey, buf);
 
 		if (bufLen == modLen) {
 			return buf;
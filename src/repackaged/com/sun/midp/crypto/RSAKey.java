@@ -26,6 +26,7 @@
 package repackaged.com.sun.midp.crypto;
 
 import java.security.Key;
+import repackaged.java.math.BigInteger;
 
 /**
  * Implements RSAKey with methods to set and get RSA exponent
@@ -40,6 +41,10 @@ class RSAKey implements Key {
 	 * is always a multiple of 8.
 	 */
 	byte[] mod = null;
+	/** Modulus context, created by the first RSA operation. */
+	private BigInteger.ModContext modContext = null;
+	/** The exponent as a number, created by the first RSA operation. */
+	private BigInteger exponent = null;
 
 	/**
 	 * Constructor for RSA public key.
@@ -172,6 +177,29 @@ class RSAKey implements Key {
 		return ((short) mod.length);
 	}
 
+	/**
+	 * Gets the modulus context of the key, so the values derived from
+	 * the modulus are computed once for all the operations with the key.
+	 * @return modulus context
+	 */
+	synchronized BigInteger.ModContext getModContext() {
+		if (modContext == null) {
+			modContext = new BigInteger.ModContext(new BigInteger(1, mod));
+		}
+		return modContext;
+	}
+
+	/**
+	 * Gets the exponent of the key as a number.
+	 * @return exponent
+	 */
+	synchronized BigInteger getExponentValue() {
+		if (exponent == null) {
+			exponent = new BigInteger(1, exp);
+		}
+		return exponent;
+	}
+
 	/**
 	 * Set the exponent for the key.
 	 * @param buf input buffer which hold the exponent
@@ -0,0 +1,117 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.crypto;
+
+/**
+ * The SHA-1 message digest, as specified in FIPS 180-2.
+ *
+ * @author mariotaku
+ */
+final class SHA extends BlockDigest {
+
+	private final int[] state = new int[5];
+	/** Message schedule, kept to avoid an allocation for each block. */
+	private final int[] w = new int[80];
+
+	SHA() {
+		resetState();
+	}
+
+	public String getAlgorithm() {
+		return DIGEST_NAME_SHA;
+	}
+
+	public int getDigestLength() {
+		return DIGEST_LENGTH_SHA;
+	}
+
+	public Object clone() {
+		SHA copy = new SHA();
+		System.arraycopy(state, 0, copy.state, 0, state.length);
+		return copyTo(copy);
+	}
+
+	void resetState() {
+		state[0] = 0x67452301;
+		state[1] = 0xefcdab89;
+		state[2] = 0x98badcfe;
+		state[3] = 0x10325476;
+		state[4] = 0xc3d2e1f0;
+	}
+
+	void processBlock(byte[] block, int offset) {
+		final int[] w = this.w;
+		for (int i = 0; i < 16; i++, offset += 4) {
+			w[i] = (block[offset] << 24) | ((block[offset + 1] & 0xff) << 16)
+					| ((block[offset + 2] & 0xff) << 8) | (block[offset + 3] & 0xff);
+		}
+		for (int i = 16; i < 80; i++) {
+			int x = w[i - 3] ^ w[i - 8] ^ w[i - 14] ^ w[i - 16];
+			w[i] = (x << 1) | (x >>> 31);
+		}
+
+		int a = state[0];
+		int b = state[1];
+		int c = state[2];
+		int d = state[3];
+		int e = state[4];
+		int t;
+		int i = 0;
+		for (; i < 20; i++) {
+			t = ((a << 5) | (a >>> 27)) + ((b & c) | (~b & d)) + e + w[i] + 0x5a827999;
+			e = d;
+			d = c;
+			c = (b << 30) | (b >>> 2);
+			b = a;
+			a = t;
+		}
+		for (; i < 40; i++) {
+			t = ((a << 5) | (a >>> 27)) + (b ^ c ^ d) + e + w[i] + 0x6ed9eba1;
+			e = d;
+			d = c;
+			c = (b << 30) | (b >>> 2);
+			b = a;
+			a = t;
+		}
+		for (; i < 60; i++) {
+			t = ((a << 5) | (a >>> 27)) + ((b & c) | (b & d) | (c & d)) + e + w[i] + 0x8f1bbcdc;
+			e = d;
+			d = c;
+			c = (b << 30) | (b >>> 2);
+			b = a;
+			a = t;
+		}
+		for (; i < 80; i++) {
+			t = ((a << 5) | (a >>> 27)) + (b ^ c ^ d) + e + w[i] + 0xca62c1d6;
+			e = d;
+			d = c;
+			c = (b << 30) | (b >>> 2);
+			b = a;
+			a = t;
+		}
+		state[0] += a;
+		state[1] += b;
+		state[2] += c;
+		state[3] += d;
+		state[4] += e;
+	}
+
+	void writeLength(byte[] buf, int offset, long bits) {
+		for (int i = 7; i >= 0; i--) {
+			buf[offset + i] = (byte) bits;
+			bits >>>= 8;
+		}
+	}
+
+	void writeState(byte[] buf, int offset) {
+		for (int i = 0; i < 5; i++) {
+			int s = state[i];
+			buf[offset++] = (byte) (s >>> 24);
+			buf[offset++] = (byte) (s >>> 16);
+			buf[offset++] = (byte) (s >>> 8);
+			buf[offset++] = (byte) s;
+		}
+	}
+}
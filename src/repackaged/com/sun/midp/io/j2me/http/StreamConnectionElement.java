@@ -70,6 +70,42 @@ public class StreamConnectionElement implements StreamConnection {
 		m_time = System.currentTimeMillis();
 	}
 
+	/**
+	 * Check if this element is a connection to the given protocol,
+	 * host and port.
+	 *
+	 * @param p_protocol protocol for the connection
+	 * @param p_host     hostname for the connection
+	 * @param p_port     port number for the connection
+	 *
+	 * @return true if the element matches
+	 */
+	boolean matches(String p_protocol, String p_host, int p_port) {
+		return p_port == m_port && p_host.equals(m_host)
+				&& p_protocol.equals(m_protocol);
+	}
+
+	/**
+	 * Check if the saved connection can still be used for another
+	 * request. An idle HTTP 1.1 connection should have no pending
+	 * input, any data here means the server has sent a close or
+	 * garbage and the connection must not be reused.
+	 *
+	 * @return true if the connection looks healthy
+	 */
+	boolean isReusable() {
+		if (m_stream == null || m_data_input_stream == null
+				|| m_data_output_stream == null) {
+			return false;
+		}
+
+		try {
+			return m_data_input_stream.available() == 0;
+		} catch (IOException ioe) {
+			return false;
+		}
+	}
+
 	/**
 	 * Clear the fields of the saved connection and release any 
 	 * system resources. Any open input and output streams are closed
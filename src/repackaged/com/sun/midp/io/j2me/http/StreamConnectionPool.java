@@ -19,7 +19,9 @@ package repackaged.com.sun.midp.io.j2me.http;
  * in the pool at any one time. If for some reason there are no matching
  * connections available - a new one may be created (as long as it does not
  * exceed the maximum). If there number of connections in the pool exceeds 
- * the maximum - an adjustment is made to delete unused connections. Once
+ * the maximum - an adjustment is made to delete unused connections. The
+ * same is done when the connections to one protocol, host and port exceed
+ * the per host maximum. Once
  * that happens (if at all) a new connection is created. If it can not create
  * a new connection an exception is raised. Once a connection is close down
  * a connection must be returned to the pool as inactive for another use.
@@ -58,6 +60,14 @@ public final class StreamConnectionPool {
 	private Vector m_connections;
 	/** maximum connections */
 	private int m_max_connections;
+	/** maximum connections to the same protocol, host and port */
+	private int m_max_connections_per_host;
+	/** number of requests satisfied by a pooled connection */
+	private int m_hits;
+	/** number of requests that had to open a new connection */
+	private int m_misses;
+	/** number of pooled connections closed by the pool */
+	private int m_evictions;
 
 	/**
 	 * Create a new instance of this class.
@@ -71,16 +81,35 @@ public final class StreamConnectionPool {
 	 */
 	public StreamConnectionPool(int number_of_connections,
 			long connectionLingerTime) {
+		this(number_of_connections, number_of_connections,
+				connectionLingerTime);
+	}
+
+	/**
+	 * Create a new instance of this class with a separate limit for
+	 * the connections kept to any one protocol, host and port.
+	 *
+	 * @param number_of_connections maximum number of connections in the
+	 *       pool, must greater than zero.
+	 * @param connections_per_host maximum number of connections to the
+	 *       same protocol, host and port, must greater than zero.
+	 * @param connectionLingerTime how many millseconds a connection should
+	 *       stay in the pool after its last use
+	 */
+	public StreamConnectionPool(int number_of_connections,
+			int connections_per_host, long connectionLingerTime) {
 		this.m_max_connections = number_of_connections;
+		this.m_max_connections_per_host =
+				Math.min(connections_per_host, number_of_connections);
 		this.m_connectionLingerTime = connectionLingerTime;
 		m_connections = new Vector(m_max_connections);
 	}
 
 	/**
 	 * Tries to add a reuseable connection to the connection pool.
-	 * Replace any not in use connections to the same host and port.
-	 * Will not add to the same host and port in use. Will replace
-	 * oldest not in use element (if any) if the pool is full.
+	 * Will not add more than the per host maximum of connections
+	 * to the same protocol, host and port. Will replace the oldest
+	 * not in use element (if any) if the pool is full.
 	 * 
 	 * @param p_protocol            The protocol for the connection
 	 * @param p_host                The Hostname for the connection
@@ -98,49 +127,60 @@ public final class StreamConnectionPool {
 			DataOutputStream dos, DataInputStream dis) {
 
 		StreamConnectionElement oldestNotInUse = null;
+		StreamConnectionElement oldestSameHost = null;
+		int sameHost = 0;
+
+		removeStale(System.currentTimeMillis());
 
-		// find the last unused element
+		// count the connections to this host and find the oldest unused
 		Enumeration cons = m_connections.elements();
 		while (cons.hasMoreElements()) {
 			StreamConnectionElement sce =
 					(StreamConnectionElement) cons.nextElement();
 
-			if (sce.m_in_use) {
-				if (p_host.equals(sce.m_host) && p_port == sce.m_port) {
-					return false;
+			if (sce.matches(p_protocol, p_host, p_port)) {
+				sameHost++;
+
+				if (!sce.m_in_use && (oldestSameHost == null
+						|| sce.m_time < oldestSameHost.m_time)) {
+					oldestSameHost = sce;
 				}
+			}
 
-				continue;
+			if (!sce.m_in_use && (oldestNotInUse == null
+					|| sce.m_time < oldestNotInUse.m_time)) {
+				// save the oldest not in use, it may be removed later
+				oldestNotInUse = sce;
 			}
+		}
 
-			// if the connection is a duplicate, delete it
-			if (p_host.equals(sce.m_host) && p_port == sce.m_port) {
-				// no protocol duplicates on host and port
-				sce.close();
-				m_connections.removeElement(sce);
-				break;
-			} else {
-				if (oldestNotInUse == null
-						|| sce.m_time < oldestNotInUse.m_time) {
-					// save the oldest not in use, it may be removed later
-					oldestNotInUse = sce;
-				}
+		/*
+		 * first make room for this host - replace the oldest unused
+		 * connection to the same host, if there is none all the
+		 * connections to this host are busy so do not add.
+		 */
+		if (sameHost >= m_max_connections_per_host) {
+			if (oldestSameHost == null) {
+				return false;
+			}
+
+			evict(oldestSameHost);
+
+			if (oldestNotInUse == oldestSameHost) {
+				oldestNotInUse = null;
 			}
 		}
 
 		/*
-		 * first check and see if the maximum number of connections
-		 * has been reached - if so delete the first one in the list (FIFO)
-		 *   or
-		 * if this port and host are already in the pool.
+		 * then check and see if the maximum number of connections
+		 * has been reached - if so delete the oldest unused one.
 		 */
 		if (m_connections.size() >= m_max_connections) {
 			if (oldestNotInUse == null) {
 				return false;
 			}
 
-			oldestNotInUse.close();
-			m_connections.removeElement(oldestNotInUse);
+			evict(oldestNotInUse);
 		}
 
 		m_connections.addElement(new StreamConnectionElement(p_protocol,
@@ -163,7 +203,9 @@ public final class StreamConnectionPool {
 	 * get an available connection and set the boolean flag to 
 	 * true (unavailable) in the connection pool.
 	 * Also removes any stale connections, since this method gets
-	 * called more than add or remove.
+	 * called more than add or remove. The most recently used healthy
+	 * connection is handed out, connections which fail the health
+	 * check are closed.
 	 *
 	 * @param p_protocol            The protocol for the connection
 	 * @param p_host                The Hostname for the connection
@@ -176,36 +218,32 @@ public final class StreamConnectionPool {
 			int p_port) {
 
 		StreamConnectionElement result = null;
-		long c_time = System.currentTimeMillis();
 
-		Enumeration cons = m_connections.elements();
-		while (cons.hasMoreElements()) {
+		removeStale(System.currentTimeMillis());
+
+		for (int i = m_connections.size() - 1; i >= 0; i--) {
 			StreamConnectionElement sce =
-					(StreamConnectionElement) cons.nextElement();
+					(StreamConnectionElement) m_connections.elementAt(i);
 
-			if ((c_time - sce.m_time) > m_connectionLingerTime) {
-				if (!sce.m_in_use) {
-					sce.close();
-				} else {
-					// signal returnToUse() to close
-					sce.m_removed = true;
-				}
+			if (sce.m_in_use || !sce.matches(p_protocol, p_host, p_port)) {
+				continue;
+			}
 
-				m_connections.removeElement(sce);
+			if (!sce.isReusable()) {
+				evict(sce);
 				continue;
 			}
 
-			if (p_host.equals(sce.m_host) && p_port == sce.m_port
-					&& p_protocol.equals(sce.m_protocol) && !sce.m_in_use) {
+			if (result == null || sce.m_time > result.m_time) {
 				result = sce;
-
-				// do not break out so old connections can be removed
-				continue;
 			}
 		}
 
 		if (result != null) {
 			result.m_in_use = true;
+			m_hits++;
+		} else {
+			m_misses++;
 		}
 
 		return result;
@@ -224,9 +262,147 @@ public final class StreamConnectionPool {
 		if (returned.m_removed) {
 			// the connection was out too long
 			returned.close();
+			m_evictions++;
 			return;
 		}
 
 		returned.m_time = System.currentTimeMillis();
 	}
+
+	/**
+	 * Close all the connections which are not in use.
+	 */
+	public synchronized void clear() {
+		for (int i = m_connections.size() - 1; i >= 0; i--) {
+			StreamConnectionElement sce =
+					(StreamConnectionElement) m_connections.elementAt(i);
+
+			if (!sce.m_in_use) {
+				evict(sce);
+			}
+		}
+	}
+
+	/**
+	 * Get the number of connections in the pool to the given protocol,
+	 * host and port, including the ones in use.
+	 *
+	 * @param p_protocol            The protocol for the connection
+	 * @param p_host                The Hostname for the connection
+	 * @param p_port                The port number for the connection
+	 *
+	 * @return                      number of pooled connections
+	 */
+	public synchronized int size(String p_protocol, String p_host,
+			int p_port) {
+		int count = 0;
+
+		Enumeration cons = m_connections.elements();
+		while (cons.hasMoreElements()) {
+			StreamConnectionElement sce =
+					(StreamConnectionElement) cons.nextElement();
+
+			if (sce.matches(p_protocol, p_host, p_port)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Get the number of connections in the pool, including the ones
+	 * in use.
+	 *
+	 * @return                      number of pooled connections
+	 */
+	public synchronized int size() {
+		return m_connections.size();
+	}
+
+	/**
+	 * Get the maximum number of connections in the pool.
+	 *
+	 * @return                      maximum number of connections
+	 */
+	public int getMaxConnections() {
+		return m_max_connections;
+	}
+
+	/**
+	 * Get the maximum number of connections to the same protocol, host
+	 * and port.
+	 *
+	 * @return                      maximum number of connections per host
+	 */
+	public int getMaxConnectionsPerHost() {
+		return m_max_connections_per_host;
+	}
+
+	/**
+	 * Get the number of times {@link #get} returned a pooled connection.
+	 *
+	 * @return                      number of hits
+	 */
+	public synchronized int getHitCount() {
+		return m_hits;
+	}
+
+	/**
+	 * Get the number of times {@link #get} found no usable connection.
+	 *
+	 * @return                      number of misses
+	 */
+	public synchronized int getMissCount() {
+		return m_misses;
+	}
+
+	/**
+	 * Get the number of pooled connections closed because they lingered
+	 * too long, failed the health check or were replaced.
+	 *
+	 * @return                      number of evictions
+	 */
+	public synchronized int getEvictionCount() {
+		return m_evictions;
+	}
+
+	/**
+	 * Remove the connections that have not been used for longer than
+	 * the linger time. Connections in use are closed once they are
+	 * returned.
+	 *
+	 * @param c_time                The current time in milliseconds
+	 */
+	private void removeStale(long c_time) {
+		for (int i = m_connections.size() - 1; i >= 0; i--) {
+			StreamConnectionElement sce =
+					(StreamConnectionElement) m_connections.elementAt(i);
+
+			if ((c_time - sce.m_time) <= m_connectionLingerTime) {
+				continue;
+			}
+
+			if (!sce.m_in_use) {
+				sce.close();
+				m_evictions++;
+			} else {
+				// signal returnToUse() to close
+				sce.m_removed = true;
+			}
+
+			m_connections.removeElementAt(i);
+		}
+	}
+
+	/**
+	 * Close a connection which is not in use and remove it from the pool.
+	 *
+	 * @param sce                 The stream connection element to remove
+	 */
+	private void evict(StreamConnectionElement sce) {
+		sce.close();
+		m_connections.removeElement(sce);
+		m_evictions++;
+	}
 }
@@ -1064,6 +1064,21 @@ public class X509Certificate implements Certificate {
 		return res;
 	}
 
+	/**
+	 * Gets the ASN.1 DER encoding of this certificate.
+	 * <P />
+	 * @return a copy of the encoding, or null if this certificate
+	 * was not created from an encoding
+	 */
+	public byte[] getEncoded() {
+		if (enc == null) {
+			return null;
+		}
+		byte[] res = new byte[enc.length];
+		System.arraycopy(enc, 0, res, 0, res.length);
+		return res;
+	}
+
 	/**
 	 * Gets the name of this certificate's issuer. <BR />
 	 * <B>NOTE:</B> The corresponding method in the standard edition
@@ -0,0 +1,289 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.ssl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.DigestException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Vector;
+import javax.microedition.rms.RecordStore;
+import javax.microedition.rms.RecordStoreException;
+import repackaged.com.sun.midp.crypto.MessageDigest;
+import repackaged.com.sun.midp.pki.Utils;
+import repackaged.com.sun.midp.pki.X509Certificate;
+
+/**
+ * The cache of server certificate chains already accepted by a full
+ * handshake. A chain is identified by the SHA-1 hash of its server and
+ * issuer certificates, so a server sending the same chain again gets its
+ * parsed certificate back without decoding and hashing the chain. Entries
+ * are dropped when the server certificate expires, and the least recently
+ * used one when the cache is full. The cache can be saved to a record
+ * store, in which case the certificates are decoded again on first use.
+ *
+ * @author mariotaku
+ */
+public final class CertificateCache {
+
+	/** Default maximum number of cached chains. */
+	public static final int DEFAULT_CAPACITY = 4;
+	/** Version of the record store format. */
+	private static final byte STORE_VERSION = 1;
+
+	/** Cached chains, the most recently used first. */
+	private static final Vector entries = new Vector();
+	private static int capacity = DEFAULT_CAPACITY;
+	/** Record store of the persistent cache, or null. */
+	private static String recordStoreName = null;
+	private static int hitCount = 0;
+	private static int missCount = 0;
+
+	/** A chain accepted before. */
+	private static class Entry {
+
+		/** SHA-1 of the server and issuer certificates. */
+		byte[] key;
+		/** Encoding of the server certificate. */
+		byte[] encoded;
+		/** Server certificate, decoded on first use after loading. */
+		X509Certificate cert;
+		/** Expiry of the server certificate. */
+		long notAfter;
+	}
+
+	private CertificateCache() {
+	}
+
+	/**
+	 * Saves the cached chains to the record store <code>name</code> from
+	 * now on, after loading the chains it holds. Passing null keeps the
+	 * chains in memory only.
+	 *
+	 * @param name record store name or null
+	 */
+	public static synchronized void setRecordStoreName(String name) {
+		recordStoreName = name;
+		if (name != null) {
+			load();
+		}
+	}
+
+	/**
+	 * @param maxChains maximum number of cached chains
+	 */
+	public static synchronized void setCapacity(int maxChains) {
+		capacity = Math.max(1, maxChains);
+		if (trim()) {
+			save();
+		}
+	}
+
+	/**
+	 * @return number of chains taken from the cache instead of being
+	 *         decoded
+	 */
+	public static synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return number of chains that had to be decoded
+	 */
+	public static synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Removes all the cached chains, and the saved ones.
+	 */
+	public static synchronized void clear() {
+		entries.removeAllElements();
+		save();
+	}
+
+	/**
+	 * Computes the key of a chain.
+	 *
+	 * @param msg buffer holding the chain
+	 * @param certOff offset of the server certificate
+	 * @param certLen length of the server certificate
+	 * @param issuerOff offset of the issuer certificate
+	 * @param issuerLen length of the issuer certificate, 0 if the chain
+	 *            has a single certificate
+	 * @return the key of the chain
+	 */
+	static byte[] getKey(byte[] msg, int certOff, int certLen, int issuerOff, int issuerLen) {
+		try {
+			MessageDigest md = MessageDigest.getInstance(MessageDigest.DIGEST_NAME_SHA);
+			md.update(msg, certOff, certLen);
+			md.update(msg, issuerOff, issuerLen);
+			byte[] key = new byte[MessageDigest.DIGEST_LENGTH_SHA];
+			md.digest(key, 0, key.length);
+			return key;
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-1 not available");
+		} catch (DigestException e) {
+			throw new RuntimeException("SHA-1 not available");
+		}
+	}
+
+	/**
+	 * Gets the server certificate of an accepted chain.
+	 *
+	 * @param key key of the chain
+	 * @return the server certificate, or null if the chain was not
+	 *         accepted before or its certificate has expired
+	 */
+	static synchronized X509Certificate get(byte[] key) {
+		int idx = indexOf(key);
+		if (idx != -1) {
+			Entry entry = (Entry) entries.elementAt(idx);
+			entries.removeElementAt(idx);
+			if (entry.notAfter >= System.currentTimeMillis()) {
+				if (entry.cert == null) {
+					try {
+						entry.cert = X509Certificate.generateCertificate(entry.encoded, 0,
+								entry.encoded.length);
+					} catch (IOException e) {
+					}
+				}
+				if (entry.cert != null) {
+					entry.encoded = null;
+					entries.insertElementAt(entry, 0);
+					hitCount++;
+					return entry.cert;
+				}
+			}
+			save();
+		}
+		missCount++;
+		return null;
+	}
+
+	/**
+	 * Adds an accepted chain.
+	 *
+	 * @param key key of the chain
+	 * @param cert server certificate of the chain
+	 */
+	static synchronized void add(byte[] key, X509Certificate cert) {
+		if (cert.getNotAfter() < System.currentTimeMillis()) {
+			return;
+		}
+		int idx = indexOf(key);
+		if (idx != -1) {
+			entries.removeElementAt(idx);
+		}
+		Entry entry = new Entry();
+		entry.key = key;
+		entry.cert = cert;
+		entry.notAfter = cert.getNotAfter();
+		entries.insertElementAt(entry, 0);
+		trim();
+		save();
+	}
+
+	private static int indexOf(byte[] key) {
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = (Entry) entries.elementAt(i);
+			if (Utils.byteMatch(entry.key, 0, key, 0, key.length)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Drops the least recently used chains over the capacity.
+	 *
+	 * @return true if a chain was dropped
+	 */
+	private static boolean trim() {
+		boolean trimmed = false;
+		while (entries.size() > capacity) {
+			entries.removeElementAt(entries.size() - 1);
+			trimmed = true;
+		}
+		return trimmed;
+	}
+
+	/**
+	 * Reads the saved chains that have not expired.
+	 */
+	private static void load() {
+		RecordStore rs = null;
+		try {
+			rs = RecordStore.openRecordStore(recordStoreName, true);
+			if (rs.getNumRecords() == 0) {
+				return;
+			}
+			byte[] data = rs.getRecord(1);
+			if (data == null) {
+				return;
+			}
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			if (in.readByte() != STORE_VERSION) {
+				return;
+			}
+			long now = System.currentTimeMillis();
+			int count = in.readUnsignedByte();
+			for (int i = 0; i < count; i++) {
+				Entry entry = new Entry();
+				entry.key = SessionStore.readBytes(in);
+				entry.notAfter = in.readLong();
+				entry.encoded = SessionStore.readBytes(in);
+				if (entry.notAfter >= now && entry.encoded.length != 0
+						&& indexOf(entry.key) == -1) {
+					entries.addElement(entry);
+				}
+			}
+			trim();
+		} catch (IOException e) {
+			// A damaged store only costs decoding the chains again
+		} catch (RecordStoreException e) {
+		} finally {
+			SessionStore.close(rs);
+		}
+	}
+
+	/**
+	 * Writes the cached chains to the record store, if any.
+	 */
+	private static void save() {
+		if (recordStoreName == null) {
+			return;
+		}
+		RecordStore rs = null;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(STORE_VERSION);
+			out.writeByte(entries.size());
+			for (int i = 0; i < entries.size(); i++) {
+				Entry entry = (Entry) entries.elementAt(i);
+				SessionStore.writeBytes(out, entry.key);
+				out.writeLong(entry.notAfter);
+				SessionStore.writeBytes(out, entry.cert != null
+						? entry.cert.getEncoded() : entry.encoded);
+			}
+			byte[] data = bytes.toByteArray();
+
+			rs = RecordStore.openRecordStore(recordStoreName, true);
+			if (rs.getNumRecords() == 0) {
+				rs.addRecord(data, 0, data.length);
+			} else {
+				rs.setRecord(1, data, 0, data.length);
+			}
+		} catch (IOException e) {
+		} catch (RecordStoreException e) {
+		} finally {
+			SessionStore.close(rs);
+		}
+	}
+}
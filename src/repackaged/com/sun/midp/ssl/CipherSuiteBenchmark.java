@@ -0,0 +1,165 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.ssl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Measures the record layer throughput of the supported cipher suites: a
+ * client record layer encodes full application data records, which a server
+ * record layer decodes from memory, so the numbers include the cipher, the
+ * MAC and the padding but no network. Run it on the device, e.g. from a
+ * debug MIDlet, to compare AES-CBC with the ARC4 suites.
+ *
+ * @author mariotaku
+ */
+public final class CipherSuiteBenchmark {
+
+	/** Suites measured, in the order they are proposed. */
+	private static final byte[] SUITES = {
+		Handshake.AES_128_CBC_SHA, Handshake.AES_256_CBC_SHA,
+		Handshake.ARCFOUR_128_SHA, Handshake.ARCFOUR_128_MD5
+	};
+	/** Names of the suites measured. */
+	private static final String[] NAMES = {
+		"AES_128_CBC_SHA", "AES_256_CBC_SHA", "ARC4_128_SHA", "ARC4_128_MD5"
+	};
+	/** Size of the records, the largest allowed plain text. */
+	private static final int RECORD_SIZE = 16384;
+
+	private CipherSuiteBenchmark() {
+	}
+
+	/**
+	 * Encodes and decodes records with each suite under TLS 1.0.
+	 *
+	 * @param records number of 16 KB records per suite
+	 * @return one line per suite with the encode and decode speeds in KB/s
+	 *
+	 * @exception IOException if a record cannot be decoded
+	 * @exception GeneralSecurityException if a suite is not in the build
+	 */
+	public static String run(int records) throws IOException,
+			GeneralSecurityException {
+		final StringBuffer result = new StringBuffer();
+		for (int i = 0; i < SUITES.length; i++) {
+			result.append(NAMES[i]).append(": ");
+			run(SUITES[i], records, result);
+			result.append('\n');
+		}
+		return result.toString();
+	}
+
+	private static void run(byte suite, int records, StringBuffer result)
+			throws IOException, GeneralSecurityException {
+		final byte[] clientRand = new byte[32];
+		final byte[] serverRand = new byte[32];
+		final byte[] master = new byte[48];
+		final byte[] data = new byte[RECORD_SIZE];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		for (int i = 0; i < master.length; i++) {
+			master[i] = (byte) (i * 7);
+		}
+
+		final Loopback loopback = new Loopback(RECORD_SIZE + 1024);
+		final Record writer = new Record(null, loopback.sink);
+		final Record reader = new Record(loopback, null);
+		writer.setVersion(Record.TLS_VERSION);
+		reader.setVersion(Record.TLS_VERSION);
+		writer.init(Record.CLIENT, clientRand, serverRand, suite, master);
+		reader.init(Record.SERVER, clientRand, serverRand, suite, master);
+
+		// Turns encoding on at both ends
+		writer.wrRec(Record.CCS, new byte[] {1}, 0, 1);
+		reader.rdRec(true, Record.CCS);
+
+		long encodeTime = 0;
+		long decodeTime = 0;
+		for (int i = 0; i < records; i++) {
+			final long start = System.currentTimeMillis();
+			writer.wrRec(Record.APP, data, 0, RECORD_SIZE);
+			final long encoded = System.currentTimeMillis();
+			int received = 0;
+			// CBC records are split in two
+			while (loopback.available() > 0) {
+				reader.rdRec(true, Record.APP);
+				received += reader.plainTextLength;
+			}
+			decodeTime += System.currentTimeMillis() - encoded;
+			encodeTime += encoded - start;
+			if (received != RECORD_SIZE) {
+				throw new IOException("Decoded " + received + " bytes");
+			}
+		}
+		final long bytes = (long) records * RECORD_SIZE;
+		result.append("encode ").append(speed(bytes, encodeTime))
+				.append(" KB/s, decode ").append(speed(bytes, decodeTime))
+				.append(" KB/s");
+	}
+
+	/**
+	 * @return KB/s, counting at least one ms
+	 */
+	private static long speed(long bytes, long millis) {
+		return bytes * 1000 / 1024 / Math.max(millis, 1);
+	}
+
+	/**
+	 * A buffer read by the decoding record layer, holding what the
+	 * encoding one wrote since it was last read out.
+	 */
+	private static final class Loopback extends InputStream {
+
+		private byte[] buf;
+		private int count;
+		private int pos;
+		final OutputStream sink = new OutputStream() {
+
+			public void write(int b) throws IOException {
+				write(new byte[] {(byte) b}, 0, 1);
+			}
+
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (pos == count) {
+					pos = count = 0;
+				}
+				if (count + len > buf.length) {
+					final byte[] grown = new byte[count + len];
+					System.arraycopy(buf, 0, grown, 0, count);
+					buf = grown;
+				}
+				System.arraycopy(b, off, buf, count, len);
+				count += len;
+			}
+		};
+
+		Loopback(int capacity) {
+			buf = new byte[capacity];
+		}
+
+		public int read() throws IOException {
+			return pos < count ? buf[pos++] & 0xff : -1;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (pos == count) {
+				return -1;
+			}
+			final int n = Math.min(len, count - pos);
+			System.arraycopy(buf, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+
+		public int available() throws IOException {
+			return count - pos;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.ssl;
+
+import java.security.DigestException;
+import repackaged.com.sun.midp.crypto.MessageDigest;
+
+/**
+ * HMAC (RFC 2104) on MD5 or SHA-1, used by TLS for the record MAC and the
+ * PRF. The padded keys are computed once, so each MAC only hashes the data
+ * and the two pads.
+ *
+ * @author mariotaku
+ */
+final class HMAC {
+
+	/** Block size of MD5 and SHA-1. */
+	private static final int BLOCK_SIZE = 64;
+	private final MessageDigest digest;
+	private final byte[] innerPad = new byte[BLOCK_SIZE];
+	private final byte[] outerPad = new byte[BLOCK_SIZE];
+	private final byte[] innerHash;
+
+	/**
+	 * @param digest digest used by this HMAC only
+	 * @param key byte array containing the key
+	 * @param off offset of the key
+	 * @param len length of the key
+	 */
+	HMAC(MessageDigest digest, byte[] key, int off, int len) {
+		this.digest = digest;
+		innerHash = new byte[digest.getDigestLength()];
+		digest.reset();
+		if (len > BLOCK_SIZE) {
+			// Longer keys are replaced by their hash
+			digest.update(key, off, len);
+			finish(innerHash, 0);
+			key = innerHash;
+			off = 0;
+			len = innerHash.length;
+		}
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			final int b = i < len ? key[off + i] : 0;
+			innerPad[i] = (byte) (b ^ 0x36);
+			outerPad[i] = (byte) (b ^ 0x5c);
+		}
+		digest.update(innerPad, 0, BLOCK_SIZE);
+	}
+
+	/**
+	 * @return length of the MAC
+	 */
+	int getLength() {
+		return innerHash.length;
+	}
+
+	void update(byte[] buf, int off, int len) {
+		digest.update(buf, off, len);
+	}
+
+	/**
+	 * Writes the MAC of the data given since the last MAC and starts the
+	 * next one.
+	 *
+	 * @param mac byte array receiving the MAC
+	 * @param off offset of the MAC in mac
+	 */
+	void doFinal(byte[] mac, int off) {
+		finish(innerHash, 0);
+		digest.update(outerPad, 0, BLOCK_SIZE);
+		digest.update(innerHash, 0, innerHash.length);
+		finish(mac, off);
+		digest.update(innerPad, 0, BLOCK_SIZE);
+	}
+
+	/**
+	 * Drops the data given since the last MAC.
+	 */
+	void reset() {
+		digest.reset();
+		digest.update(innerPad, 0, BLOCK_SIZE);
+	}
+
+	private void finish(byte[] buf, int off) {
+		try {
+			digest.digest(buf, off, innerHash.length);
+		} catch (DigestException e) {
+			// Ignore this exception, it should never happen
+		}
+	}
+}
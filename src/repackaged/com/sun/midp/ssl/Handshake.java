@@ -48,6 +48,10 @@ import repackaged.com.sun.midp.pki.X509Certificate;
 // visible only within this package
 class Handshake {
 
+	/** AES_256_CBC_SHA (0x35). */
+	static final byte AES_256_CBC_SHA = 0x35;
+	/** AES_128_CBC_SHA (0x2F). */
+	static final byte AES_128_CBC_SHA = 0x2F;
 	/** ARCFOUR_128_SHA (0x05). */
 	static final byte ARCFOUR_128_SHA = 0x05;
 	/** ARCFOUR_128_MD5 (0x04). */
@@ -58,12 +62,14 @@ class Handshake {
 	 * This contains the cipher suite encoding length in the first
 	 * two bytes, followed by an encoding of the cipher suites followed
 	 * by the compression suite length in one byte and the compression
-	 * suite. For now, we only propose the two most commonly used
-	 * cipher suites.
+	 * suite. AES is proposed first, servers that no longer accept
+	 * RC4 can still pick one of the AES suites. AES is only used under
+	 * TLS, see receiveServerHello().
 	 */
 	private static final byte[] SUITES_AND_COMP = {
 		// Use this to propose 128-bit encryption as preferred
-		0x00, 0x06, 0x00, ARCFOUR_128_SHA, 0x00, ARCFOUR_128_MD5,
+		0x00, 0x0a, 0x00, AES_128_CBC_SHA, 0x00, AES_256_CBC_SHA,
+		0x00, ARCFOUR_128_SHA, 0x00, ARCFOUR_128_MD5,
 		0x00, ARCFOUR_40_MD5, 0x01, 0x00
 	// Use this to propose 40-bit encryption as preferred
 	// 0x00, 0x06, 0x00, ARCFOUR_40_MD5, 0x00, ARCFOUR_128_RSA,
@@ -78,6 +84,12 @@ class Handshake {
 		"TLS_RSA_WITH_RC4_128_MD5",
 		"TLS_RSA_WITH_RC4_128_SHA"
 	};
+	/** Name of the AES_128_CBC_SHA suite. */
+	private static final String AES_128_CBC_SHA_NAME =
+			"TLS_RSA_WITH_AES_128_CBC_SHA";
+	/** Name of the AES_256_CBC_SHA suite. */
+	private static final String AES_256_CBC_SHA_NAME =
+			"TLS_RSA_WITH_AES_256_CBC_SHA";
 	/**
 	 * Each handshake message has a four-byte header containing
 	 * the type (1 byte) and length (3 byte).
@@ -109,13 +121,8 @@ class Handshake {
 	private static final byte MD5_SIZE = MessageDigest.DIGEST_LENGTH_MD5;
 	/** Number of bytes in an SHA Digest (20). */
 	private static final byte SHA_SIZE = MessageDigest.DIGEST_LENGTH_SHA;
-	/**
-	 * The Finish message contains one MD5 and one SHA hash
-	 * and has a length of 4+16+20 = 40 = 0x24 bytes.
-	 */
-	private static final byte[] FINISH_PREFIX = {
-		FINISH, 0x00, 0x00, 0x24
-	};
+	/** Length of the verify data of a TLS Finished message (12). */
+	private static final byte TLS_FINISHED_SIZE = 12;
 	/** Current record to process. */
 	private Record rec;
 	/** Peer host name . */
@@ -134,6 +141,8 @@ class Handshake {
 	private byte[] srand = null;
 	/** Proposed SSL version. */
 	private byte ver;
+	/** Negotiated SSL version. */
+	byte negVer;
 	/** Role (always CLIENT for now). */
 	private byte role;
 	/** Negotiated cipher suite. */
@@ -200,6 +209,31 @@ class Handshake {
 		final Vector certs = new Vector();
 		int len;
 
+		/*
+		 * A chain accepted before is found by the hash of its first two
+		 * certificates, without decoding any of them.
+		 */
+		byte[] key = null;
+		if (off < (end - 3)) {
+			int certOff = off + 3;
+			int certLen = ((msg[off] & 0xff) << 16) + ((msg[off + 1] & 0xff) << 8) + (msg[off + 2] & 0xff);
+			int issuerOff = certOff + certLen + 3;
+			int issuerLen = 0;
+			if (issuerOff <= end) {
+				issuerLen = ((msg[issuerOff - 3] & 0xff) << 16) + ((msg[issuerOff - 2] & 0xff) << 8)
+						+ (msg[issuerOff - 1] & 0xff);
+			} else {
+				issuerOff = certOff;
+			}
+			if (certOff + certLen <= end && issuerOff + issuerLen <= end) {
+				key = CertificateCache.getKey(msg, certOff, certLen, issuerOff, issuerLen);
+				X509Certificate cert = CertificateCache.get(key);
+				if (cert != null) {
+					return cert;
+				}
+			}
+		}
+
 		// We have a 3-byte length field before each cert in list
 		while (off < (end - 3)) {
 			len = ((msg[off++] & 0xff) << 16) + ((msg[off++] & 0xff) << 8) + (msg[off++] & 0xff);
@@ -214,7 +248,11 @@ class Handshake {
 		}
 
 		// The first cert if specified to be the server cert.
-		return (X509Certificate) certs.elementAt(0);
+		final X509Certificate cert = (X509Certificate) certs.elementAt(0);
+		if (key != null) {
+			CertificateCache.add(key, cert);
+		}
+		return cert;
 	}
 
 	/**
@@ -293,7 +331,7 @@ class Handshake {
 	}
 
 	/**
-	 * Sends an SSL version 3.0 Client hello handshake message.
+	 * Sends a Client hello handshake message, proposing TLS 1.0.
 	 * <P />
 	 * @exception IOException if there is a problem writing to 
 	 * the record layer
@@ -364,11 +402,13 @@ class Handshake {
 			return -1;
 		}
 
-		// Get the server version
-		if ((rec.inputData[start + idx++] != (ver >>> 4))
-				|| (rec.inputData[start + idx++] != (ver & 0x0f))) {
+		// Get the server version, SSL 3.0 up to the proposed one
+		byte major = rec.inputData[idx++];
+		byte minor = rec.inputData[idx++];
+		if ((major != (ver >>> 4)) || (minor < 0) || (minor > (ver & 0x0f))) {
 			return -1;
 		}
+		negVer = (byte) ((major << 4) | minor);
 
 		// .. the 32-byte server random
 		srand = new byte[32];
@@ -402,15 +442,38 @@ class Handshake {
 		if ((negSuite != ARCFOUR_128_SHA)
 				&& (negSuite != ARCFOUR_128_MD5)
 				&& (negSuite != ARCFOUR_40_MD5)
+				&& (negSuite != AES_128_CBC_SHA)
+				&& (negSuite != AES_256_CBC_SHA)
 				&& (rec.inputData[idx++] != (byte) 0x00)) {
 			return -1;
 		}
 
+		/*
+		 * The SSL 3.0 CBC padding is not covered by the MAC and can
+		 * not be checked (POODLE), block ciphers need TLS.
+		 */
+		if ((negVer == Record.SSL_VERSION)
+				&& ((negSuite == AES_128_CBC_SHA)
+				|| (negSuite == AES_256_CBC_SHA))) {
+			if (Logging.REPORT_LEVEL <= Logging.ERROR) {
+				Logging.report(Logging.ERROR, LogChannels.LC_SECURITY,
+						"CBC suite negotiated under SSL 3.0");
+			}
+			return -1;
+		}
+		rec.setVersion(negVer);
+
 		// Update the hash of handshake messages
 		ourMD5.update(rec.inputData, start, msgLength);
 		ourSHA.update(rec.inputData, start, msgLength);
 
-		negSuiteName = suiteNames[negSuite];
+		if (negSuite == AES_128_CBC_SHA) {
+			negSuiteName = AES_128_CBC_SHA_NAME;
+		} else if (negSuite == AES_256_CBC_SHA) {
+			negSuiteName = AES_256_CBC_SHA_NAME;
+		} else {
+			negSuiteName = suiteNames[negSuite];
+		}
 
 		if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
 			Logging.report(Logging.INFORMATION, LogChannels.LC_SECURITY,
@@ -704,14 +767,20 @@ class Handshake {
 
 			// Prepare a message containing the RSA encrypted pre-master
 			int modLen = eKey.getModulusLen();
-			byte[] msg = new byte[HDR_SIZE + modLen];
+			// ... which TLS precedes with its length
+			int mlen = (negVer == Record.SSL_VERSION) ? modLen : modLen + 2;
+			byte[] msg = new byte[HDR_SIZE + mlen];
 			int idx = 0;
 			// Fill the type
 			msg[idx++] = CLIENT_KEY_EXCHANGE;
 			// ... message length
-			msg[idx++] = (byte) (modLen >>> 16);
-			msg[idx++] = (byte) (modLen >>> 8);
-			msg[idx++] = (byte) (modLen & 0xff);
+			msg[idx++] = (byte) (mlen >>> 16);
+			msg[idx++] = (byte) (mlen >>> 8);
+			msg[idx++] = (byte) (mlen & 0xff);
+			if (mlen != modLen) {
+				msg[idx++] = (byte) (modLen >>> 8);
+				msg[idx++] = (byte) (modLen & 0xff);
+			}
 
 			// ... the encrypted pre-master secret
 			try {
@@ -742,6 +811,15 @@ class Handshake {
 	 * @exception IOException if there is a problem during the computation
 	 */
 	private void makeMaster() throws IOException {
+		if (negVer != Record.SSL_VERSION) {
+			/*
+			 * master_secret = PRF(pre_master_secret, "master secret",
+			 *     ClientHello.random + ServerHello.random)[0..47];
+			 */
+			master = PRF.compute(preMaster, "master secret", crand, srand, 48);
+			return;
+		}
+
 		byte[] expansion[] = {
 			{(byte) 0x41}, // 'A'
 			{(byte) 0x42, (byte) 0x42}, // 'BB'
@@ -824,6 +902,25 @@ class Handshake {
 	 * @exception IOException if handshake digests could not be computed
 	 */
 	private byte[] computeFinished(byte who) throws IOException {
+		if (negVer != Record.SSL_VERSION) {
+			/*
+			 * verify_data = PRF(master_secret, finished_label,
+			 *     MD5(handshake_messages) + SHA-1(handshake_messages))
+			 *     [0..11];
+			 */
+			byte[] md5 = new byte[MD5_SIZE];
+			byte[] sha = new byte[SHA_SIZE];
+			try {
+				((MessageDigest) ourMD5.clone()).digest(md5, 0, MD5_SIZE);
+				((MessageDigest) ourSHA.clone()).digest(sha, 0, SHA_SIZE);
+			} catch (Exception e) {
+				throw new IOException("MessageDigest not cloneable");
+			}
+			return PRF.compute(master, (who == Record.CLIENT)
+					? "client finished" : "server finished", md5, sha,
+					TLS_FINISHED_SIZE);
+		}
+
 		byte[] sender[] = {
 			{0x53, 0x52, 0x56, 0x52}, // for server
 			{0x43, 0x4c, 0x4e, 0x54} // for client
@@ -870,12 +967,13 @@ class Handshake {
 	 * record layer
 	 */
 	private void sendFinished() throws IOException {
-		// HDR_SIZE + MD5_SIZE + SHA_SIZE is 40
-		byte[] msg = new byte[HDR_SIZE + MD5_SIZE + SHA_SIZE];
+		byte[] verifyData = computeFinished(role);
+		// 12 bytes for TLS, MD5_SIZE + SHA_SIZE = 36 for SSL 3.0
+		byte[] msg = new byte[HDR_SIZE + verifyData.length];
 
-		System.arraycopy(FINISH_PREFIX, 0, msg, 0, HDR_SIZE);
-		// MD5_SIZE + SHA_SIZE is 36
-		System.arraycopy(computeFinished(role), 0, msg, 4, MD5_SIZE + SHA_SIZE);
+		msg[0] = FINISH;
+		msg[3] = (byte) verifyData.length;
+		System.arraycopy(verifyData, 0, msg, HDR_SIZE, verifyData.length);
 
 		// Update the hash of handshake messages
 		ourMD5.update(msg, 0, msg.length);
@@ -911,7 +1009,7 @@ class Handshake {
 		 * byte with value 0x01.
 		 */
 		rec.rdRec(true, Record.CCS);
-		if ((rec.inputData == null) || (rec.inputData.length != 1) || (rec.inputData[0] != (byte) 0x01)) {
+		if ((rec.inputData == null) || (rec.plainTextLength != 1) || (rec.inputData[0] != (byte) 0x01)) {
 			return -1;
 		}
 
@@ -928,12 +1026,12 @@ class Handshake {
 	 */
 	private int receiveFinished() throws IOException {
 		int msgLength = getNextMsg(FINISH);
-		if (msgLength != 40) {
-			return -1;
-		}
 
 		// Compute the expected hash
 		byte[] expected = computeFinished((byte) (1 - role));
+		if (msgLength != HDR_SIZE + expected.length) {
+			return -1;
+		}
 
 		if (!Utils.byteMatch(rec.inputData, start + HDR_SIZE, expected, 0,
 				expected.length)) {
@@ -963,7 +1061,7 @@ class Handshake {
 		}
 		int code = 0;
 
-		ver = Record.SSL_VERSION;  // IMPL_NOTE: This is hardcoded for now
+		ver = Record.TLS_VERSION;
 		role = aswho;
 
 		sendHello3();
@@ -1032,8 +1130,11 @@ class Handshake {
 			 * Get the needed values from the previous session
 			 * now since the references could be overwritten if a
 			 * concurrent connection is made to this host and port.
+			 * The master secret is copied, the cached one must survive
+			 * the zeroing at the end of the handshake.
 			 */
-			master = cSession.master;
+			master = new byte[cSession.master.length];
+			System.arraycopy(cSession.master, 0, master, 0, master.length);
 			sCert = cSession.cert;
 
 			try {
@@ -1107,18 +1208,11 @@ class Handshake {
 
 /**
  * This class implements methods to maintain resumable SSL
- * sessions.
+ * sessions. The cache itself is kept by {@link SessionStore}.
  */
 // visible within the package
 class Session {
 
-	/**  Maximum number of cached resumable sessions. */
-	private static final byte MAX_SESSIONS = 4;
-	/**
-	 * Stores the last index where a session was overwritten, we
-	 * try to do a round-robin selection of places to overwrite
-	 */
-	private static int delIdx = 0;
 	/*
 	 * A session is uniquely identified by the combination of 
 	 * host, port and session identifier. The master secret is
@@ -1134,8 +1228,8 @@ class Session {
 	byte[] master;
 	/** Target Certificate. */
 	X509Certificate cert;
-	/** A cache of currently resumable sessions. */
-	private static Session[] sessions = new Session[MAX_SESSIONS];
+	/** Time of the full handshake that created the session. */
+	long creationTime;
 
 	/**
 	 * Gets the master secret associated with a resumable session.
@@ -1147,20 +1241,8 @@ class Session {
 	 *
 	 * @return matching session
 	 */
-	static synchronized Session get(String h, int p) {
-		for (int i = 0; i < MAX_SESSIONS; i++) {
-			if ((sessions[i] == null)
-					|| (sessions[i].id == null)) {
-				continue;
-			}
-
-			if (sessions[i].host.compareTo(h) == 0
-					&& sessions[i].port == p) {
-				return sessions[i];
-			}
-		}
-
-		return null;
+	static Session get(String h, int p) {
+		return SessionStore.get(h, p);
 	}
 
 	/**
@@ -1174,52 +1256,9 @@ class Session {
 	 * @param mas master secret
 	 * @param cert certificate of peer
 	 */
-	static synchronized void add(String h, int p, byte[] id, byte[] mas,
+	static void add(String h, int p, byte[] id, byte[] mas,
 			X509Certificate cert) {
-		// IMPL_NOTE: This will change if we stop using linear arrays
-		int idx = MAX_SESSIONS;
-		for (int i = 0; i < MAX_SESSIONS; i++) {
-			if ((sessions[i] == null)
-					|| (sessions[i].id == null)) {
-				idx = i;            // possible candidate for overwriting
-				continue;
-			}
-
-			if ((sessions[i].host.compareTo(h) == 0)
-					&& (sessions[i].port == p)) {  // preferred candidate
-				idx = i;
-				break;
-			}
-		}
-
-		/*
-		 * If all else is taken, overwrite the one specified by 
-		 * delIdx and move delIdx over to the next one. Simulates FIFO.
-		 */
-		if (idx == MAX_SESSIONS) {
-			idx = delIdx;
-			delIdx++;
-			if (delIdx == MAX_SESSIONS) {
-				delIdx = 0;
-			}
-		}
-
-		if (sessions[idx] == null) {
-			sessions[idx] = new Session();
-		}
-
-		sessions[idx].id = id;
-
-		/*
-		 * Since the master will change after this method, we need to
-		 * copy it, to preserve its current value for later.
-		 */
-		sessions[idx].master = new byte[mas.length];
-		System.arraycopy(mas, 0, sessions[idx].master, 0, mas.length);
-
-		sessions[idx].host = new String(h); // "h" will be a substring of URL
-		sessions[idx].port = p;
-		sessions[idx].cert = cert;
+		SessionStore.add(h, p, id, mas, cert);
 	}
 
 	/**
@@ -1230,24 +1269,7 @@ class Session {
 	 * @param p port number of peer
 	 * @param sid session identifier
 	 */
-	static synchronized void del(String h, int p, byte[] sid) {
-		for (int i = 0; i < MAX_SESSIONS; i++) {
-			if ((sessions[i] == null)
-					|| (sessions[i].id == null)) {
-				continue;
-			}
-
-			if (Utils.byteMatch(sessions[i].id, 0,
-					sid, 0,
-					sid.length)
-					&& (sessions[i].host.compareTo(h) == 0)
-					&& (sessions[i].port == p)) {
-				sessions[i].id = null;
-				sessions[i].master = null;
-				sessions[i].host = null;
-				sessions[i].cert = null;
-				break;
-			}
-		}
+	static void del(String h, int p, byte[] sid) {
+		SessionStore.del(h, p, sid);
 	}
 }
\ No newline at end of file
@@ -68,6 +68,11 @@ class In extends InputStream {
             return;
         }
 
+        // The peer may wait for buffered data before answering
+        if (block && ssc != null) {
+            ssc.flushOutput();
+        }
+
         for (; ;) {
             rec.rdRec(block, Record.APP);
             if (rec.plainTextLength == -1) {
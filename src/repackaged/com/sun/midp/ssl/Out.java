@@ -32,7 +32,10 @@ import java.io.InterruptedIOException;
 
 /**
  * This class is a subclass of OutputStream and is used for
- * writing data to an SSL connection.
+ * writing data to an SSL connection. Application data is buffered
+ * and sent in records of up to MAX_RECORD_SIZE bytes when the buffer
+ * fills, on flush(), on close(), or before the connection blocks
+ * reading the peer's data.
  * <P />
  * @see com.sun.midp.ssl.SSLStreamConnection
  * @see com.sun.midp.ssl.In
@@ -54,8 +57,10 @@ class Out extends OutputStream {
     private Record rec;
     /** Handle to current SSL stream connection. */
     private SSLStreamConnection ssc;
-    /** A reusable buffer for the <code>write</code> method. */
-    private byte[] buf = new byte[1];
+    /** Application data not yet sent in a record. */
+    private byte[] buf = new byte[MAX_RECORD_SIZE];
+    /** Number of bytes in <code>buf</code>. */
+    private int count = 0;
 
     /**
      * Creates a new Out object.
@@ -75,8 +80,16 @@ class Out extends OutputStream {
      * @exception IOException if I/O error occurs
      */ 
     public void write(int b) throws IOException {
-        buf[0] = (byte) b;
-        write(buf, 0, 1);
+        if (isClosed) {
+            throw new InterruptedIOException("Stream closed");
+        }
+
+        synchronized(rec) {
+            if (count == MAX_RECORD_SIZE) {
+                flushBuffer();
+            }
+            buf[count++] = (byte) b;
+        }
     }
     
     /**
@@ -106,19 +119,60 @@ class Out extends OutputStream {
         }
 
         synchronized(rec) {
-            int bytesToWrite = MAX_RECORD_SIZE;
             while (len > 0) {
-                if (len < bytesToWrite) {
-                    bytesToWrite = len;
+                if (count == 0 && len >= MAX_RECORD_SIZE) {
+                    // Full records are written without copying
+                    rec.wrRec(Record.APP, b, off, MAX_RECORD_SIZE);
+                    len -= MAX_RECORD_SIZE;
+                    off += MAX_RECORD_SIZE;
+                    continue;
+                }
+
+                int bytesToCopy = MAX_RECORD_SIZE - count;
+                if (len < bytesToCopy) {
+                    bytesToCopy = len;
                 }
 
-                rec.wrRec(Record.APP, b, off, bytesToWrite);
-                len -= bytesToWrite;
-                off += bytesToWrite;
+                System.arraycopy(b, off, buf, count, bytesToCopy);
+                count += bytesToCopy;
+                len -= bytesToCopy;
+                off += bytesToCopy;
+                if (count == MAX_RECORD_SIZE) {
+                    flushBuffer();
+                }
             }
         }
     }
 
+    /**
+     * Sends the buffered data to the SSL peer.
+     * <P />
+     * @exception IOException if I/O error occurs
+     */ 
+    public void flush() throws IOException {
+        if (isClosed) {
+            throw new InterruptedIOException("Stream closed");
+        }
+
+        synchronized(rec) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Writes the buffered data, if any, as one application data
+     * record. The caller must hold the lock on the record layer.
+     * <P />
+     * @exception IOException if I/O error occurs
+     */ 
+    void flushBuffer() throws IOException {
+        if (count > 0) {
+            int len = count;
+            count = 0;
+            rec.wrRec(Record.APP, buf, 0, len);
+        }
+    }
+
     /**
      * Close the stream connection.
      *
@@ -131,12 +185,16 @@ class Out extends OutputStream {
         }
 
         isClosed = true;
-        if (ssc != null) {
-            ssc.outputStreamState = SSLStreamConnection.CLOSED;
-            rec.closeOutputStream();
-            ssc.cleanupIfNeeded();
+        try {
+            synchronized(rec) {
+                flushBuffer();
+            }
+        } finally {
+            if (ssc != null) {
+                ssc.outputStreamState = SSLStreamConnection.CLOSED;
+                rec.closeOutputStream();
+                ssc.cleanupIfNeeded();
+            }
         }
     }
-    
-    // Other methods: flush() need not be over ridden
 }
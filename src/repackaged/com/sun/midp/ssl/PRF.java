@@ -0,0 +1,80 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.ssl;
+
+import java.security.NoSuchAlgorithmException;
+import repackaged.com.sun.midp.crypto.MessageDigest;
+
+/**
+ * The TLS 1.0 pseudo-random function (RFC 2246, section 5), which derives
+ * the master secret, the key block and the Finished messages:
+ * <pre>
+ * PRF(secret, label, seed) = P_MD5(S1, label + seed) XOR
+ *                            P_SHA-1(S2, label + seed)
+ * </pre>
+ * where S1 and S2 are the first and second halves of the secret.
+ *
+ * @author mariotaku
+ */
+final class PRF {
+
+	private PRF() {
+	}
+
+	/**
+	 * @param secret the secret
+	 * @param label the label, in ASCII
+	 * @param seed1 first part of the seed
+	 * @param seed2 second part of the seed
+	 * @param length number of bytes to compute
+	 * @return the output of the PRF
+	 */
+	static byte[] compute(byte[] secret, String label, byte[] seed1, byte[] seed2, int length) {
+		final byte[] labelBytes = label.getBytes();
+		final byte[] seed = new byte[labelBytes.length + seed1.length + seed2.length];
+		System.arraycopy(labelBytes, 0, seed, 0, labelBytes.length);
+		System.arraycopy(seed1, 0, seed, labelBytes.length, seed1.length);
+		System.arraycopy(seed2, 0, seed, labelBytes.length + seed1.length, seed2.length);
+
+		// The halves share the middle byte of an odd length secret
+		final int half = (secret.length + 1) >>> 1;
+		final byte[] out = new byte[length];
+		xorHash(MessageDigest.DIGEST_NAME_MD5, secret, 0, half, seed, out);
+		xorHash(MessageDigest.DIGEST_NAME_SHA, secret, secret.length - half, half, seed, out);
+		return out;
+	}
+
+	/**
+	 * out ^= P_hash(secret, seed), with
+	 * P_hash(secret, seed) = HMAC(secret, A(1) + seed) +
+	 *                        HMAC(secret, A(2) + seed) + ...
+	 * and A(0) = seed, A(i) = HMAC(secret, A(i - 1)).
+	 */
+	private static void xorHash(String algorithm, byte[] secret, int off, int len, byte[] seed, byte[] out) {
+		final HMAC hmac;
+		try {
+			hmac = new HMAC(MessageDigest.getInstance(algorithm), secret, off, len);
+		} catch (NoSuchAlgorithmException e) {
+			// should only happen, if digests are not included in the build
+			throw new RuntimeException("No MD5 or SHA");
+		}
+		final int n = hmac.getLength();
+		final byte[] a = new byte[n];
+		final byte[] block = new byte[n];
+
+		hmac.update(seed, 0, seed.length);
+		hmac.doFinal(a, 0);
+		for (int pos = 0; pos < out.length; pos += n) {
+			hmac.update(a, 0, n);
+			hmac.update(seed, 0, seed.length);
+			hmac.doFinal(block, 0);
+			for (int i = 0; i < n && pos + i < out.length; i++) {
+				out[pos + i] ^= block[i];
+			}
+			hmac.update(a, 0, n);
+			hmac.doFinal(a, 0);
+		}
+	}
+}
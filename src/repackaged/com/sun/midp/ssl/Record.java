@@ -30,7 +30,9 @@ import java.io.OutputStream;
 import java.io.IOException;
 import java.security.DigestException;
 import java.security.GeneralSecurityException;
+import repackaged.com.sun.midp.crypto.AES;
 import repackaged.com.sun.midp.crypto.Cipher;
+import repackaged.com.sun.midp.crypto.IvParameter;
 import repackaged.com.sun.midp.crypto.MessageDigest;
 import repackaged.com.sun.midp.crypto.SecretKey;
 import repackaged.com.sun.midp.log.Logging;
@@ -45,13 +47,16 @@ import repackaged.com.sun.midp.pki.Utils;
  */
 class Record {
 	/*
-	 * IMPL_NOTE: We should try to avoid multiple buffer copies by defining a 
-	 * new message class that allocates a large enough buffer to begin with 
-	 * so new headers can be prepended and MAC/padding can be appended by 
-	 * simple pointer manipulation.
+	 * Records are encoded and decoded in place: one buffer holds the
+	 * outgoing record while the MAC and padding are appended and the
+	 * body encrypted, another holds the incoming record while it is
+	 * decrypted. Both grow to the largest record seen and are reused.
 	 */
 
+	/** SSL 3.0 in one byte. */
 	static final byte SSL_VERSION = 0x30;
+	/** TLS 1.0 in one byte, the highest version proposed. */
+	static final byte TLS_VERSION = 0x31;
 	/*
 	 * SSLRecord types: CCS (Change Cipher Spec), ALRT (Alert),
 	 * HNDSHK (Handshake) and APP (Application Data)
@@ -102,6 +107,8 @@ class Record {
 	static final byte CLIENT = 1;
 	/** Size of record header */
 	static final int HEADER_SIZE = 5;
+	/** Maximum length of a record body, 2^14 + 2048 as defined by RFC 2246 */
+	static final int MAX_DATA_LENGTH = 16384 + 2048;
 	/** Underlying input stream beneath the record layer. */
 	private InputStream in;
 	/** Underlying output stream beneath the record layer. */
@@ -111,8 +118,10 @@ class Record {
 	private byte rActive = 0;
 	/** Flag indicating change cipher spec has been sent. */
 	private byte wActive = 0;
-	/** The SSL version in one byte (0x30=3.0). */
+	/** The SSL version in one byte (0x30=3.0, 0x31=TLS 1.0). */
 	private byte ver;
+	/** Flag indicating the version has been negotiated. */
+	private boolean versionSet;
 	/** Current input record header. */
 	private byte[] inputHeader = new byte[HEADER_SIZE];
 	/** How many bytes of the record header have been read. */
@@ -123,8 +132,10 @@ class Record {
 	private int dataBytesRead;
 	/** Shutdown flag, true if connection has been shutdown. */
 	private boolean shutdown;
-	/** Current input record data. */
+	/** Current input record data, reused for every record read. */
 	byte[] inputData;
+	/** Buffer of the record being written, reused for every record. */
+	private byte[] outputRecord;
 	/** Length of the plain text in the input buffer */
 	int plainTextLength;
 	/** Records encoder */
@@ -141,7 +152,28 @@ class Record {
 	Record(InputStream ins, OutputStream outs) {
 		in = ins;
 		out = outs;
-		ver = SSL_VERSION;  // IMPL_NOTE: This is hardcoded for now
+		// Records before the ServerHello are sent as SSL 3.0 ones
+		ver = SSL_VERSION;
+	}
+
+	/**
+	 * Sets the version negotiated in the handshake, used for the
+	 * records from now on and for the record MACs and key derivation.
+	 *
+	 * @param version SSL_VERSION or TLS_VERSION
+	 */
+	void setVersion(byte version) {
+		ver = version;
+		versionSet = true;
+	}
+
+	/**
+	 * Gets the version used by the record layer.
+	 *
+	 * @return SSL_VERSION or TLS_VERSION
+	 */
+	byte getVersion() {
+		return ver;
 	}
 
 	/**
@@ -161,7 +193,7 @@ class Record {
 	 */
 	void init(byte role, byte[] clientRand, byte[] serverRand,
 			byte suite, byte[] masterSecret) throws GeneralSecurityException {
-		final CipherSuiteData data = new CipherSuiteData(suite);
+		final CipherSuiteData data = new CipherSuiteData(suite, ver);
 		data.generateKeys(clientRand, serverRand, masterSecret);
 
 		// depending on role, we choose corresponding MAC secrets 
@@ -170,27 +202,43 @@ class Record {
 		final byte[] decodeSecret;
 		final SecretKey decodeCipherKey;
 		final SecretKey encodeCipherKey;
+		final byte[] encodeIV;
+		final byte[] decodeIV;
 		if (role == CLIENT) {
 			encodeSecret = data.getClientMACSecret();
 			decodeSecret = data.getServerMACSecret();
 			encodeCipherKey = data.getClientBulkKey();
 			decodeCipherKey = data.getServerBulkKey();
+			encodeIV = data.getClientIV();
+			decodeIV = data.getServerIV();
 		} else {
 			encodeSecret = data.getServerMACSecret();
 			decodeSecret = data.getClientMACSecret();
 			encodeCipherKey = data.getServerBulkKey();
 			decodeCipherKey = data.getClientBulkKey();
+			encodeIV = data.getServerIV();
+			decodeIV = data.getClientIV();
 		}
 
+		// Block ciphers chain from the IVs of the key block
 		final Cipher encodeCipher = data.getEncodeCipher();
-		encodeCipher.init(Cipher.ENCRYPT_MODE, encodeCipherKey);
 		final Cipher decodeCipher = data.getDecodeCipher();
-		decodeCipher.init(Cipher.DECRYPT_MODE, decodeCipherKey);
+		if (encodeIV.length > 0) {
+			encodeCipher.init(Cipher.ENCRYPT_MODE, encodeCipherKey,
+					new IvParameter(encodeIV, 0, encodeIV.length));
+			decodeCipher.init(Cipher.DECRYPT_MODE, decodeCipherKey,
+					new IvParameter(decodeIV, 0, decodeIV.length));
+		} else {
+			encodeCipher.init(Cipher.ENCRYPT_MODE, encodeCipherKey);
+			decodeCipher.init(Cipher.DECRYPT_MODE, decodeCipherKey);
+		}
 
 		encoder = new RecordEncoder(data.getEncodeDigest(), encodeSecret,
-				data.getPadLength(), encodeCipher);
+				data.getPadLength(), ver, encodeCipher,
+				data.getCipherBlockSize());
 		decoder = new RecordDecoder(data.getDecodeDigest(), decodeSecret,
-				data.getPadLength(), decodeCipher);
+				data.getPadLength(), ver, decodeCipher,
+				data.getCipherBlockSize());
 	}
 
 	/**
@@ -217,6 +265,8 @@ class Record {
 			return;
 		}
 
+		int length = plainTextLength;
+
 		// Signal end of stream.
 		plainTextLength = -1;
 
@@ -233,7 +283,7 @@ class Record {
 
 			case ALRT:
 				// An Alert record needs to be atleast 2 bytes of data
-				if (inputData.length < 2) {
+				if (length < 2) {
 					throw new IOException("Bad alert length");
 				}
 
@@ -318,11 +368,16 @@ class Record {
 		 * will not be 0.
 		 */
 		if (dataLength == 0) {
-			// Check record type and version
+			/*
+			 * Check record type and version. Until the ServerHello has
+			 * been read, any version up to TLS 1.0 is accepted.
+			 */
 			if ((inputHeader[0] < CCS)
 					|| (inputHeader[0] > APP)
 					|| (inputHeader[1] != (byte) (ver >>> 4))
-					|| (inputHeader[2] != (byte) (ver & 0x0f))) {
+					|| (versionSet ? inputHeader[2] != (byte) (ver & 0x0f)
+					: (inputHeader[2] < 0
+					|| inputHeader[2] > (TLS_VERSION & 0x0f)))) {
 				alert(FATAL, UNEXP_MSG);
 				throw new IOException("Bad record type (" + inputHeader[0]
 						+ ") or version (" + inputHeader[1] + "."
@@ -331,7 +386,13 @@ class Record {
 
 			dataLength = ((inputHeader[3] & 0xff) << 8)
 					+ (inputHeader[4] & 0xff);
-			inputData = new byte[dataLength];
+			if (dataLength > MAX_DATA_LENGTH) {
+				alert(FATAL, UNEXP_MSG);
+				throw new IOException("Record too long (" + dataLength + ")");
+			}
+			if (inputData == null || inputData.length < dataLength) {
+				inputData = new byte[dataLength];
+			}
 		}
 
 		while (dataBytesRead < dataLength) {
@@ -351,13 +412,13 @@ class Record {
 
 		if (rActive == 1) {
 			try {
-				plainTextLength = decoder.decode(inputHeader, inputData);
+				plainTextLength = decoder.decode(inputHeader, inputData,
+						dataLength);
 			} catch (IOException e) {
 				if (e.getMessage().compareTo("Bad MAC") == 0) {
 					alert(FATAL, BAD_MAC);
-				} else {
-					throw e;
 				}
+				throw e;
 			}
 		} else {
 			plainTextLength = dataBytesRead;
@@ -398,11 +459,31 @@ class Record {
 			throw new IOException("Server has shutdown the connection");
 		}
 
+		if (wActive == 1 && type == APP && len > 1 && encoder.chainsIV()) {
+			/*
+			 * A CBC record is encrypted from the last block of the
+			 * previous one, which an attacker has seen before choosing
+			 * the next plain text (BEAST). A first record of one byte
+			 * makes the IV of the rest unpredictable.
+			 */
+			wrRec(type, buf, off, 1);
+			off++;
+			len--;
+		}
+
 		/*
-		 * Create a new byte array with room for the header and
-		 * fill the record header with type, version and length
+		 * Make sure the output buffer has room for the header, MAC and
+		 * padding, and fill the record header with type, version and length
 		 */
-		rec = new byte[len + HEADER_SIZE];
+		int capacity = len + HEADER_SIZE;
+		if (wActive == 1) {
+			capacity += encoder.getOverhead();
+		}
+		rec = outputRecord;
+		if (rec == null || rec.length < capacity) {
+			rec = new byte[capacity];
+			outputRecord = rec;
+		}
 		rec[0] = type;
 		rec[1] = (byte) (ver >>> 4);
 		rec[2] = (byte) (ver & 0x0f);
@@ -411,9 +492,10 @@ class Record {
 		// Fill the rest of the record
 		System.arraycopy(buf, off, rec, HEADER_SIZE, len);
 		if (wActive == 1) {
-			out.write(encoder.encode(rec));
+			// Header, fragment and MAC go out in a single write
+			out.write(rec, 0, encoder.encode(rec, len));
 		} else {
-			out.write(rec);
+			out.write(rec, 0, len + HEADER_SIZE);
 		}
 		if (type == CCS) {
 			wActive = 1;
@@ -509,6 +591,12 @@ class CipherSuiteData {
 	private int padLength = 0;
 	/** Cipher suite type */
 	private byte suiteType = 0;
+	/** Negotiated version, SSL 3.0 or TLS 1.0 */
+	private byte version;
+	/** Name of the bulk encryption algorithm */
+	private String cipherAlgorithm = "ARC4";
+	/** Block size of the bulk cipher, 0 for a stream cipher */
+	private int cipherBlockSize = 0;
 	/** Digest used for keys generation */
 	private MessageDigest md = null;
 	/** Digest used for keys generation */
@@ -520,12 +608,15 @@ class CipherSuiteData {
 	 * Constructs CipherSuiteData object
 	 * 
 	 * @param suite negotiated cipher suite
+	 * @param ver negotiated version, Record.SSL_VERSION or
+	 *            Record.TLS_VERSION
 	 *
 	 * @exception Exception if the negotiated cipher suite involves an 
 	 *                      unsupported hash or cipher algorithm
 	 */
-	CipherSuiteData(byte suite) throws GeneralSecurityException {
+	CipherSuiteData(byte suite, byte ver) throws GeneralSecurityException {
 		suiteType = suite;
+		version = ver;
 
 		/* 
 		 * The actual size of our computed key block is the closest 
@@ -533,6 +624,8 @@ class CipherSuiteData {
 		 * and encryption algorithms.
 		 */
 		int keyMaterial = 5;
+		int ivSize = 0; // stream ciphers do not use IVs
+		String transformation = "ARC4";
 
 		switch (suite) {
 			case Handshake.ARCFOUR_128_MD5:
@@ -549,6 +642,17 @@ class CipherSuiteData {
 				encodeDigest = MessageDigest.getInstance("SHA-1");
 				break;
 
+			case Handshake.AES_128_CBC_SHA:
+			case Handshake.AES_256_CBC_SHA:
+				keyMaterial = (suite == Handshake.AES_256_CBC_SHA) ? 32 : 16;
+				ivSize = AES.BLOCK_SIZE;
+				padLength = 40;
+				encodeDigest = MessageDigest.getInstance("SHA-1");
+				cipherAlgorithm = "AES";
+				cipherBlockSize = AES.BLOCK_SIZE;
+				transformation = "AES/CBC/NoPadding";
+				break;
+
 			default:
 				throw new UnsupportedOperationException("Unsupported suite");
 		}
@@ -556,9 +660,8 @@ class CipherSuiteData {
 		decodeDigest = (MessageDigest) encodeDigest.clone();
 		digestLength = encodeDigest.getDigestLength();
 
-		encodeCipher = Cipher.getInstance("ARC4");
-		decodeCipher = Cipher.getInstance("ARC4");
-
+		encodeCipher = Cipher.getInstance(transformation);
+		decodeCipher = Cipher.getInstance(transformation);
 
 		/* 
 		 * Key block size is the closest 16-byte multiple larger than
@@ -569,8 +672,6 @@ class CipherSuiteData {
 		 *          CipherSuite.suiteList[suite][2]][4];
 		 */
 
-		int ivSize = 0; // stream ciphers do not use IVs
-
 		int blockSize = (digestLength + keyMaterial + ivSize) << 1;
 		blockSize = ((blockSize + 15) >>> 4) << 4;
 		keyBlock = new byte[blockSize];
@@ -638,6 +739,30 @@ class CipherSuiteData {
 		return serverBulkKey;
 	}
 
+	/**
+	 * Get client write IV, empty for a stream cipher
+	 * @return client IV
+	 */
+	byte[] getClientIV() {
+		return clientIV;
+	}
+
+	/**
+	 * Get server write IV, empty for a stream cipher
+	 * @return server IV
+	 */
+	byte[] getServerIV() {
+		return serverIV;
+	}
+
+	/**
+	 * Get block size of the bulk cipher
+	 * @return block size, 0 for a stream cipher
+	 */
+	int getCipherBlockSize() {
+		return cipherBlockSize;
+	}
+
 	/**
 	 * Get digest used for encoding 
 	 * @return encode digest
@@ -689,20 +814,23 @@ class CipherSuiteData {
 	 */
 	private void generateKeysBlock(byte[] clientRand, byte[] serverRand, byte[] masterSecret)
 			throws GeneralSecurityException {
+		if (version == Record.TLS_VERSION) {
+			/*
+			 * key_block = PRF(master, "key expansion",
+			 *                 ServerHello.random + ClientHello.random)
+			 */
+			keyBlock = PRF.compute(masterSecret, "key expansion", serverRand,
+					clientRand, keyBlock.length);
+			return;
+		}
+
 		/* 
-		 * The following should suffice to generate a total of
-		 * 16*7 = 112 bytes of key material. 3DES_SHA requires
-		 * 2*(20 + 24 + 8) = 104 bytes.
+		 * Each 16 bytes of key material use one more letter of the
+		 * expansion: 'A', 'BB', 'CCC' and so on. AES_256_CBC_SHA
+		 * requires 2*(20 + 32 + 16) = 136 bytes, that is 'IIIIIIIII'.
 		 */
-		byte[] expansion[] = {
-			{0x41}, // 'A'
-			{0x42, 0x42}, // 'BB'
-			{0x43, 0x43, 0x43}, // 'CCC'
-			{0x44, 0x44, 0x44, 0x44}, // 'DDDD'
-			{0x45, 0x45, 0x45, 0x45, 0x45}, // 'EEEEE'
-			{0x46, 0x46, 0x46, 0x46, 0x46, 0x46}, // 'FFFFFF'
-			{0x47, 0x47, 0x47, 0x47, 0x47, 0x47, 0x47}, // 'GGGGGGG'
-		};
+		byte[] expansion = new byte[keyBlock.length >>> 4];
+		byte[] res = new byte[20];
 
 
 		/*
@@ -732,8 +860,11 @@ class CipherSuiteData {
 
 		for (int i = 0; i < (keyBlock.length >>> 4); i++) {
 			md.update(masterSecret, 0, masterSecret.length);
-			sd.update(expansion[i], 0, expansion[i].length);
-			byte[] res = new byte[20];
+			expansion[i] = (byte) (0x41 + i);
+			for (int j = 0; j < i; j++) {
+				expansion[j] = expansion[i];
+			}
+			sd.update(expansion, 0, i + 1);
 			sd.update(blockSubExp, 0, blockSubExp.length);
 			sd.digest(res, 0, res.length);
 			md.update(res, 0, 20);
@@ -769,26 +900,31 @@ class CipherSuiteData {
 		System.arraycopy(keyBlock, offset, serverKey, 0, serverKey.length);
 		offset += serverKey.length;
 
-		if (suiteType == Handshake.ARCFOUR_128_MD5
-				|| suiteType == Handshake.ARCFOUR_128_SHA) {
+		if (suiteType != Handshake.ARCFOUR_40_MD5) {
+			if (clientIV.length != 0) {
+				// bulk encryption uses a block cipher, so initialize IVs
+				System.arraycopy(keyBlock, offset, clientIV, 0,
+						clientIV.length);
+				offset += clientIV.length;
+				System.arraycopy(keyBlock, offset, serverIV, 0,
+						serverIV.length);
+			}
+		} else if (version == Record.TLS_VERSION) {
 			/*
-			 * NOTE: We know ivSze is always zero for ARCFOUR cipher suites
-			 * so this is commented out. It wasn't removed in case we need
-			 * to add support for DES or another block cipher.
-			 * if (ivSize != 0) {
-			 *     // bulk encryption uses a block cipher, so initialize IVs
-			 *     System.arraycopy(keyBlock, 
-			 *         2*(clientMACSecret.length + clientKey.length), 
-			 *         clientIV, 0, ivSize);
-			 *     System.arraycopy(keyBlock, 
-			 *         2*(clientMACSecret.length + clientKey.length) 
-			 *         + ivSize, serverIV, 0, ivSize);
-			 * }
+			 * Expand the keys for exportable cipher suites
+			 *  final_client_write_key = PRF(client_write_key,
+			 *      "client write key",
+			 *      ClientHello.random + ServerHello.random);
+			 *  final_server_write_key = PRF(server_write_key,
+			 *      "server write key",
+			 *      ClientHello.random + ServerHello.random);
 			 */
+			clientKey = PRF.compute(clientKey, "client write key", clientRand,
+					serverRand, 16);
+			serverKey = PRF.compute(serverKey, "server write key", clientRand,
+					serverRand, 16);
 		} else {
 			/* 
-			 * IMPL_NOTE: The only other option is ARCFOUR_40_MD5
-			 * 
 			 * Expand the keys for exportable cipher suites
 			 *  final_client_write_key = MD5(client_write_key +
 			 *                                ClientHello.random +
@@ -843,12 +979,11 @@ class CipherSuiteData {
 			 */
 		}
 
-		/*
-		 * Now initialize the ciphers and keys. FOr now this is always
-		 * ARCFOUR and we comment out support for other ciphers.
-		 */
-		clientBulkKey = new SecretKey(clientKey, 0, clientKey.length, "ARC4");
-		serverBulkKey = new SecretKey(serverKey, 0, serverKey.length, "ARC4");
+		// Now initialize the keys
+		clientBulkKey = new SecretKey(clientKey, 0, clientKey.length,
+				cipherAlgorithm);
+		serverBulkKey = new SecretKey(serverKey, 0, serverKey.length,
+				cipherAlgorithm);
 	}
 }
 
@@ -893,6 +1028,49 @@ class MAC {
 	protected int padLength = 0;
 	/** Write sequence number */
 	private long sequenceNumber = 0;
+	/**
+	 * Sequence number, type, version (TLS only) and length hashed
+	 * before the fragment
+	 */
+	private final byte[] macHeader;
+	/** Inner hash of the MAC */
+	private byte[] innerHash;
+	/** HMAC of the TLS MAC, null for SSL 3.0 */
+	private HMAC hmac;
+
+	/**
+	 * Constructs MAC object
+	 * 
+	 * @param dgst digest for MAC computation
+	 * @param secret MAC secret
+	 * @param padLen padding length
+	 * @param ver negotiated version, Record.SSL_VERSION or
+	 *            Record.TLS_VERSION
+	 */
+	MAC(MessageDigest dgst, byte[] secret, int padLen, byte ver) {
+		macSecret = secret;
+		digest = dgst;
+		digestLength = digest.getDigestLength();
+		padLength = padLen;
+		innerHash = new byte[digestLength];
+		if (ver == Record.TLS_VERSION) {
+			hmac = new HMAC(dgst, secret, 0, secret.length);
+			macHeader = new byte[13];
+			macHeader[9] = (byte) (ver >>> 4);
+			macHeader[10] = (byte) (ver & 0x0f);
+		} else {
+			macHeader = new byte[11];
+		}
+	}
+
+	/**
+	 * Tells whether this is a TLS MAC.
+	 *
+	 * @return true for TLS 1.0, false for SSL 3.0
+	 */
+	boolean isTLS() {
+		return hmac != null;
+	}
 
 	/** 
 	 * Computes the MAC for an SSLCompressed structure.
@@ -901,10 +1079,31 @@ class MAC {
 	 * @param buf byte array containing the SSLCompressed fragment
 	 * @param offset starting offset of the fragment in buf
 	 * @param length length of the fragment
-	 *
-	 * @return a byte array containing the MAC
+	 * @param mac byte array receiving the MAC
+	 * @param macOffset offset of the MAC in mac
 	 */
-	byte[] getMAC(byte type, byte[] buf, int offset, int length) {
+	void computeMAC(byte type, byte[] buf, int offset, int length,
+			byte[] mac, int macOffset) {
+		long n = sequenceNumber;
+		for (int i = 7; i >= 0; i--) {
+			macHeader[i] = (byte) n;
+			n >>>= 8;
+		}
+		macHeader[8] = type;
+		macHeader[macHeader.length - 2] = (byte) (length >>> 8);
+		macHeader[macHeader.length - 1] = (byte) (length & 0xff);
+
+		if (hmac != null) {
+			/*
+			 * MAC = HMAC_hash(MAC_secret, seq_num + type + version +
+			 *                 length + compressed_fragment);
+			 */
+			hmac.update(macHeader, 0, macHeader.length);
+			hmac.update(buf, offset, length);
+			hmac.doFinal(mac, macOffset);
+			return;
+		}
+
 		/* 
 		 * MAC = hash(MAC_secret + PAD2 +
 		 *    hash(MAC_secret + PAD1 + seq_num + type + len +
@@ -912,18 +1111,9 @@ class MAC {
 		 */
 
 		// Compute the inner hash first
-		byte[] byteArray = null;
 		digest.update(macSecret, 0, macSecret.length);
 		digest.update(PAD1, 0, padLength);
-		byteArray = Utils.longToBytes(sequenceNumber);
-		digest.update(byteArray, 0, byteArray.length);
-
-		byteArray = new byte[3];
-		byteArray[0] = type;
-		byteArray[1] = (byte) (length >>> 8);
-		byteArray[2] = (byte) (length & 0xff);
-		digest.update(byteArray, 0, byteArray.length);
-		byte[] innerHash = new byte[digest.getDigestLength()];
+		digest.update(macHeader, 0, macHeader.length);
 		digest.update(buf, offset, length);
 		try {
 			digest.digest(innerHash, 0, innerHash.length);
@@ -934,15 +1124,30 @@ class MAC {
 		// Now, the outer hash
 		digest.update(macSecret, 0, macSecret.length);
 		digest.update(PAD2, 0, padLength);
-		byte[] mac = new byte[innerHash.length];
 		digest.update(innerHash, 0, innerHash.length);
 		try {
-			digest.digest(mac, 0, mac.length);
+			digest.digest(mac, macOffset, digestLength);
 		} catch (DigestException e) {
 			// Ignore this exception, it should never happen
 		}
+	}
 
-		return mac;
+	/**
+	 * Hashes data and drops it, so that a MAC takes as long as one over
+	 * more data.
+	 *
+	 * @param buf byte array containing the data
+	 * @param offset starting offset of the data in buf
+	 * @param length length of the data
+	 */
+	void hashAndDrop(byte[] buf, int offset, int length) {
+		if (hmac != null) {
+			hmac.update(buf, offset, length);
+			hmac.reset();
+		} else {
+			digest.update(buf, offset, length);
+			digest.reset();
+		}
 	}
 
 	/**
@@ -963,6 +1168,8 @@ class RecordEncoder extends MAC {
 
 	/** Cipher used for encryption */
 	private Cipher cipher;
+	/** Block size of the cipher, 0 for a stream cipher */
+	private int blockSize;
 
 	/**
 	 * Constructs RecordEncoder object
@@ -970,79 +1177,95 @@ class RecordEncoder extends MAC {
 	 * @param dgst digest for MAC computation
 	 * @param secret MAC secret
 	 * @param padLen padding length
+	 * @param ver negotiated version
 	 * @param cphr cipher used for encoding
+	 * @param blkSize block size of the cipher, 0 for a stream cipher
 	 */
-	RecordEncoder(MessageDigest dgst, byte[] secret, int padLen, Cipher cphr) {
-		macSecret = secret;
-		digest = dgst;
-		digestLength = digest.getDigestLength();
-		padLength = padLen;
+	RecordEncoder(MessageDigest dgst, byte[] secret, int padLen, byte ver,
+			Cipher cphr, int blkSize) {
+		super(dgst, secret, padLen, ver);
 		cipher = cphr;
+		blockSize = blkSize;
+	}
+
+	/**
+	 * Tells whether records are chained, each one encrypted from the
+	 * last cipher text block of the previous one.
+	 *
+	 * @return true for a block cipher
+	 */
+	boolean chainsIV() {
+		return blockSize > 0;
+	}
+
+	/**
+	 * Gets the number of bytes the encoding may add to a record body.
+	 * 
+	 * @return maximum length of MAC and padding
+	 */
+	int getOverhead() {
+		return digestLength + blockSize;
 	}
 
 	/**
-	 * Converts a byte array containing an SSLPlaintext structure
-	 * to the corresponding SSLCiphertext structure. The process 
-	 * typically involves the addition of a MAC followed by 
-	 * encryption.
+	 * Converts an SSLPlaintext structure to the corresponding
+	 * SSLCiphertext structure in place. The MAC and padding are
+	 * appended to the fragment, the result is encrypted and the
+	 * length in the header updated.
 	 * 
-	 * @param plainText byte array containing SSLPlaintext
-	 * @return the number of bytes written to the OutputStream
+	 * @param record byte array containing SSLPlaintext, with room for
+	 *               {@link #getOverhead()} more bytes
+	 * @param length length of the fragment following the header
+	 * @return the length of the SSLCiphertext, header included
 	 *
 	 * @exception IOException if a problem is encountered during
 	 * encryption
 	 */
-	byte[] encode(byte[] plainText) throws IOException {
+	int encode(byte[] record, int length) throws IOException {
 		/*
 		 * Since we only support NULL compression, SSLPlaintext
 		 * the same as SSLCompressed.
 		 */
-		byte[] fragAndMAC = null; // fragment plus MAC
+		int end = HEADER_SIZE + length;
+		computeMAC(record[0], record, HEADER_SIZE, length, record, end);
+		end += digestLength;
 
-		if (digest != null) {
-			fragAndMAC = new byte[plainText.length - HEADER_SIZE + digestLength];
-			System.arraycopy(plainText, HEADER_SIZE, fragAndMAC, 0, plainText.length - HEADER_SIZE);
-			byte[] mac = getMAC(plainText[0], plainText, HEADER_SIZE, plainText.length - HEADER_SIZE);
-			System.arraycopy(mac, 0, fragAndMAC, plainText.length - HEADER_SIZE, digestLength);
-		} else {
-			fragAndMAC = new byte[plainText.length - HEADER_SIZE];
-			System.arraycopy(plainText, HEADER_SIZE, fragAndMAC, 0, plainText.length - HEADER_SIZE);
+		if (blockSize > 0) {
+			/*
+			 * Every pad byte holds the pad length, as TLS requires
+			 * (SSLv3 only reads the last one).
+			 */
+			byte blockPad = (byte) (blockSize - 1
+					- (end - HEADER_SIZE) % blockSize);
+			for (int i = blockPad; i >= 0; i--) {
+				record[end++] = blockPad;
+			}
 		}
 
-		// ... now we need to encrypt fragAndMAC and possibly update IVs
-		byte[] efragAndMAC = null;
+		// ... now we need to encrypt fragment and MAC
 		if (cipher != null) {
 			try {
-				/*
-				 * NOTE: For now, we always have a stream cipher so this
-				 * is commented out.
-				 */
-				// We have a stream cipher
-				efragAndMAC = fragAndMAC;
-				cipher.update(fragAndMAC, 0, fragAndMAC.length, efragAndMAC, 0);
+				// Both kinds of cipher encrypt in place
+				cipher.update(record, HEADER_SIZE, end - HEADER_SIZE,
+						record, HEADER_SIZE);
 			} catch (Exception e) {
 				throw new IOException("Encode caught " + e);
 			}
-		} else {
-			// Cipher algorithm is NULL
-			efragAndMAC = fragAndMAC;
 		}
 
 		if (Logging.REPORT_LEVEL <= Logging.INFORMATION) {
 			Logging.report(Logging.INFORMATION, LogChannels.LC_SECURITY,
-					"efragAndMAC: " + Utils.hexEncode(efragAndMAC));
+					"efragAndMAC: " + Utils.hexEncode(record, HEADER_SIZE,
+					end - HEADER_SIZE));
 		}
 
-		byte[] record = new byte[efragAndMAC.length + HEADER_SIZE];
-		System.arraycopy(plainText, 0, record, 0, 3);
-		record[3] = (byte) (efragAndMAC.length >>> 8);
-		record[4] = (byte) (efragAndMAC.length & 0xff);
-		System.arraycopy(efragAndMAC, 0, record, HEADER_SIZE, efragAndMAC.length);
+		record[3] = (byte) ((end - HEADER_SIZE) >>> 8);
+		record[4] = (byte) ((end - HEADER_SIZE) & 0xff);
 
 		// We have encoded one more record, increment seq number
 		incrementSequenceNumber();
 
-		return record;
+		return end;
 	}
 }
 
@@ -1053,6 +1276,10 @@ class RecordDecoder extends MAC {
 
 	/** Cipher used for decryption */
 	private Cipher cipher;
+	/** Block size of the cipher, 0 for a stream cipher */
+	private int blockSize;
+	/** Expected MAC of the record being decoded */
+	private byte[] expMAC;
 
 	/**
 	 * Constructs RecordDecoder object
@@ -1060,61 +1287,100 @@ class RecordDecoder extends MAC {
 	 * @param dgst digest for MAC computation
 	 * @param secret MAC secret
 	 * @param padLen padding length
+	 * @param ver negotiated version
 	 * @param cphr cipher used for decoding
+	 * @param blkSize block size of the cipher, 0 for a stream cipher
 	 */
-	RecordDecoder(MessageDigest dgst, byte[] secret, int padLen, Cipher cphr) {
-		macSecret = secret;
-		digest = dgst;
-		digestLength = digest.getDigestLength();
-		padLength = padLen;
+	RecordDecoder(MessageDigest dgst, byte[] secret, int padLen, byte ver,
+			Cipher cphr, int blkSize) {
+		super(dgst, secret, padLen, ver);
 		cipher = cphr;
+		blockSize = blkSize;
+		expMAC = new byte[digestLength];
 	}
 
 	/**
-	 * Converts a byte array containing an SSLCiphertext structure
-	 * to the corresponding SSLPlaintext structure. The process
-	 * typically involves decryption followed by MAC verification
-	 * and MAC stripping.
+	 * Converts an SSLCiphertext structure to the corresponding
+	 * SSLPlaintext structure in place. The process typically involves
+	 * decryption followed by MAC verification and MAC stripping.
 	 * @param recordHeader record header
 	 * @param recordData record data
+	 * @param fragLength length of the record data
 	 * @return Length of the decrypted data in the input buffer.
 	 * 
 	 * @exception IOException if a problem is encountered during decryption
 	 *                        or MAC verification
 	 */
-	int decode(byte[] recordHeader, byte[] recordData)
+	int decode(byte[] recordHeader, byte[] recordData, int fragLength)
 			throws IOException {
+		if (fragLength < digestLength) {
+			throw new IOException("Bad record length");
+		}
+
+		boolean badPadding = false;
+		int blockPad = 0;
 		if (cipher != null) {
 			// Cipher algorithm is not NULL (ctxt needs to be decrypted)
+			if (blockSize > 0 && (fragLength % blockSize != 0
+					|| fragLength < digestLength + 1)) {
+				throw new IOException("Bad record length");
+			}
 
 			try {
-				/*
-				 * NOTE: For now, we only have ARCFOUR, a stream cipher
-				 * so there is no IV or padding that a block cipher has.
-				 *
-				 * Otherwise we would have to find the plaintext offset
-				 * after we decrypt.
-				 */
-
-				// We have a stream cipher (NOTE: assuming CLIENT role)
-
 				// We can decode in place w/o using additional memory
-				cipher.update(recordData, 0, recordData.length, recordData, 0);
+				cipher.update(recordData, 0, fragLength, recordData, 0);
 			} catch (Exception e) {
 				throw new IOException("Decode caught " + e);
 			}
-		}
 
-		int length = recordData.length - digestLength;
-		if (digest != null) {
-			byte[] expMAC = null;  // expected MAC
-			expMAC = getMAC(recordHeader[0], recordData, 0, length);
-			if (!Utils.byteMatch(expMAC, 0, recordData, length,
-					digestLength)) {
-				throw new IOException("Bad MAC");
+			if (blockSize > 0) {
+				/*
+				 * Strip the padding. Every TLS pad byte holds the pad
+				 * length, SSLv3 padding is at most one block long.
+				 */
+				blockPad = recordData[fragLength - 1] & 0xff;
+				if (blockPad + 1 + digestLength > fragLength
+						|| (!isTLS() && blockPad >= blockSize)) {
+					badPadding = true;
+				} else if (isTLS()) {
+					int padDiff = 0;
+					for (int i = fragLength - 1 - blockPad;
+							i < fragLength - 1; i++) {
+						padDiff |= recordData[i] ^ blockPad;
+					}
+					badPadding = padDiff != 0;
+				}
+				if (badPadding) {
+					/*
+					 * Bad padding is reported as a bad MAC, after the MAC
+					 * has been checked anyway, so that the two can not be
+					 * told apart (padding oracle).
+					 */
+					blockPad = 0;
+				}
+				fragLength -= blockPad + 1;
 			}
 		}
 
+		int length = fragLength - digestLength;
+		computeMAC(recordHeader[0], recordData, 0, length, expMAC, 0);
+		/*
+		 * Hash as many bytes as the longest possible fragment, the time
+		 * of the MAC hardly depends on the pad length then.
+		 */
+		if (blockPad > 0) {
+			hashAndDrop(recordData, 0, blockPad);
+		}
+		// Compare all the bytes, the time taken does not tell where the
+		// MACs differ
+		int diff = badPadding ? 1 : 0;
+		for (int i = 0; i < digestLength; i++) {
+			diff |= expMAC[i] ^ recordData[length + i];
+		}
+		if (diff != 0) {
+			throw new IOException("Bad MAC");
+		}
+
 		incrementSequenceNumber();
 
 		return length;
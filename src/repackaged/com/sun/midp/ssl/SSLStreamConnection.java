@@ -99,6 +99,8 @@ public class SSLStreamConnection implements StreamConnection {
 	private X509Certificate serverCert;
 	/** Cipher suite from a successful handshake. */
 	private String cipherSuite;
+	/** Version from a successful handshake, 0x30 or 0x31. */
+	private byte version;
 
 	/*
 	 * The following are visible within the package so In and Out can 
@@ -149,6 +151,7 @@ public class SSLStreamConnection implements StreamConnection {
 			hndshk.doHandShake(Record.CLIENT);
 			serverCert = hndshk.sCert;
 			cipherSuite = hndshk.negSuiteName;
+			version = hndshk.negVer;
 		} catch (IOException e) {
 			cleanupIfNeeded();
 			throw e;
@@ -273,6 +276,15 @@ public class SSLStreamConnection implements StreamConnection {
 		return cipherSuite;
 	}
 
+	/**
+	 * Returns the negotiated protocol version.
+	 *
+	 * @return Record.SSL_VERSION or Record.TLS_VERSION
+	 */
+	byte getVersion() {
+		return version;
+	}
+
 	/**
 	 * Closes the SSL connection. The underlying TCP socket, over which
 	 * SSL is layered, is also closed unless the latter was opened by
@@ -292,6 +304,19 @@ public class SSLStreamConnection implements StreamConnection {
 		rec.shutdownConnection();
 		rec = null;
 	}
+
+	/**
+	 * Sends the application data buffered by the output stream, if it is
+	 * open. Called by the input stream, holding the record layer lock,
+	 * before it blocks waiting for the peer.
+	 *
+	 * @exception IOException if an I/O error occurs
+	 */
+	void flushOutput() throws IOException {
+		if (outputStreamState == OPEN) {
+			uout.flushBuffer();
+		}
+	}
 }
 
 /**
@@ -347,7 +372,8 @@ class SSLSecurityInfo implements SecurityInfo {
 	 * @return a String containing the version of the protocol
 	 */
 	public String getProtocolVersion() {
-		return "3.0";
+		byte version = parent.getVersion();
+		return (version >>> 4) + "." + (version & 0x0f);
 	}
 
 	/**
@@ -360,7 +386,7 @@ class SSLSecurityInfo implements SecurityInfo {
 	 * If WTLS (WAP 199) is used for the connection the return value is "WTLS".
 	 */
 	public String getProtocolName() {
-		return "SSL";
+		return (parent.getVersion() == Record.SSL_VERSION) ? "SSL" : "TLS";
 	}
 
 	/**
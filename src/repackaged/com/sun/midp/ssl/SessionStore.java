@@ -0,0 +1,334 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package repackaged.com.sun.midp.ssl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Vector;
+import javax.microedition.rms.RecordStore;
+import javax.microedition.rms.RecordStoreException;
+import repackaged.com.sun.midp.pki.Utils;
+import repackaged.com.sun.midp.pki.X509Certificate;
+
+/**
+ * The cache of resumable SSL sessions, at most one per host and port.
+ * The least recently used session is dropped when the cache is full and
+ * sessions older than the expiry are not resumed. The cache can be saved
+ * to a record store, so the first connection after a restart can resume
+ * the session of the last run instead of doing a full handshake.
+ *
+ * @author mariotaku
+ */
+public final class SessionStore {
+
+	/** Default maximum number of cached sessions. */
+	public static final int DEFAULT_CAPACITY = 4;
+	/** Default session lifetime, 1 hour. */
+	public static final long DEFAULT_EXPIRY = 60 * 60 * 1000L;
+	/** Version of the record store format. */
+	private static final byte STORE_VERSION = 1;
+
+	/** Cached sessions, the most recently used first. */
+	private static final Vector sessions = new Vector();
+	private static int capacity = DEFAULT_CAPACITY;
+	private static long expiry = DEFAULT_EXPIRY;
+	/** Record store of the persistent cache, or null. */
+	private static String recordStoreName = null;
+	private static int hitCount = 0;
+	private static int missCount = 0;
+
+	private SessionStore() {
+	}
+
+	/**
+	 * Saves the cached sessions to the record store <code>name</code> from
+	 * now on, after loading the sessions it holds. Passing null keeps the
+	 * sessions in memory only.
+	 *
+	 * @param name record store name or null
+	 */
+	public static synchronized void setRecordStoreName(String name) {
+		recordStoreName = name;
+		if (name != null) {
+			load();
+		}
+	}
+
+	/**
+	 * @param maxSessions maximum number of cached sessions
+	 */
+	public static synchronized void setCapacity(int maxSessions) {
+		capacity = Math.max(1, maxSessions);
+		if (trim()) {
+			save();
+		}
+	}
+
+	/**
+	 * @param lifetime time in milliseconds a session can be resumed after
+	 *            its full handshake, or 0 for no limit
+	 */
+	public static synchronized void setExpiry(long lifetime) {
+		expiry = lifetime;
+	}
+
+	/**
+	 * @return number of connections that found a session to resume
+	 */
+	public static synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return number of connections that found no session to resume
+	 */
+	public static synchronized int getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Removes all the cached sessions, and the saved ones.
+	 */
+	public static synchronized void clear() {
+		sessions.removeAllElements();
+		save();
+	}
+
+	/**
+	 * Gets the session to resume with a host and port.
+	 *
+	 * @param host host name of peer
+	 * @param port port number of peer
+	 * @return matching session or null
+	 */
+	static synchronized Session get(String host, int port) {
+		int idx = indexOf(host, port);
+		if (idx != -1) {
+			Session session = (Session) sessions.elementAt(idx);
+			if (isExpired(session, System.currentTimeMillis())) {
+				sessions.removeElementAt(idx);
+				save();
+			} else {
+				sessions.removeElementAt(idx);
+				sessions.insertElementAt(session, 0);
+				hitCount++;
+				return session;
+			}
+		}
+		missCount++;
+		return null;
+	}
+
+	/**
+	 * Adds or replaces the session of a host and port. The record store is
+	 * only written when the session is new; a resumed session is moved to
+	 * the front of the cache, and its order is saved with the next change.
+	 *
+	 * @param host host name of peer
+	 * @param port port number of peer
+	 * @param id session identifier
+	 * @param master master secret, copied
+	 * @param cert certificate of peer
+	 */
+	static synchronized void add(String host, int port, byte[] id, byte[] master,
+			X509Certificate cert) {
+		int idx = indexOf(host, port);
+		if (idx != -1) {
+			Session old = (Session) sessions.elementAt(idx);
+			sessions.removeElementAt(idx);
+			if (old.id.length == id.length
+					&& Utils.byteMatch(old.id, 0, id, 0, id.length)) {
+				// Resumed, it keeps its master secret and the time of its
+				// full handshake
+				sessions.insertElementAt(old, 0);
+				return;
+			}
+		}
+
+		Session session = new Session();
+		session.host = new String(host); // "host" will be a substring of URL
+		session.port = port;
+		session.id = id;
+		/*
+		 * Since the master will change after this method, we need to
+		 * copy it, to preserve its current value for later.
+		 */
+		session.master = new byte[master.length];
+		System.arraycopy(master, 0, session.master, 0, master.length);
+		session.cert = cert;
+		session.creationTime = System.currentTimeMillis();
+		sessions.insertElementAt(session, 0);
+		trim();
+		save();
+	}
+
+	/**
+	 * Deletes the session of a host and port if its identifier is
+	 * <code>id</code>.
+	 *
+	 * @param host host name of peer
+	 * @param port port number of peer
+	 * @param id session identifier
+	 */
+	static synchronized void del(String host, int port, byte[] id) {
+		int idx = indexOf(host, port);
+		if (idx != -1) {
+			Session session = (Session) sessions.elementAt(idx);
+			if (Utils.byteMatch(session.id, 0, id, 0, id.length)) {
+				sessions.removeElementAt(idx);
+				save();
+			}
+		}
+	}
+
+	private static int indexOf(String host, int port) {
+		for (int i = 0; i < sessions.size(); i++) {
+			Session session = (Session) sessions.elementAt(i);
+			if (session.port == port && session.host.equals(host)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isExpired(Session session, long now) {
+		return expiry > 0 && now - session.creationTime > expiry;
+	}
+
+	/**
+	 * Drops the least recently used sessions over the capacity.
+	 *
+	 * @return true if a session was dropped
+	 */
+	private static boolean trim() {
+		boolean trimmed = false;
+		while (sessions.size() > capacity) {
+			sessions.removeElementAt(sessions.size() - 1);
+			trimmed = true;
+		}
+		return trimmed;
+	}
+
+	/**
+	 * Reads the saved sessions that are not expired and whose certificate
+	 * still matches its fingerprint.
+	 */
+	private static void load() {
+		RecordStore rs = null;
+		try {
+			rs = RecordStore.openRecordStore(recordStoreName, true);
+			if (rs.getNumRecords() == 0) {
+				return;
+			}
+			byte[] data = rs.getRecord(1);
+			if (data == null) {
+				return;
+			}
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			if (in.readByte() != STORE_VERSION) {
+				return;
+			}
+			long now = System.currentTimeMillis();
+			int count = in.readUnsignedByte();
+			for (int i = 0; i < count; i++) {
+				Session session = new Session();
+				session.host = in.readUTF();
+				session.port = in.readInt();
+				session.creationTime = in.readLong();
+				session.id = readBytes(in);
+				session.master = readBytes(in);
+				byte[] fingerprint = readBytes(in);
+				byte[] encoded = readBytes(in);
+				if (encoded.length != 0) {
+					session.cert = X509Certificate.generateCertificate(encoded, 0, encoded.length);
+					if (session.cert == null
+							|| !Utils.byteMatch(session.cert.getFingerprint(), 0,
+							fingerprint, 0, fingerprint.length)) {
+						continue;
+					}
+				}
+				if (!isExpired(session, now) && indexOf(session.host, session.port) == -1) {
+					sessions.addElement(session);
+				}
+			}
+			trim();
+		} catch (IOException e) {
+			// A damaged store only costs full handshakes
+		} catch (RecordStoreException e) {
+		} finally {
+			close(rs);
+		}
+	}
+
+	/**
+	 * Writes the cached sessions to the record store, if any.
+	 */
+	private static void save() {
+		if (recordStoreName == null) {
+			return;
+		}
+		RecordStore rs = null;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(STORE_VERSION);
+			out.writeByte(sessions.size());
+			for (int i = 0; i < sessions.size(); i++) {
+				Session session = (Session) sessions.elementAt(i);
+				out.writeUTF(session.host);
+				out.writeInt(session.port);
+				out.writeLong(session.creationTime);
+				writeBytes(out, session.id);
+				writeBytes(out, session.master);
+				if (session.cert != null) {
+					writeBytes(out, session.cert.getFingerprint());
+					writeBytes(out, session.cert.getEncoded());
+				} else {
+					writeBytes(out, null);
+					writeBytes(out, null);
+				}
+			}
+			byte[] data = bytes.toByteArray();
+
+			rs = RecordStore.openRecordStore(recordStoreName, true);
+			if (rs.getNumRecords() == 0) {
+				rs.addRecord(data, 0, data.length);
+			} else {
+				rs.setRecord(1, data, 0, data.length);
+			}
+		} catch (IOException e) {
+		} catch (RecordStoreException e) {
+		} finally {
+			close(rs);
+		}
+	}
+
+	static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] b = new byte[in.readUnsignedShort()];
+		in.readFully(b);
+		return b;
+	}
+
+	static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+		if (b == null) {
+			out.writeShort(0);
+			return;
+		}
+		out.writeShort(b.length);
+		out.write(b);
+	}
+
+	static void close(RecordStore rs) {
+		if (rs != null) {
+			try {
+				rs.closeRecordStore();
+			} catch (RecordStoreException e) {
+			}
+		}
+	}
+}
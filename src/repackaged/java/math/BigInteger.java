@@ -150,6 +150,17 @@ public class BigInteger {
 	 */
 	private static final int[] EXP_WINDOW_THRESHOLDS = {7, 25, 81, 241, 673, 1793, 4609, Integer.MAX_VALUE};
 
+	/*
+	 * Length in words from which multiply and square use Karatsuba, see
+	 * setKaratsubaThreshold(int). Only callers of multiply and square see
+	 * it: pow, modPow with an even modulus, and products made by the
+	 * application. RSA moduli are odd, so their modPow runs on the
+	 * Montgomery kernels of ModContext and never gets here. Each level of
+	 * the recursion allocates its halves, sums and products, so the split
+	 * only pays off on long operands.
+	 */
+	private static int karatsubaThreshold = 48;
+
 	static {
 		/*
 		 *  Avoid using large windows in VMs with little memory.
@@ -1160,7 +1171,7 @@ public class BigInteger {
 			} while (a.sign == 0 || a.compareTo(n) >= 0
 					|| a.isEqualMagnitude(montRadix) || a.isEqualMagnitude(minusMontRadix));
 
-			BigInteger y = modPowMonty(a, r, n, false);
+			BigInteger y = modPowMonty(a, r, n);
 
 			if (!y.equals(montRadix)) {
 				int j = 0;
@@ -1169,7 +1180,7 @@ public class BigInteger {
 						return false;
 					}
 
-					y = modPowMonty(y, TWO, n, false);
+					y = modPowMonty(y, TWO, n);
 
 					if (y.equals(montRadix)) {
 						return false;
@@ -1357,48 +1368,117 @@ public class BigInteger {
 	}
 
 	public BigInteger modPow(BigInteger e, BigInteger m) {
-		if (m.sign < 1) {
-			throw new ArithmeticException("Modulus must be positive");
-		}
+		return new ModContext(m).modPow(this, e);
+	}
 
-		if (m.equals(ONE)) {
-			return ZERO;
+	/**
+	 * The values modular exponentiation derives from a modulus, computed
+	 * once so they can be reused for every exponentiation with it: the
+	 * Montgomery constants of an odd modulus, or the Barrett constants of
+	 * an even one.
+	 */
+	public static final class ModContext {
+
+		private final BigInteger m;
+		// Montgomery constants, for an odd modulus
+		private final int mDash;
+		private final boolean smallMontyModulus;
+		private final int[] rSquared; // R^2 mod m, R = b^n, n words
+		// Barrett constants, for an even modulus
+		private final BigInteger mr;
+		private final BigInteger yu;
+
+		public ModContext(BigInteger m) {
+			if (m.sign < 1) {
+				throw new ArithmeticException("Modulus must be positive");
+			}
+
+			this.m = m;
+			int n = m.magnitude.length;
+			if ((m.magnitude[n - 1] & 1) != 0) {
+				mDash = m.getMQuote();
+				smallMontyModulus = m.bitLength() + 2 <= 32 * n;
+				rSquared = padMagnitude(ONE.shiftLeft(64 * n).remainder(m).magnitude, n);
+				mr = null;
+				yu = null;
+			} else {
+				mDash = 0;
+				smallMontyModulus = false;
+				rSquared = null;
+				mr = ONE.shiftLeft((n + 1) << 5);
+				yu = ONE.shiftLeft(n << 6).divide(m);
+			}
 		}
 
-		if (e.sign == 0) {
-			return ONE;
+		public BigInteger getModulus() {
+			return m;
 		}
 
-		if (sign == 0) {
-			return ZERO;
-		}
+		/**
+		 * Computes <code>b.modPow(e, m)</code> for the modulus m of this
+		 * context.
+		 */
+		public BigInteger modPow(BigInteger b, BigInteger e) {
+			if (m.equals(ONE)) {
+				return ZERO;
+			}
 
-		boolean negExp = e.sign < 0;
-		if (negExp) {
-			e = e.negate();
-		}
+			if (e.sign == 0) {
+				return ONE;
+			}
 
-		BigInteger result = this.mod(m);
-		if (!e.equals(ONE)) {
-			if ((m.magnitude[m.magnitude.length - 1] & 1) == 0) {
-				result = modPowBarrett(result, e, m);
-			} else {
-				result = modPowMonty(result, e, m, true);
+			if (b.sign == 0) {
+				return ZERO;
 			}
-		}
 
-		if (negExp) {
-			result = result.modInverse(m);
-		}
+			boolean negExp = e.sign < 0;
+			if (negExp) {
+				e = e.negate();
+			}
 
-		return result;
+			BigInteger result = b.mod(m);
+			if (!e.equals(ONE)) {
+				if (rSquared == null) {
+					result = modPowBarrett(result, e, m, mr, yu);
+				} else {
+					int n = m.magnitude.length;
+					int[] yAccum = new int[n + 1];
+
+					// z = b * R mod m
+					int[] zVal = new int[n];
+					System.arraycopy(result.magnitude, 0, zVal, n - result.magnitude.length, result.magnitude.length);
+					multiplyMonty(yAccum, zVal, rSquared, m.magnitude, mDash, smallMontyModulus);
+
+					int[] yVal = modPowMonty(yAccum, zVal, e, m, mDash, smallMontyModulus);
+
+					// Return y * R^(-1) mod m
+					reduceMonty(yVal, m.magnitude, mDash);
+					result = new BigInteger(1, yVal);
+				}
+			}
+
+			if (negExp) {
+				result = result.modInverse(m);
+			}
+
+			return result;
+		}
 	}
 
-	private static BigInteger modPowBarrett(BigInteger b, BigInteger e, BigInteger m) {
-		int k = m.magnitude.length;
-		BigInteger mr = ONE.shiftLeft((k + 1) << 5);
-		BigInteger yu = ONE.shiftLeft(k << 6).divide(m);
+	/**
+	 * @return <code>mag</code> or a copy of it with leading zero words, so it
+	 *         has <code>n</code> words
+	 */
+	private static int[] padMagnitude(int[] mag, int n) {
+		if (mag.length >= n) {
+			return mag;
+		}
+		int[] tmp = new int[n];
+		System.arraycopy(mag, 0, tmp, n - mag.length, mag.length);
+		return tmp;
+	}
 
+	private static BigInteger modPowBarrett(BigInteger b, BigInteger e, BigInteger m, BigInteger mr, BigInteger yu) {
 		// Sliding window from MSW to LSW
 		int extraBits = 0, expLength = e.bitLength();
 		while (expLength > EXP_WINDOW_THRESHOLDS[extraBits]) {
@@ -1480,37 +1560,51 @@ public class BigInteger {
 		return x;
 	}
 
-	private static BigInteger modPowMonty(BigInteger b, BigInteger e, BigInteger m, boolean convert) {
+	private static BigInteger modPowMonty(BigInteger b, BigInteger e, BigInteger m) {
 		int n = m.magnitude.length;
 		int powR = 32 * n;
 		boolean smallMontyModulus = m.bitLength() + 2 <= powR;
 		int mDash = m.getMQuote();
 
-		// tmp = this * R mod m
-		if (convert) {
-			b = b.shiftLeft(powR).remainder(m);
+		int[] yAccum = new int[n + 1];
+
+//        assert b.magnitude.length <= n;
+		int[] zVal = padMagnitude(b.magnitude, n);
+
+		int[] yVal = modPowMonty(yAccum, zVal, e, m, mDash, smallMontyModulus);
+
+		if (smallMontyModulus && compareTo(0, yVal, 0, m.magnitude) >= 0) {
+			subtract(0, yVal, 0, m.magnitude);
 		}
 
-		int[] yAccum = new int[n + 1];
+		return new BigInteger(1, yVal);
+	}
 
-		int[] zVal = b.magnitude;
-//        assert zVal.length <= n;
-		if (zVal.length < n) {
-			int[] tmp = new int[n];
-			System.arraycopy(zVal, 0, tmp, n - zVal.length, zVal.length);
-			zVal = tmp;
+	/**
+	 * return z^e in Montgomery form, with z given in Montgomery form. The
+	 * result is not fully reduced when smallMontyModulus is set.
+	 */
+	private static int[] modPowMonty(int[] yAccum, int[] zVal, BigInteger e, BigInteger m, int mDash, boolean smallMontyModulus) {
+		// Square and multiply for single word exponents with few bits set,
+		// the common small RSA public exponents such as 3 and 65537
+		if (e.magnitude.length == 1 && e.bitCount() <= 2) {
+			int ev = e.magnitude[0];
+			int[] yVal = Arrays.clone(zVal);
+			for (int i = bitLen(ev) - 2; i >= 0; --i) {
+				squareMonty(yAccum, yVal, m.magnitude, mDash, smallMontyModulus);
+				if (((ev >>> i) & 1) != 0) {
+					multiplyMonty(yAccum, yVal, zVal, m.magnitude, mDash, smallMontyModulus);
+				}
+			}
+			return yVal;
 		}
 
 		// Sliding window from MSW to LSW
 
 		int extraBits = 0;
-
-		// Filter the common case of small RSA exponents with few bits set
-		if (e.magnitude.length > 1 || e.bitCount() > 2) {
-			int expLength = e.bitLength();
-			while (expLength > EXP_WINDOW_THRESHOLDS[extraBits]) {
-				++extraBits;
-			}
+		int expLength = e.bitLength();
+		while (expLength > EXP_WINDOW_THRESHOLDS[extraBits]) {
+			++extraBits;
 		}
 
 		int numPowers = 1 << extraBits;
@@ -1557,14 +1651,7 @@ public class BigInteger {
 			squareMonty(yAccum, yVal, m.magnitude, mDash, smallMontyModulus);
 		}
 
-		if (convert) {
-			// Return y * R^(-1) mod m
-			reduceMonty(yVal, m.magnitude, mDash);
-		} else if (smallMontyModulus && compareTo(0, yVal, 0, m.magnitude) >= 0) {
-			subtract(0, yVal, 0, m.magnitude);
-		}
-
-		return new BigInteger(1, yVal);
+		return yVal;
 	}
 
 	private static int[] getWindowList(int[] mag, int extraBits) {
@@ -1916,12 +2003,16 @@ public class BigInteger {
 			return this.sign > 0 ? result : result.negate();
 		}
 
+		int resSign = sign ^ val.sign ^ 1;
+		if (magnitude.length >= karatsubaThreshold && val.magnitude.length >= karatsubaThreshold) {
+			return new BigInteger(resSign, multiplyKaratsuba(magnitude, val.magnitude));
+		}
+
 		int resLength = magnitude.length + val.magnitude.length;
 		int[] res = new int[resLength];
 
 		multiply(res, this.magnitude, val.magnitude);
 
-		int resSign = sign ^ val.sign ^ 1;
 		return new BigInteger(resSign, res);
 	}
 
@@ -1932,6 +2023,9 @@ public class BigInteger {
 		if (this.quickPow2Check()) {
 			return shiftLeft(abs().bitLength() - 1);
 		}
+		if (magnitude.length >= karatsubaThreshold) {
+			return new BigInteger(1, squareKaratsuba(magnitude));
+		}
 		int resLength = magnitude.length << 1;
 		if ((magnitude[0] >>> 16) == 0) {
 			--resLength;
@@ -1941,6 +2035,111 @@ public class BigInteger {
 		return new BigInteger(1, res);
 	}
 
+	/**
+	 * Sets the length, in words, from which multiply and square split
+	 * their operands as Karatsuba does instead of using the schoolbook
+	 * method. The best value depends on the VM.
+	 *
+	 * @param words operand length, at least 2
+	 */
+	public static void setKaratsubaThreshold(int words) {
+		karatsubaThreshold = Math.max(2, words);
+	}
+
+	/**
+	 * return x * y, splitting the operands in halves of h words:
+	 * x * y = (xh * yh) b^2h + ((xh + xl)(yh + yl) - xh * yh - xl * yl) b^h + xl * yl
+	 */
+	private static int[] multiplyKaratsuba(int[] x, int[] y) {
+		int h = (Math.max(x.length, y.length) + 1) >> 1;
+
+		BigInteger xl = lowerWords(x, h), xh = upperWords(x, h);
+		BigInteger yl = lowerWords(y, h), yh = upperWords(y, h);
+
+		BigInteger p1 = xh.multiply(yh);
+		BigInteger p2 = xl.multiply(yl);
+		BigInteger p3 = xh.add(xl).multiply(yh.add(yl));
+
+		return combineKaratsuba(x.length + y.length, h, p1, p2, p3);
+	}
+
+	/**
+	 * return x * x, as multiplyKaratsuba(x, x) with squares of the halves.
+	 */
+	private static int[] squareKaratsuba(int[] x) {
+		int h = (x.length + 1) >> 1;
+
+		BigInteger xl = lowerWords(x, h), xh = upperWords(x, h);
+
+		BigInteger p1 = xh.square();
+		BigInteger p2 = xl.square();
+		BigInteger p3 = xh.add(xl).square();
+
+		return combineKaratsuba(x.length << 1, h, p1, p2, p3);
+	}
+
+	/**
+	 * return p1 b^2h + (p3 - p1 - p2) b^h + p2 in a new array of length words.
+	 */
+	private static int[] combineKaratsuba(int length, int h, BigInteger p1, BigInteger p2, BigInteger p3) {
+		int[] res = new int[length];
+		System.arraycopy(p2.magnitude, 0, res, length - p2.magnitude.length, p2.magnitude.length);
+
+		BigInteger middle = p3.subtract(p1).subtract(p2);
+		if (middle.sign != 0) {
+			addAt(res, length - h, middle.magnitude);
+		}
+		if (p1.sign != 0) {
+			addAt(res, length - 2 * h, p1.magnitude);
+		}
+		return res;
+	}
+
+	/**
+	 * x[0..end) += y, with y aligned to end, the carry propagating into
+	 * the upper words of x.
+	 */
+	private static void addAt(int[] x, int end, int[] y) {
+		int tI = end - 1;
+		long m = 0;
+
+		for (int vI = y.length - 1; vI >= 0; --vI) {
+			m += (x[tI] & IMASK) + (y[vI] & IMASK);
+			x[tI--] = (int) m;
+			m >>>= 32;
+		}
+
+		while (tI >= 0 && m != 0) {
+			m += (x[tI] & IMASK);
+			x[tI--] = (int) m;
+			m >>>= 32;
+		}
+	}
+
+	/**
+	 * return the number made of the h low words of mag.
+	 */
+	private static BigInteger lowerWords(int[] mag, int h) {
+		if (mag.length <= h) {
+			return new BigInteger(1, mag);
+		}
+		int[] lower = new int[h];
+		System.arraycopy(mag, mag.length - h, lower, 0, h);
+		return new BigInteger(1, lower);
+	}
+
+	/**
+	 * return the number made of the words of mag above the h low ones.
+	 */
+	private static BigInteger upperWords(int[] mag, int h) {
+		if (mag.length <= h) {
+			return ZERO;
+		}
+		int[] upper = new int[mag.length - h];
+		System.arraycopy(mag, 0, upper, 0, upper.length);
+		return new BigInteger(1, upper);
+	}
+
 	public BigInteger negate() {
 		if (sign == 0) {
 			return this;
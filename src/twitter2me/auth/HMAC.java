@@ -2,68 +2,105 @@ package twitter2me.auth;
 
 import java.io.UnsupportedEncodingException;
 
+/**
+ * HMAC-SHA1 (RFC 2104) over a streaming {@link SHA1}. The inner and outer
+ * hashes are keyed once, when the object is created, and each message
+ * starts from a copy of those states, so only the message itself is hashed.
+ */
 public class HMAC {
+
+	private final SHA1 innerKeyed = new SHA1();
+	private final SHA1 outerKeyed = new SHA1();
+	private final byte[] innerDigest = new byte[SHA1.DIGEST_LENGTH];
+	private SHA1 inner;
+
 	/**
-	 * @param data
 	 * @param key
-	 * @return
 	 */
-	public static byte[] getHmac(String data, String key) {
-		try {
-			byte[] ipadArray = new byte[64];
-			byte[] opadArray = new byte[64];
-			byte[] keyArray = new byte[64];
-			int ex = key.length();
-			SHA1 sha1 = new SHA1();
-			if (key.length() > 64) {
-				byte[] temp = sha1.getDigestOfBytes(key.getBytes("UTF-8"));
-				ex = temp.length;
-				for (int i = 0; i < ex; i++) {
-					keyArray[i] = temp[i];
-				}
-				//System.arraycopy(temp, 0, keyArray, 0, temp.length);
-			} else {
-				byte[] temp = key.getBytes();
-				for (int i = 0; i < temp.length; i++) {
-					keyArray[i] = temp[i];
-				}
-			}
-			for (int i = ex; i < 64; i++) {
-				keyArray[i] = 0;
-			}
-			for (int j = 0; j < 64; j++) {
-				ipadArray[j] = (byte) (keyArray[j] ^ 0x36);
-				opadArray[j] = (byte) (keyArray[j] ^ 0x5C);
-			}
-			byte[] tempResult = sha1.getDigestOfBytes(join(ipadArray, data
-					.getBytes("UTF-8")));
-
-			return sha1.getDigestOfBytes(join(opadArray, tempResult));
-		} catch (UnsupportedEncodingException e) {
-			return null;
+	public HMAC(byte[] key) {
+		if (key.length > SHA1.BLOCK_SIZE) {
+			key = innerKeyed.getDigestOfBytes(key);
+		}
+		final byte[] pad = new byte[SHA1.BLOCK_SIZE];
+		for (int i = 0; i < key.length; i++) {
+			pad[i] = (byte) (key[i] ^ 0x36);
+		}
+		for (int i = key.length; i < SHA1.BLOCK_SIZE; i++) {
+			pad[i] = 0x36;
 		}
+		innerKeyed.update(pad, 0, pad.length);
+		for (int i = 0; i < SHA1.BLOCK_SIZE; i++) {
+			pad[i] ^= 0x36 ^ 0x5C;
+		}
+		outerKeyed.update(pad, 0, pad.length);
+		reset();
 	}
 
 	/**
-	 * @param b1
-	 * @param b2
-	 * @return
+	 * Adds <code>len</code> bytes of the message from <code>off</code>.
+	 * 
+	 * @param data
+	 * @param off
+	 * @param len
 	 */
-	private static byte[] join(byte[] b1, byte[] b2) {
-		final byte[] newer = new byte[b1.length + b2.length];
-		System.arraycopy(b1, 0, newer, 0, b1.length);
-		System.arraycopy(b2, 0, newer, b1.length, b2.length);
-//		for (int i = 0; i < b1.length; i++) {
-//			newer[i] = b1[i];
-//		}
-//		for (int i = 0; i < b2.length; i++) {
-//			newer[i + b1.length] = b2[i];
-//		}
-		return newer;
+	public void update(byte[] data, int off, int len) {
+		inner.update(data, off, len);
 	}
-	
+
 	/**
+	 * Writes the 20 byte MAC of the message at <code>off</code> and starts
+	 * a new message with the same key.
 	 * 
+	 * @param out
+	 * @param off
 	 */
-	private HMAC() {}
-}
\ No newline at end of file
+	public void doFinal(byte[] out, int off) {
+		inner.digest(innerDigest, 0);
+		final SHA1 outer = outerKeyed.copy();
+		outer.update(innerDigest, 0, innerDigest.length);
+		outer.digest(out, off);
+		reset();
+	}
+
+	/**
+	 * @return the MAC of the message
+	 */
+	public byte[] doFinal() {
+		final byte[] out = new byte[SHA1.DIGEST_LENGTH];
+		doFinal(out, 0);
+		return out;
+	}
+
+	/**
+	 * Discards the message added so far.
+	 */
+	public void reset() {
+		inner = innerKeyed.copy();
+	}
+
+	/**
+	 * Computes the MAC of a whole message. Unlike the streaming methods it
+	 * can be called from several threads.
+	 * 
+	 * @param data
+	 * @return the MAC of <code>data</code>
+	 */
+	public synchronized byte[] sign(byte[] data) {
+		reset();
+		update(data, 0, data.length);
+		return doFinal();
+	}
+
+	/**
+	 * @param data
+	 * @param key
+	 * @return
+	 */
+	public static byte[] getHmac(String data, String key) {
+		try {
+			return new HMAC(key.getBytes("UTF-8")).sign(data.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			return null;
+		}
+	}
+}
@@ -43,6 +43,9 @@ public class OAuthAuthorization implements Authorization, OAuthSupport {
 	private String consumerSecret;
 	private String realm = null;
 	private OAuthToken oauthToken = null;
+	// signer keyed with the consumer secret and signerTokenSecret
+	private transient HMAC signer = null;
+	private transient String signerTokenSecret = null;
 	// constructors
 	private static Random RAND = new Random();
 
@@ -277,6 +280,9 @@ public class OAuthAuthorization implements Authorization, OAuthSupport {
 	public void setOAuthConsumer(final String consumerKey, final String consumerSecret) {
 		this.consumerKey = consumerKey != null ? consumerKey : "";
 		this.consumerSecret = consumerSecret != null ? consumerSecret : "";
+		synchronized (this) {
+			signer = null;
+		}
 	}
 
 	/**
@@ -399,14 +405,36 @@ public class OAuthAuthorization implements Authorization, OAuthSupport {
 	 */
 	/* package */
 	String generateSignature(final String data, final OAuthToken token) {
-		final String oauthSignature;
-		if (token == null) {
-			oauthSignature = HttpParameter.encode(consumerSecret) + "&";
-		} else {
-			oauthSignature = HttpParameter.encode(consumerSecret) + "&"
-					+ HttpParameter.encode(token.getTokenSecret());
-		}
-		return BASE64Encoder.encode(HMAC.getHmac(data, oauthSignature));
+		try {
+			final HMAC hmac = getSigner(token != null ? token.getTokenSecret() : null);
+			return BASE64Encoder.encode(hmac.sign(data.getBytes("UTF-8")));
+		} catch (UnsupportedEncodingException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the HMAC keyed with the consumer secret and
+	 * <code>tokenSecret</code>, keying a new one only when the secrets have
+	 * changed since the last signature.
+	 * 
+	 * @param tokenSecret the token secret, or null without token
+	 * @return the signer
+	 * @throws UnsupportedEncodingException
+	 */
+	private synchronized HMAC getSigner(final String tokenSecret) throws UnsupportedEncodingException {
+		if (signer == null
+				|| (tokenSecret != null ? !tokenSecret.equals(signerTokenSecret) : signerTokenSecret != null)) {
+			final String oauthSignature;
+			if (tokenSecret == null) {
+				oauthSignature = HttpParameter.encode(consumerSecret) + "&";
+			} else {
+				oauthSignature = HttpParameter.encode(consumerSecret) + "&" + HttpParameter.encode(tokenSecret);
+			}
+			signer = new HMAC(oauthSignature.getBytes("UTF-8"));
+			signerTokenSecret = tokenSecret;
+		}
+		return signer;
 	}
 
 	/**
@@ -7,8 +7,10 @@ package twitter2me.conf;
 import twitter2me.TwitterConstants;
 import twitter2me.Version;
 import twitter2me.http.BaseHttpClientFactory;
+import twitter2me.http.ExponentialBackoffRetryPolicy;
 import twitter2me.http.HostAddressResolver;
 import twitter2me.http.HttpClientFactory;
+import twitter2me.http.RetryPolicy;
 
 /**
  * Configuration base class with default settings.
@@ -25,6 +27,7 @@ class ConfigurationBase implements TwitterConstants, Configuration {
 	private boolean gzipEnabled;
 	private int httpRetryCount;
 	private int httpRetryIntervalSeconds;
+	private RetryPolicy retryPolicy;
 	private String oAuthConsumerKey;
 	private String oAuthConsumerSecret;
 	private String oAuthAccessToken;
@@ -108,6 +111,13 @@ class ConfigurationBase implements TwitterConstants, Configuration {
 		return httpRetryIntervalSeconds;
 	}
 
+	public final RetryPolicy getRetryPolicy() {
+		if (retryPolicy == null) {
+			retryPolicy = new ExponentialBackoffRetryPolicy(httpRetryCount, httpRetryIntervalSeconds * 1000L);
+		}
+		return retryPolicy;
+	}
+
 	public String getOAuthAccessToken() {
 		return oAuthAccessToken;
 	}
@@ -244,6 +254,10 @@ class ConfigurationBase implements TwitterConstants, Configuration {
 		httpRetryIntervalSeconds = retryIntervalSeconds;
 	}
 
+	protected final void setRetryPolicy(final RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
 	protected final void setSSLErrorsIgnored(final boolean sslErrorsIgnored) {
 		this.sslErrorsIgnored = sslErrorsIgnored;
 	}
@@ -17,6 +17,7 @@ package twitter2me.conf;
 
 import twitter2me.http.HostAddressResolver;
 import twitter2me.http.HttpClientFactory;
+import twitter2me.http.RetryPolicy;
 
 /**
  * A builder that can be used to construct a twitter4j configuration with
@@ -94,6 +95,12 @@ public final class ConfigurationBuilder {
 		return this;
 	}
 
+	public ConfigurationBuilder setRetryPolicy(final RetryPolicy retryPolicy) {
+		checkNotBuilt();
+		configuration.setRetryPolicy(retryPolicy);
+		return this;
+	}
+
 	public ConfigurationBuilder setSSLErrorsIgnored(final boolean sslErrorsIgnored) {
 		checkNotBuilt();
 		configuration.setSSLErrorsIgnored(sslErrorsIgnored);
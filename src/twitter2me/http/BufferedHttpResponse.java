@@ -0,0 +1,132 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package twitter2me.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Hashtable;
+import twitter2me.TwitterException;
+import twitter2me.internal.util.IOUtil;
+
+/**
+ * A response read into memory. Its body and headers can be shared by
+ * several responses, each of them reading the body from the start.
+ *
+ * @author mariotaku
+ */
+final class BufferedHttpResponse extends HttpResponse {
+
+	private final int statusCode;
+	private final Hashtable headerFields;
+	private final byte[] body;
+	private final int length;
+
+	private BufferedHttpResponse(final HttpConfiguration conf, final int statusCode, final Hashtable headerFields,
+			final byte[] body, final int length) throws IOException {
+		super(conf);
+		this.statusCode = statusCode;
+		this.headerFields = headerFields;
+		this.body = body;
+		this.length = length;
+	}
+
+	/**
+	 * Reads a response, and disconnects it.
+	 */
+	static BufferedHttpResponse read(final HttpResponse res) throws TwitterException {
+		InputStream is = null;
+		try {
+			final int statusCode = res.getStatusCode();
+			final Hashtable headerFields = res.getResponseHeaderFields();
+			final long contentLength = res.getContentLength();
+			final ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream(contentLength > 0
+					? (int) contentLength : 1024);
+			is = res.asStream();
+			if (is != null) {
+				final byte[] buf = new byte[1024];
+				int len;
+				while ((len = is.read(buf)) != -1) {
+					out.write(buf, 0, len);
+				}
+			}
+			return new BufferedHttpResponse(res.getHttpConfiguration(), statusCode, headerFields, out.getBuffer(),
+					out.size());
+		} catch (final IOException ioe) {
+			throw new TwitterException(ioe.getMessage(), ioe);
+		} finally {
+			IOUtil.closeSliently(is);
+			try {
+				res.disconnect();
+			} catch (final IOException ignore) {
+			}
+		}
+	}
+
+	/**
+	 * @param res the response whose status and headers are kept
+	 * @param body the body read from <code>res</code>, not copied
+	 */
+	static BufferedHttpResponse create(final HttpResponse res, final byte[] body, final int length) {
+		try {
+			return new BufferedHttpResponse(res.getHttpConfiguration(), res.getStatusCode(),
+					res.getResponseHeaderFields(), body, length);
+		} catch (final IOException e) {
+			// not thrown by HttpResponse
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * @return a new response with the same body and headers
+	 */
+	BufferedHttpResponse replay() {
+		try {
+			return new BufferedHttpResponse(conf, statusCode, headerFields, body, length);
+		} catch (final IOException e) {
+			// not thrown by HttpResponse
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	protected InputStream getInputStream() {
+		return new ByteArrayInputStream(body, 0, length);
+	}
+
+	public void disconnect() {
+		// nothing to release
+	}
+
+	public long getContentLength() {
+		return length;
+	}
+
+	public String getResponseHeader(final String name) {
+		return (String) headerFields.get(name.toLowerCase());
+	}
+
+	public Hashtable getResponseHeaderFields() {
+		return headerFields;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Gives access to the buffer, to avoid copying the body.
+	 */
+	private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+		ExposedByteArrayOutputStream(final int size) {
+			super(size);
+		}
+
+		byte[] getBuffer() {
+			return buf;
+		}
+	}
+}
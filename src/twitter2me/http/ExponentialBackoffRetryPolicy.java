@@ -0,0 +1,80 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package twitter2me.http;
+
+import java.util.Random;
+
+/**
+ * Retries I/O errors and server errors with an exponentially growing,
+ * jittered delay, so clients that failed together do not retry together.
+ * Rate limited requests (420 and 429) are only retried when the server
+ * tells how long to wait.
+ *
+ * @author mariotaku
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy, HttpResponseCode {
+
+	public static final long DEFAULT_MAX_DELAY = 60000;
+	public static final long DEFAULT_REQUEST_TIMEOUT = 120000;
+	public static final long DEFAULT_READ_TIMEOUT = 30000;
+	private static final Random RANDOM = new Random();
+	private final int maxRetries;
+	private final long baseDelay;
+	private final long maxDelay;
+	private final long requestTimeout;
+	private final long readTimeout;
+
+	public ExponentialBackoffRetryPolicy(final int maxRetries, final long baseDelay) {
+		this(maxRetries, baseDelay, DEFAULT_MAX_DELAY, DEFAULT_REQUEST_TIMEOUT, DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * @param maxRetries maximum number of retries
+	 * @param baseDelay delay in milliseconds before the first retry, doubled
+	 *                  for each of the next ones
+	 * @param maxDelay maximum delay in milliseconds between two attempts
+	 * @param requestTimeout see {@link RetryPolicy#getRequestTimeout()}
+	 * @param readTimeout see {@link RetryPolicy#getReadTimeout()}
+	 */
+	public ExponentialBackoffRetryPolicy(final int maxRetries, final long baseDelay, final long maxDelay,
+			final long requestTimeout, final long readTimeout) {
+		this.maxRetries = maxRetries;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.requestTimeout = requestTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	public long getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	public long getReadTimeout() {
+		return readTimeout;
+	}
+
+	public long getRetryDelay(final int retriedCount, final int statusCode, final long retryAfter) {
+		if (retriedCount >= maxRetries) {
+			return -1;
+		}
+		if (statusCode == ENHANCE_YOUR_CLAIM || statusCode == TOO_MANY_REQUESTS) {
+			return retryAfter;
+		}
+		if (statusCode != -1 && statusCode < INTERNAL_SERVER_ERROR) {
+			return -1;
+		}
+		if (retryAfter >= 0) {
+			return retryAfter;
+		}
+		long delay = baseDelay << (retriedCount < 16 ? retriedCount : 16);
+		if (delay > maxDelay || delay < 0) {
+			delay = maxDelay;
+		}
+		// Wait at least half of the delay, the rest is random
+		final int half = (int) Math.min(delay / 2, Integer.MAX_VALUE - 1);
+		// Random.nextInt(int) is not in CLDC 1.0
+		return delay - half + (RANDOM.nextInt() >>> 1) % (half + 1);
+	}
+}
@@ -4,6 +4,9 @@
  */
 package twitter2me.http;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Hashtable;
 import javax.microedition.io.HttpConnection;
 import twitter2me.TwitterException;
 import twitter2me.auth.Authorization;
@@ -15,9 +18,51 @@ import twitter2me.conf.Configuration;
  */
 public class HttpClientWrapper implements HttpClient {
 
+	/** GET requests being made, by resource key, shared by all the clients. */
+	private static final Hashtable inFlight = new Hashtable();
+
+	/**
+	 * Makes a request. A GET request made while the same one is already
+	 * being made, for the same user, and before its body is read, waits for
+	 * it and gets a copy of its response instead of opening another
+	 * connection. The first request streams its response; its body is kept
+	 * in memory only when other requests are waiting for it.
+	 */
 	public HttpResponse request(HttpRequest req) throws TwitterException {
-		return http.request(req);
+		if (!HttpConnection.GET.equals(req.getMethod())) {
+			return http.request(req);
+		}
+		final String key = req.getResourceKey();
+		final Call current;
+		final Call call = new Call(key);
+		synchronized (inFlight) {
+			current = (Call) inFlight.get(key);
+			if (current == null) {
+				inFlight.put(key, call);
+			} else {
+				current.waiters++;
+			}
+		}
+		if (current != null) {
+			return current.await().replay();
+		}
+		HttpResponse res = null;
+		try {
+			res = http.request(req);
+			return SharedHttpResponse.create(res, call);
+		} catch (final TwitterException e) {
+			call.close();
+			call.complete(null, e);
+			throw e;
+		} finally {
+			if (res == null) {
+				// e.g. OutOfMemoryError, the waiting requests must not wait forever
+				call.close();
+				call.complete(null, new TwitterException("Request failed"));
+			}
+		}
 	}
+
 	private final HttpClient http;
 
 	public HttpClientWrapper(Configuration conf) {
@@ -41,4 +86,237 @@ public class HttpClientWrapper implements HttpClient {
 	public void shutdown() {
 		http.shutdown();
 	}
+
+	/**
+	 * A request in flight, waited for by the same requests.
+	 */
+	private static final class Call {
+
+		private final String key;
+		/** Number of requests waiting for this one, guarded by inFlight. */
+		private int waiters;
+		private boolean completed;
+		private BufferedHttpResponse response;
+		private TwitterException exception;
+
+		Call(final String key) {
+			this.key = key;
+		}
+
+		/**
+		 * Stops other requests from waiting for this one.
+		 *
+		 * @return <code>true</code> if requests are waiting for its response
+		 */
+		boolean close() {
+			synchronized (inFlight) {
+				if (inFlight.get(key) == this) {
+					inFlight.remove(key);
+				}
+				return waiters > 0;
+			}
+		}
+
+		synchronized boolean isCompleted() {
+			return completed;
+		}
+
+		synchronized void complete(final BufferedHttpResponse response, final TwitterException exception) {
+			if (completed) {
+				return;
+			}
+			completed = true;
+			this.response = response;
+			this.exception = exception;
+			notifyAll();
+		}
+
+		synchronized BufferedHttpResponse await() throws TwitterException {
+			while (!completed) {
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					throw new TwitterException("Interrupted", e);
+				}
+			}
+			if (exception != null) {
+				throw exception;
+			}
+			return response;
+		}
+	}
+
+	/**
+	 * The response of the first of identical requests. Once its body is
+	 * asked for, no other request can wait for it; if some already do, the
+	 * body is recorded as it is read and handed to them when complete.
+	 */
+	private static final class SharedHttpResponse extends HttpResponse {
+
+		private final HttpResponse res;
+		private final Call call;
+		private Recorder recorder;
+
+		private SharedHttpResponse(final HttpResponse res, final Call call) throws IOException {
+			super(res.getHttpConfiguration());
+			this.res = res;
+			this.call = call;
+		}
+
+		static SharedHttpResponse create(final HttpResponse res, final Call call) {
+			try {
+				return new SharedHttpResponse(res, call);
+			} catch (final IOException e) {
+				// not thrown by HttpResponse
+				throw new IllegalStateException(e.getMessage());
+			}
+		}
+
+		protected InputStream getInputStream() throws TwitterException {
+			final InputStream is;
+			try {
+				is = res.asStream();
+			} catch (final TwitterException e) {
+				if (call.close()) {
+					call.complete(null, e);
+				}
+				throw e;
+			}
+			if (!call.close()) {
+				return is;
+			}
+			if (is == null) {
+				call.complete(BufferedHttpResponse.create(res, new byte[0], 0), null);
+				return null;
+			}
+			final long length = res.getContentLength();
+			return recorder = new Recorder(is, length > 0 && length < Integer.MAX_VALUE ? (int) length : 1024);
+		}
+
+		public void disconnect() throws IOException {
+			if (recorder != null) {
+				recorder.drain();
+			} else if (!call.isCompleted() && call.close()) {
+				// The body was not read, read it for the waiting requests,
+				// which disconnects the response
+				try {
+					call.complete(BufferedHttpResponse.read(res), null);
+				} catch (final TwitterException e) {
+					call.complete(null, e);
+				}
+				return;
+			}
+			res.disconnect();
+		}
+
+		public long getContentLength() {
+			return res.getContentLength();
+		}
+
+		public String getResponseHeader(final String name) {
+			return res.getResponseHeader(name);
+		}
+
+		public Hashtable getResponseHeaderFields() {
+			return res.getResponseHeaderFields();
+		}
+
+		public int getStatusCode() {
+			return res.getStatusCode();
+		}
+
+		/**
+		 * Copies the body as it is read, and hands it to the waiting
+		 * requests once it has been read completely.
+		 */
+		private final class Recorder extends InputStream {
+
+			private final InputStream in;
+			private byte[] body;
+			private int length;
+
+			Recorder(final InputStream in, final int capacity) {
+				this.in = in;
+				body = new byte[capacity];
+			}
+
+			public int read() throws IOException {
+				final int b;
+				try {
+					b = in.read();
+				} catch (final IOException e) {
+					fail(e);
+					throw e;
+				}
+				if (b < 0) {
+					complete();
+				} else {
+					ensureCapacity(1);
+					body[length++] = (byte) b;
+				}
+				return b;
+			}
+
+			public int read(final byte[] b, final int off, final int len) throws IOException {
+				final int n;
+				try {
+					n = in.read(b, off, len);
+				} catch (final IOException e) {
+					fail(e);
+					throw e;
+				}
+				if (n < 0) {
+					complete();
+				} else {
+					ensureCapacity(n);
+					System.arraycopy(b, off, body, length, n);
+					length += n;
+				}
+				return n;
+			}
+
+			public int available() throws IOException {
+				return in.available();
+			}
+
+			public void close() throws IOException {
+				drain();
+				in.close();
+			}
+
+			/**
+			 * Reads what the caller left of the body, for the waiting
+			 * requests.
+			 */
+			void drain() {
+				if (call.isCompleted()) {
+					return;
+				}
+				try {
+					final byte[] buf = new byte[256];
+					while (read(buf, 0, buf.length) >= 0) {
+						// recorded
+					}
+				} catch (final IOException e) {
+					// the waiting requests have been failed
+				}
+			}
+
+			private void ensureCapacity(final int n) {
+				if (length + n > body.length) {
+					final byte[] grown = new byte[Math.max(body.length * 2, length + n)];
+					System.arraycopy(body, 0, grown, 0, length);
+					body = grown;
+				}
+			}
+
+			private void complete() {
+				call.complete(BufferedHttpResponse.create(res, body, length), null);
+			}
+
+			private void fail(final IOException e) {
+				call.complete(null, new TwitterException(e.getMessage(), e));
+			}
+		}
+	}
 }
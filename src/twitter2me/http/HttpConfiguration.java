@@ -19,6 +19,8 @@ public interface HttpConfiguration {
 	public int getHttpRetryCount();
 
 	public int getHttpRetryIntervalSeconds();
+
+	public RetryPolicy getRetryPolicy();
 	
 	public HttpClientFactory getHttpClientFactory();
 	
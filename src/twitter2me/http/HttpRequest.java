@@ -75,6 +75,19 @@ public final class HttpRequest {
 		return url;
 	}
 
+	/**
+	 * Gets a key identifying the requested resource and the user it is
+	 * requested for. The authorization header is not used, as it is signed
+	 * for each request.
+	 *
+	 * @return the key
+	 */
+	public String getResourceKey() {
+		final String user = authorization != null && authorization.isEnabled() ? Integer
+				.toHexString(authorization.hashCode()) : "";
+		return method + ' ' + user + ' ' + url;
+	}
+
 	public String toString() {
 		return "HttpRequest{" + "method=" + method + ", url=" + url + ", sign_url=" + sign_url + ", parameters="
 				+ Arrays.toString(parameters) + ", authorization=" + authorization + '}';
@@ -0,0 +1,38 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package twitter2me.http;
+
+/**
+ * Decides how long a request may take and whether, and when, a failed
+ * attempt is retried.
+ *
+ * @author mariotaku
+ */
+public interface RetryPolicy {
+
+	/**
+	 * @return maximum time in milliseconds for a request, retries and the
+	 *         waits between them included, or 0 for no limit
+	 */
+	public long getRequestTimeout();
+
+	/**
+	 * @return maximum time in milliseconds a connection may go without
+	 *         sending or receiving data before it is closed, or 0 for no
+	 *         limit
+	 */
+	public long getReadTimeout();
+
+	/**
+	 * @param retriedCount number of retries done so far
+	 * @param statusCode HTTP status code of the failed attempt, or -1 if it
+	 *                   failed with an I/O error
+	 * @param retryAfter time in milliseconds the server asked to wait, or -1
+	 *                   if it did not
+	 * @return time in milliseconds to wait before the next attempt, or -1 to
+	 *         give up
+	 */
+	public long getRetryDelay(int retriedCount, int statusCode, long retryAfter);
+}
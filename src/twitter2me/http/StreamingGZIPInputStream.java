@@ -24,23 +24,29 @@ public final class StreamingGZIPInputStream extends GZIPInputStream {
 	private final InputStream wrapped;
 
 	public StreamingGZIPInputStream(final InputStream is) throws IOException {
-		super(is);
+		this(is, true);
+	}
+
+	public StreamingGZIPInputStream(final InputStream is, final boolean verifyChecksum) throws IOException {
+		super(is, verifyChecksum);
 		wrapped = is;
 	}
 
 	/**
-	 * Overrides behavior of GZIPInputStream which assumes we have all the data
-	 * available which is not true for streaming. We instead rely on the
+	 * Overrides behavior of GZIPInputStream which only counts the data
+	 * already decoded. When nothing is decoded we instead rely on the
 	 * underlying stream to tell us how much data is available.
 	 * <p>
 	 * Programs should not count on this method to return the actual number of
 	 * bytes that could be read without blocking.
 	 * 
-	 * @return - whatever the wrapped InputStream returns
+	 * @return - the number of decoded bytes, or whatever the wrapped
+	 *         InputStream returns if there are none
 	 * @exception IOException if an I/O error occurs.
 	 * 
 	 */
 	public int available() throws IOException {
-		return wrapped.available();
+		final int decoded = super.available();
+		return decoded > 0 ? decoded : wrapped.available();
 	}
 }
@@ -0,0 +1,171 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package twitter2me.http.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Vector;
+import javax.microedition.io.Connection;
+
+/**
+ * Closes the connections that stay without progress for longer than their
+ * read timeout, or do not receive a response before the deadline of their
+ * request. Blocked reads and
+ * writes on a closed connection fail with an <code>IOException</code>. A
+ * single thread watches all the connections, it stops when none is left.
+ *
+ * @author mariotaku
+ */
+final class ConnectionWatchdog implements Runnable {
+
+	private static final long CHECK_INTERVAL = 1000;
+	private static final Vector watches = new Vector();
+	private static Thread thread;
+
+	private ConnectionWatchdog() {
+	}
+
+	/**
+	 * Starts watching a connection.
+	 *
+	 * @param connection the connection
+	 * @param readTimeout maximum time in milliseconds without progress, or 0
+	 * @param deadline time after which the connection is closed if the
+	 *                 response has not started, or 0
+	 * @return the watch, or <code>null</code> if there is nothing to watch
+	 */
+	static Watch watch(final Connection connection, final long readTimeout, final long deadline) {
+		if (readTimeout <= 0 && deadline <= 0) {
+			return null;
+		}
+		final Watch watch = new Watch(connection, readTimeout, deadline);
+		synchronized (watches) {
+			watches.addElement(watch);
+			if (thread == null) {
+				thread = new Thread(new ConnectionWatchdog());
+				thread.start();
+			}
+		}
+		return watch;
+	}
+
+	public void run() {
+		final Vector expired = new Vector();
+		for (;;) {
+			try {
+				Thread.sleep(CHECK_INTERVAL);
+			} catch (final InterruptedException e) {
+				// check now
+			}
+			final long now = System.currentTimeMillis();
+			synchronized (watches) {
+				for (int i = watches.size() - 1; i >= 0; i--) {
+					final Watch watch = (Watch) watches.elementAt(i);
+					if (watch.isExpired(now)) {
+						watches.removeElementAt(i);
+						expired.addElement(watch);
+					}
+				}
+				if (watches.isEmpty() && expired.isEmpty()) {
+					thread = null;
+					return;
+				}
+			}
+			// Closing may block, do it without holding the lock
+			for (int i = expired.size() - 1; i >= 0; i--) {
+				((Watch) expired.elementAt(i)).expire();
+			}
+			expired.removeAllElements();
+		}
+	}
+
+	/**
+	 * A watched connection.
+	 */
+	static final class Watch {
+
+		private final Connection connection;
+		private final long readTimeout;
+		private long deadline;
+		private InputStream stream;
+		private long lastActivity;
+		private boolean expired;
+
+		private Watch(final Connection connection, final long readTimeout, final long deadline) {
+			this.connection = connection;
+			this.readTimeout = readTimeout;
+			this.deadline = deadline;
+			lastActivity = System.currentTimeMillis();
+		}
+
+		/**
+		 * Sets the response stream, closed with the connection.
+		 */
+		synchronized void setInputStream(final InputStream stream) {
+			this.stream = stream;
+		}
+
+		/**
+		 * Records progress on the connection.
+		 */
+		synchronized void touch() {
+			lastActivity = System.currentTimeMillis();
+		}
+
+		/**
+		 * Records the arrival of the response head. The deadline applies no
+		 * longer, the body is only limited by the read timeout.
+		 */
+		void responseStarted() {
+			synchronized (this) {
+				lastActivity = System.currentTimeMillis();
+				deadline = 0;
+			}
+			if (readTimeout <= 0) {
+				cancel();
+			}
+		}
+
+		/**
+		 * Stops watching the connection.
+		 */
+		void cancel() {
+			synchronized (watches) {
+				watches.removeElement(this);
+			}
+		}
+
+		/**
+		 * @return true if the connection has been closed by the watchdog
+		 */
+		synchronized boolean isExpired() {
+			return expired;
+		}
+
+		private synchronized boolean isExpired(final long now) {
+			return (deadline > 0 && now >= deadline) || (readTimeout > 0 && now - lastActivity >= readTimeout);
+		}
+
+		private void expire() {
+			final InputStream stream;
+			synchronized (this) {
+				expired = true;
+				stream = this.stream;
+			}
+			try {
+				if (stream != null) {
+					stream.close();
+				}
+			} catch (final IOException e) {
+				// closing anyway
+			}
+			try {
+				connection.close();
+			} catch (final IOException e) {
+				// closing anyway
+			}
+		}
+	}
+}
@@ -0,0 +1,423 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package twitter2me.http.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import javax.microedition.io.HttpConnection;
+import javax.microedition.rms.RecordEnumeration;
+import javax.microedition.rms.RecordStore;
+import javax.microedition.rms.RecordStoreException;
+import twitter2me.TwitterException;
+import twitter2me.http.HttpRequest;
+import twitter2me.http.HttpResponse;
+import twitter2me.http.StreamingGZIPInputStream;
+
+/**
+ * Cache of GET responses, kept in a record store. The bodies are stored as
+ * received, gzipped when the server compressed them, together with their
+ * <code>ETag</code> and <code>Last-Modified</code> validators. Requests for
+ * a cached URL are sent as conditional requests, and a
+ * <code>304 Not Modified</code> response is answered with the cached body.
+ * When the cache is full, the least recently used responses are removed.
+ *
+ * @author mariotaku
+ */
+public final class HttpCache {
+
+	public static final int DEFAULT_MAX_SIZE = 256 * 1024;
+	private final RecordStore recordStore;
+	private final int maxSize;
+	private final Hashtable entries = new Hashtable();
+	private int size;
+	private int clock;
+
+	private HttpCache(final String name, final int maxSize) throws RecordStoreException {
+		this.maxSize = maxSize;
+		recordStore = RecordStore.openRecordStore(name, true);
+		final RecordEnumeration records = recordStore.enumerateRecords(null, null, false);
+		try {
+			while (records.hasNextElement()) {
+				final int recordId = records.nextRecordId();
+				final byte[] record = recordStore.getRecord(recordId);
+				try {
+					final Entry entry = readEntry(record);
+					entry.recordId = recordId;
+					entry.size = record.length;
+					// Older records have smaller ids
+					entry.lastUsed = recordId;
+					if (clock < recordId) {
+						clock = recordId;
+					}
+					addEntry(entry);
+				} catch (final IOException e) {
+					recordStore.deleteRecord(recordId);
+				}
+			}
+		} finally {
+			records.destroy();
+		}
+	}
+
+	/**
+	 * Opens a cache, creating it if necessary.
+	 *
+	 * @param name name of the record store
+	 * @param maxSize maximum size in bytes of the cached responses
+	 * @return the cache, or <code>null</code> if the record store could not
+	 *         be opened
+	 */
+	public static HttpCache openHttpCache(final String name, final int maxSize) {
+		try {
+			return new HttpCache(name, maxSize);
+		} catch (final RecordStoreException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Removes all the cached responses, e.g. when the user signs out.
+	 */
+	public synchronized void clear() {
+		final Enumeration e = entries.elements();
+		while (e.hasMoreElements()) {
+			deleteRecord((Entry) e.nextElement());
+		}
+		entries.clear();
+		size = 0;
+	}
+
+	public synchronized void close() {
+		try {
+			recordStore.closeRecordStore();
+		} catch (final RecordStoreException e) {
+			// nothing to do
+		}
+	}
+
+	/**
+	 * @return the key of the cached response for <code>req</code>, or
+	 *         <code>null</code> if its response can not be cached
+	 */
+	static String getKey(final HttpRequest req) {
+		if (!HttpConnection.GET.equals(req.getMethod())) {
+			return null;
+		}
+		return req.getResourceKey();
+	}
+
+	/**
+	 * Makes the request conditional if its response is cached.
+	 */
+	synchronized void setValidators(final String key, final HttpConnection conn) throws IOException {
+		final Entry entry = (Entry) entries.get(key);
+		if (entry == null) {
+			return;
+		}
+		entry.lastUsed = ++clock;
+		if (entry.etag.length() > 0) {
+			conn.setRequestProperty("If-None-Match", entry.etag);
+		}
+		if (entry.lastModified.length() > 0) {
+			conn.setRequestProperty("If-Modified-Since", entry.lastModified);
+		}
+	}
+
+	/**
+	 * Wraps the body of a response so it is stored when it has been read.
+	 *
+	 * @return the stream to read the body from
+	 */
+	InputStream record(final String key, final HttpConnection conn, final InputStream in) throws IOException {
+		if (conn.getResponseCode() != HttpConnection.HTTP_OK) {
+			return in;
+		}
+		final String etag = conn.getHeaderField("ETag");
+		final String lastModified = conn.getHeaderField("Last-Modified");
+		if (etag == null && lastModified == null) {
+			return in;
+		}
+		final long length = conn.getLength();
+		final int maxLength = maxSize / 4;
+		if (length > maxLength) {
+			return in;
+		}
+		final Entry entry = new Entry(key, etag != null ? etag : "", lastModified != null ? lastModified : "",
+				"gzip".equals(conn.getEncoding()));
+		return new Recorder(in, entry, length > 0 ? (int) length : 1024, maxLength);
+	}
+
+	/**
+	 * Gets the cached response to answer a <code>304 Not Modified</code>.
+	 *
+	 * @param notModified the response of the conditional request
+	 * @throws IOException if the response is no longer cached
+	 */
+	HttpResponse getResponse(final String key, final HttpResponse notModified) throws IOException {
+		final Entry entry;
+		final byte[] record;
+		synchronized (this) {
+			entry = (Entry) entries.get(key);
+			record = entry != null ? getRecord(entry) : null;
+		}
+		if (record == null) {
+			notModified.disconnect();
+			throw new IOException("Cached response of " + key + " is no longer available");
+		}
+		return new CachedHttpResponse(notModified, record, record.length - entry.bodyLength, entry.gzip);
+	}
+
+	private synchronized void put(final Entry entry, final byte[] body, final int length) {
+		final ByteArrayOutputStream buf = new ByteArrayOutputStream(length + 256);
+		final byte[] record;
+		try {
+			final DataOutputStream out = new DataOutputStream(buf);
+			out.writeUTF(entry.key);
+			out.writeUTF(entry.etag);
+			out.writeUTF(entry.lastModified);
+			out.writeBoolean(entry.gzip);
+			out.write(body, 0, length);
+			out.close();
+			record = buf.toByteArray();
+		} catch (final IOException e) {
+			return;
+		}
+		final Entry old = (Entry) entries.get(entry.key);
+		if (old != null) {
+			removeEntry(old);
+			deleteRecord(old);
+		}
+		while (size + record.length > maxSize && !entries.isEmpty()) {
+			final Entry eldest = getLeastRecentlyUsed();
+			removeEntry(eldest);
+			deleteRecord(eldest);
+		}
+		try {
+			entry.recordId = recordStore.addRecord(record, 0, record.length);
+		} catch (final RecordStoreException e) {
+			// e.g. out of space
+			return;
+		}
+		entry.size = record.length;
+		entry.bodyLength = length;
+		entry.lastUsed = ++clock;
+		addEntry(entry);
+	}
+
+	private void addEntry(final Entry entry) {
+		entries.put(entry.key, entry);
+		size += entry.size;
+	}
+
+	private void removeEntry(final Entry entry) {
+		entries.remove(entry.key);
+		size -= entry.size;
+	}
+
+	private Entry getLeastRecentlyUsed() {
+		Entry eldest = null;
+		final Enumeration e = entries.elements();
+		while (e.hasMoreElements()) {
+			final Entry entry = (Entry) e.nextElement();
+			if (eldest == null || entry.lastUsed < eldest.lastUsed) {
+				eldest = entry;
+			}
+		}
+		return eldest;
+	}
+
+	private byte[] getRecord(final Entry entry) {
+		try {
+			return recordStore.getRecord(entry.recordId);
+		} catch (final RecordStoreException e) {
+			removeEntry(entry);
+			return null;
+		}
+	}
+
+	private void deleteRecord(final Entry entry) {
+		try {
+			recordStore.deleteRecord(entry.recordId);
+		} catch (final RecordStoreException e) {
+			// already gone
+		}
+	}
+
+	private static Entry readEntry(final byte[] record) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		final Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readBoolean());
+		entry.bodyLength = in.available();
+		return entry;
+	}
+
+	/**
+	 * A cached response, without its body.
+	 */
+	private static final class Entry {
+
+		final String key;
+		final String etag;
+		final String lastModified;
+		final boolean gzip;
+		int recordId;
+		int size;
+		int bodyLength;
+		int lastUsed;
+
+		Entry(final String key, final String etag, final String lastModified, final boolean gzip) {
+			this.key = key;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.gzip = gzip;
+		}
+	}
+
+	/**
+	 * Copies the body as it is read, and stores it once it has been read
+	 * completely.
+	 */
+	private final class Recorder extends InputStream {
+
+		private final InputStream in;
+		private final Entry entry;
+		private final int maxLength;
+		private byte[] body;
+		private int length;
+		private boolean complete;
+
+		Recorder(final InputStream in, final Entry entry, final int capacity, final int maxLength) {
+			this.in = in;
+			this.entry = entry;
+			this.maxLength = maxLength;
+			body = new byte[capacity];
+		}
+
+		public int read() throws IOException {
+			final int b = in.read();
+			if (b < 0) {
+				complete();
+			} else if (body != null) {
+				ensureCapacity(1);
+				if (body != null) {
+					body[length++] = (byte) b;
+				}
+			}
+			return b;
+		}
+
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int n = in.read(b, off, len);
+			if (n < 0) {
+				complete();
+			} else if (body != null) {
+				ensureCapacity(n);
+				if (body != null) {
+					System.arraycopy(b, off, body, length, n);
+					length += n;
+				}
+			}
+			return n;
+		}
+
+		public int available() throws IOException {
+			return in.available();
+		}
+
+		public void close() throws IOException {
+			// A decoder may stop at the end of its data without reading the
+			// end of the stream, read what is left to know the body is whole
+			if (!complete && body != null) {
+				try {
+					final byte[] buf = new byte[256];
+					while (body != null && read(buf, 0, buf.length) >= 0) {
+						// recorded
+					}
+				} catch (final IOException e) {
+					body = null;
+				}
+			}
+			in.close();
+		}
+
+		private void ensureCapacity(final int n) {
+			if (length + n > maxLength) {
+				// too large to be cached
+				body = null;
+			} else if (length + n > body.length) {
+				final byte[] grown = new byte[Math.min(Math.max(body.length * 2, length + n), maxLength)];
+				System.arraycopy(body, 0, grown, 0, length);
+				body = grown;
+			}
+		}
+
+		private void complete() {
+			if (!complete && body != null) {
+				complete = true;
+				put(entry, body, length);
+				body = null;
+			}
+		}
+	}
+
+	/**
+	 * Answers a <code>304 Not Modified</code> response with the cached body.
+	 * The headers are the ones of the <code>304</code> response, which are up
+	 * to date.
+	 */
+	private static final class CachedHttpResponse extends HttpResponse {
+
+		private final HttpResponse notModified;
+		private final byte[] record;
+		private final int offset;
+		private final boolean gzip;
+
+		CachedHttpResponse(final HttpResponse notModified, final byte[] record, final int offset, final boolean gzip)
+				throws IOException {
+			super(notModified.getHttpConfiguration());
+			this.notModified = notModified;
+			this.record = record;
+			this.offset = offset;
+			this.gzip = gzip;
+		}
+
+		protected InputStream getInputStream() throws TwitterException {
+			final InputStream is = new ByteArrayInputStream(record, offset, record.length - offset);
+			if (!gzip) {
+				return is;
+			}
+			try {
+				return new StreamingGZIPInputStream(is);
+			} catch (final IOException e) {
+				throw new TwitterException(e);
+			}
+		}
+
+		public void disconnect() throws IOException {
+			notModified.disconnect();
+		}
+
+		public long getContentLength() {
+			return gzip ? -1 : record.length - offset;
+		}
+
+		public String getResponseHeader(final String name) {
+			return notModified.getResponseHeader(name);
+		}
+
+		public Hashtable getResponseHeaderFields() {
+			return notModified.getResponseHeaderFields();
+		}
+
+		public int getStatusCode() {
+			return HttpConnection.HTTP_OK;
+		}
+	}
+}
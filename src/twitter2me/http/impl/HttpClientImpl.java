@@ -20,6 +20,7 @@ import twitter2me.http.HttpClient;
 import twitter2me.http.HttpParameter;
 import twitter2me.http.HttpRequest;
 import twitter2me.http.HttpResponse;
+import twitter2me.http.RetryPolicy;
 import twitter2me.internal.util.HttpUrl;
 import twitter2me.internal.util.IOUtil;
 import twitter2me.internal.util.InternalStringUtil;
@@ -32,10 +33,19 @@ public class HttpClientImpl implements HttpClient {
 
 	protected final Configuration conf;
 	protected final HostAddressResolver resolver;
+	protected final HttpCache cache;
 
 	protected HttpClientImpl(Configuration conf) {
+		this(conf, null);
+	}
+
+	/**
+	 * @param cache cache of the GET responses, or <code>null</code>
+	 */
+	protected HttpClientImpl(Configuration conf, HttpCache cache) {
 		this.conf = conf;
 		this.resolver = conf.getHostAddressResolver();
+		this.cache = cache;
 	}
 	private String resolve(final String host) {
 		if (resolver == null) {
@@ -53,17 +63,25 @@ public class HttpClientImpl implements HttpClient {
 
 	public HttpResponse request(HttpRequest req) throws TwitterException {
 		final String method = req.getMethod();
-		int retriedCount;
-		final int retry = conf.getHttpRetryCount() + 1;
+		final RetryPolicy policy = conf.getRetryPolicy();
+		final long requestTimeout = policy.getRequestTimeout();
+		final long deadline = requestTimeout > 0 ? System.currentTimeMillis() + requestTimeout : 0;
+		final String cacheKey = cache != null ? HttpCache.getKey(req) : null;
 		HttpResponse res = null;
-		for (retriedCount = 0; retriedCount < retry; retriedCount++) {
+		for (int retriedCount = 0;; retriedCount++) {
 			int responseCode = -1;
+			long delay;
+			ConnectionWatchdog.Watch watch = null;
 			try {
 				HttpConnection con;
 				OutputStream os = null;
 				try {
 					con = getConnection(req);
+					watch = ConnectionWatchdog.watch(con, policy.getReadTimeout(), deadline);
 					//setHeaders(req, con);
+					if (cacheKey != null) {
+						cache.setValidators(cacheKey, con);
+					}
 					con.setRequestMethod(method);
 					final HttpParameter[] params = req.getParameters();
 					if (HttpConnection.POST.equals(method)) {
@@ -71,8 +89,8 @@ public class HttpClientImpl implements HttpClient {
 							String boundary = "----Twitter4J-upload" + System.currentTimeMillis();
 							con.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
 							boundary = "--" + boundary;
-							os = con.openOutputStream();
-							final DataOutputStream out = con.openDataOutputStream();
+							os = openOutputStream(con, watch);
+							final DataOutputStream out = new DataOutputStream(os);
 							final int params_length = params.length;
 							for (int i = 0; i < params_length; i++) {
 								final HttpParameter param = params[i];
@@ -82,9 +100,10 @@ public class HttpClientImpl implements HttpClient {
 											+ "\"; filename=\"" + param.getValue() + "\"\r\n");
 									write(out, "Content-Type: " + param.getContentType() + "\r\n\r\n");
 									final InputStream in = param.getFileBody();
-									int buff;
-									while ((buff = in.read()) != -1) {
-										out.write(buff);
+									final byte[] buff = new byte[1024];
+									int len;
+									while ((len = in.read(buff)) != -1) {
+										out.write(buff, 0, len);
 									}
 									write(out, "\r\n");
 									in.close();
@@ -104,28 +123,42 @@ public class HttpClientImpl implements HttpClient {
 							final String postParam = HttpParameter.encodeParameters(req.getParameters());
 							final byte[] bytes = postParam.getBytes("UTF-8");
 							con.setRequestProperty(HEADER_KEY_CONTENT_LENGTH, Integer.toString(bytes.length));
-							os = con.openOutputStream();
+							os = openOutputStream(con, watch);
 							os.write(bytes);
 						}
 						os.flush();
 						os.close();
 					}
-					res = new HttpResponseImpl(con, conf);
+					res = new HttpResponseImpl(con, conf, watch, cache, cacheKey);
 					responseCode = con.getResponseCode();
-					if (responseCode < OK || responseCode > ACCEPTED) {
-						if (responseCode == ENHANCE_YOUR_CLAIM || responseCode == BAD_REQUEST
-								|| responseCode < INTERNAL_SERVER_ERROR || retriedCount == conf.getHttpRetryCount()) {
-							throw new TwitterException(res.asString(), req, res);
-						}
-					} else {
+					if (watch != null) {
+						watch.responseStarted();
+					}
+					if (responseCode >= OK && responseCode <= ACCEPTED) {
 						break;
 					}
+					if (responseCode == NOT_MODIFIED && cacheKey != null) {
+						res = cache.getResponse(cacheKey, res);
+						break;
+					}
+					delay = policy.getRetryDelay(retriedCount, responseCode, getRetryAfter(res));
+					if (delay < 0 || isPastDeadline(deadline, delay)) {
+						throw new TwitterException(res.asString(), req, res);
+					}
+					disconnect(res);
 				} finally {
 					IOUtil.closeSliently(os);
 				}
 			} catch (final IOException ioe) {
 				// connection timeout or read timeout
-				if (retriedCount == conf.getHttpRetryCount()) {
+				if (watch != null) {
+					watch.cancel();
+				}
+				delay = policy.getRetryDelay(retriedCount, -1, -1);
+				if (delay < 0 || isPastDeadline(deadline, delay)) {
+					if (watch != null && watch.isExpired()) {
+						throw new TwitterException("Request timed out", ioe);
+					}
 					throw new TwitterException(ioe.getMessage(), req, res);
 				}
 			} catch (final NullPointerException e) {
@@ -135,7 +168,7 @@ public class HttpClientImpl implements HttpClient {
 				throw new TwitterException(e);
 			}
 			try {
-				Thread.sleep(conf.getHttpRetryIntervalSeconds() * 1000);
+				Thread.sleep(delay);
 			} catch (final InterruptedException ignore) {
 				// nothing to do
 			}
@@ -143,6 +176,51 @@ public class HttpClientImpl implements HttpClient {
 		return res;
 	}
 
+	/**
+	 * Gets how long the server asked to wait before the next request, from
+	 * the Retry-After header or, when rate limited, the time the limit is
+	 * reset.
+	 *
+	 * @return the time to wait in milliseconds, or -1 if not known
+	 */
+	private static long getRetryAfter(final HttpResponse res) {
+		try {
+			final String retryAfter = res.getResponseHeader("Retry-After");
+			if (retryAfter != null) {
+				return Long.parseLong(retryAfter.trim()) * 1000;
+			}
+			final int statusCode = res.getStatusCode();
+			if (statusCode == ENHANCE_YOUR_CLAIM || statusCode == TOO_MANY_REQUESTS) {
+				final String reset = res.getResponseHeader("X-Rate-Limit-Reset");
+				if (reset != null) {
+					final long delay = Long.parseLong(reset.trim()) * 1000 - System.currentTimeMillis();
+					return delay > 0 ? delay : 0;
+				}
+			}
+		} catch (final NumberFormatException e) {
+			// e.g. an HTTP date, not supported
+		}
+		return -1;
+	}
+
+	private static OutputStream openOutputStream(final HttpConnection con, final ConnectionWatchdog.Watch watch)
+			throws IOException {
+		final OutputStream os = con.openOutputStream();
+		return watch != null ? new WatchedOutputStream(os, watch) : os;
+	}
+
+	private static boolean isPastDeadline(final long deadline, final long delay) {
+		return deadline > 0 && System.currentTimeMillis() + delay >= deadline;
+	}
+
+	private static void disconnect(final HttpResponse res) {
+		try {
+			res.disconnect();
+		} catch (final IOException ignore) {
+			// the next attempt uses a new connection
+		}
+	}
+
 	protected HttpConnection getConnection(final HttpRequest req) throws TwitterException {
 		if (req == null) {
 			throw new NullPointerException();
@@ -206,7 +284,45 @@ public class HttpClientImpl implements HttpClient {
 		return new HttpClientImpl(conf);
 	}
 
+	public static HttpClient getInstance(final Configuration conf, final HttpCache cache) {
+		return new HttpClientImpl(conf, cache);
+	}
+
 	public void shutdown() {
 		
 	}
+
+	/**
+	 * Records the progress of the writes, a full buffer is sent to the
+	 * server while writing.
+	 */
+	private static final class WatchedOutputStream extends OutputStream {
+
+		private final OutputStream out;
+		private final ConnectionWatchdog.Watch watch;
+
+		WatchedOutputStream(OutputStream out, ConnectionWatchdog.Watch watch) {
+			this.out = out;
+			this.watch = watch;
+		}
+
+		public void write(int b) throws IOException {
+			out.write(b);
+			watch.touch();
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			watch.touch();
+		}
+
+		public void flush() throws IOException {
+			out.flush();
+			watch.touch();
+		}
+
+		public void close() throws IOException {
+			out.close();
+		}
+	}
 }
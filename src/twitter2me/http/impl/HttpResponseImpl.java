@@ -20,11 +20,30 @@ public final class HttpResponseImpl extends HttpResponse {
 
 	private final HttpConnection conn;
 	private final InputStream is;
+	private final ConnectionWatchdog.Watch watch;
 
 	HttpResponseImpl(HttpConnection conn, HttpConfiguration conf) throws IOException {
+		this(conn, conf, null);
+	}
+
+	HttpResponseImpl(HttpConnection conn, HttpConfiguration conf, ConnectionWatchdog.Watch watch) throws IOException {
+		this(conn, conf, watch, null, null);
+	}
+
+	HttpResponseImpl(HttpConnection conn, HttpConfiguration conf, ConnectionWatchdog.Watch watch, HttpCache cache,
+			String cacheKey) throws IOException {
 		super(conf);
 		this.conn = conn;
-		final InputStream is = conn.openInputStream();
+		this.watch = watch;
+		InputStream is = conn.openInputStream();
+		if (is != null && watch != null) {
+			watch.setInputStream(is);
+			is = new WatchedInputStream(is, watch);
+		}
+		if (is != null && cache != null && cacheKey != null) {
+			// the body is stored as received
+			is = cache.record(cacheKey, conn, is);
+		}
 		if (is != null && "gzip".equals(conn.getEncoding())) {
 			// the response is gzipped
 			this.is = new StreamingGZIPInputStream(is);
@@ -50,7 +69,19 @@ public final class HttpResponseImpl extends HttpResponse {
 	}
 
 	public Hashtable getResponseHeaderFields() {
-		throw new UnsupportedOperationException("Not supported yet.");
+		final Hashtable fields = new Hashtable();
+		try {
+			String key;
+			for (int i = 0; (key = conn.getHeaderFieldKey(i)) != null; i++) {
+				final String value = conn.getHeaderField(i);
+				if (value != null) {
+					fields.put(key.toLowerCase(), value);
+				}
+			}
+		} catch (IOException ex) {
+			// return the fields read so far
+		}
+		return fields;
 	}
 
 	public int getStatusCode() {
@@ -62,6 +93,51 @@ public final class HttpResponseImpl extends HttpResponse {
 	}
 
 	public void disconnect() throws IOException {
+		if (watch != null) {
+			watch.cancel();
+		}
 		conn.close();
 	}
+
+	/**
+	 * Records the progress of the reads, the watch is cancelled when the
+	 * stream is closed.
+	 */
+	private static final class WatchedInputStream extends InputStream {
+
+		private final InputStream in;
+		private final ConnectionWatchdog.Watch watch;
+
+		WatchedInputStream(InputStream in, ConnectionWatchdog.Watch watch) {
+			this.in = in;
+			this.watch = watch;
+		}
+
+		public int read() throws IOException {
+			final int b = in.read();
+			watch.touch();
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			final int n = in.read(b, off, len);
+			watch.touch();
+			return n;
+		}
+
+		public long skip(long n) throws IOException {
+			final long skipped = in.skip(n);
+			watch.touch();
+			return skipped;
+		}
+
+		public int available() throws IOException {
+			return in.available();
+		}
+
+		public void close() throws IOException {
+			watch.cancel();
+			in.close();
+		}
+	}
 }
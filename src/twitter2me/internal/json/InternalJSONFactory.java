@@ -21,9 +21,27 @@ public interface InternalJSONFactory {
 
 	public User createUser(JSONObject json) throws TwitterException;
 
+	/**
+	 * Reads the user object at the current position of the parser.
+	 */
+	public User createUser(JSONPullParser parser) throws TwitterException;
+
 	public Status createStatus(HttpResponse resp) throws TwitterException;
 
 	public Status createStatus(JSONObject json) throws TwitterException;
 
+	/**
+	 * Reads the status object at the current position of the parser.
+	 */
+	public Status createStatus(JSONPullParser parser) throws TwitterException;
+
+	/**
+	 * Parses the statuses while the response body is being read.
+	 */
 	public ResponseList createStatusesList(HttpResponse res) throws TwitterException;
+
+	/**
+	 * @return a parser reading the body of <code>res</code>
+	 */
+	public JSONPullParser createParser(HttpResponse res) throws TwitterException;
 }
@@ -29,23 +29,58 @@ public class InternalJSONFactoryImpl implements InternalJSONFactory {
 	}
 
 	public User createUser(HttpResponse resp) throws TwitterException {
-		return new UserJSONImpl(resp, conf);
+		final JSONPullParser parser = createParser(resp);
+		try {
+			return new UserJSONImpl(resp, parser);
+		} finally {
+			closeParser(parser, resp);
+		}
 	}
 
 	public User createUser(JSONObject json) throws TwitterException {
 		return new UserJSONImpl(json);
 	}
 
+	public User createUser(JSONPullParser parser) throws TwitterException {
+		return new UserJSONImpl(parser);
+	}
+
 	public Status createStatus(HttpResponse resp) throws TwitterException {
-		return new StatusJSONImpl(resp, conf);
+		final JSONPullParser parser = createParser(resp);
+		try {
+			return new StatusJSONImpl(resp, parser);
+		} finally {
+			closeParser(parser, resp);
+		}
 	}
 
 	public Status createStatus(JSONObject json) throws TwitterException {
 		return new StatusJSONImpl(json);
 	}
 
+	public Status createStatus(JSONPullParser parser) throws TwitterException {
+		return new StatusJSONImpl(parser);
+	}
+
 	public ResponseList createStatusesList(HttpResponse res) throws TwitterException {
-		return StatusJSONImpl.createStatusList(res, conf);
+		final JSONPullParser parser = createParser(res);
+		try {
+			return StatusJSONImpl.createStatusList(res, parser);
+		} finally {
+			closeParser(parser, res);
+		}
+	}
+
+	public JSONPullParser createParser(HttpResponse res) throws TwitterException {
+		return new JSONPullParser(res.asReader());
+	}
+
+	private static void closeParser(JSONPullParser parser, HttpResponse res) {
+		parser.close();
+		try {
+			res.disconnect();
+		} catch (final Exception ignore) {
+		}
 	}
 
 	static GeoLocation[][] coordinatesAsGeoLocationArray(final JSONArray coordinates) throws TwitterException {
@@ -77,14 +112,28 @@ public class InternalJSONFactoryImpl implements InternalJSONFactory {
 	static GeoLocation createGeoLocation(final JSONObject json) throws TwitterException {
 		try {
 			if (!json.isNull("geo")) {
-				String coordinates = json.getJSONObject("geo").getString("coordinates");
-				coordinates = coordinates.substring(1, coordinates.length() - 1);
-				final String[] point = InternalStringUtil.split(coordinates, ",");
-				return new GeoLocation(point[0], point[1]);
+				return createGeoLocationFromGeo(json.getJSONObject("geo"));
 			}
 		} catch (final JSONException jsone) {
 			throw new TwitterException(jsone);
 		}
 		return null;
 	}
+
+	/**
+	 * @param geo the value of the "geo" field, may be null
+	 */
+	static GeoLocation createGeoLocationFromGeo(final JSONObject geo) throws TwitterException {
+		if (geo == null) {
+			return null;
+		}
+		try {
+			String coordinates = geo.getString("coordinates");
+			coordinates = coordinates.substring(1, coordinates.length() - 1);
+			final String[] point = InternalStringUtil.split(coordinates, ",");
+			return new GeoLocation(point[0], point[1]);
+		} catch (final JSONException jsone) {
+			throw new TwitterException(jsone);
+		}
+	}
 }
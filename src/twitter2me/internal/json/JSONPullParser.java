@@ -0,0 +1,494 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package twitter2me.internal.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import org.json.me.JSONArray;
+import org.json.me.JSONException;
+import org.json.me.JSONObject;
+
+/**
+ * Reads a JSON document one token at a time from a {@link Reader}, so that
+ * the model objects can be filled while the response is still arriving,
+ * without holding the whole body as a String nor as a JSONObject tree.
+ *
+ * <p> Values are returned the way <code>JSONObject.optString</code> would
+ * return them: numbers and booleans as their literal text and
+ * <code>null</code> as "null", so the existing parse utilities apply
+ * unchanged.
+ *
+ * @author mariotaku
+ */
+public final class JSONPullParser {
+
+	public static final int BEGIN_ARRAY = 1;
+	public static final int END_ARRAY = 2;
+	public static final int BEGIN_OBJECT = 3;
+	public static final int END_OBJECT = 4;
+	public static final int NAME = 5;
+	public static final int STRING = 6;
+	public static final int NUMBER = 7;
+	public static final int BOOLEAN = 8;
+	public static final int NULL = 9;
+	public static final int END_DOCUMENT = 10;
+
+	private static final int PEEKED_NONE = 0;
+
+	private static final int SCOPE_EMPTY_ARRAY = 1;
+	private static final int SCOPE_NONEMPTY_ARRAY = 2;
+	private static final int SCOPE_EMPTY_OBJECT = 3;
+	private static final int SCOPE_DANGLING_NAME = 4;
+	private static final int SCOPE_NONEMPTY_OBJECT = 5;
+	private static final int SCOPE_EMPTY_DOCUMENT = 6;
+	private static final int SCOPE_NONEMPTY_DOCUMENT = 7;
+
+	private final Reader in;
+	private final char[] buffer = new char[1024];
+	private int pos;
+	private int limit;
+
+	private int[] stack = new int[16];
+	private int stackSize;
+	private int peeked = PEEKED_NONE;
+
+	/** Reused by every string and literal read. */
+	private final StringBuffer sb = new StringBuffer(64);
+
+	public JSONPullParser(Reader in) {
+		if (in == null) {
+			throw new NullPointerException("in == null");
+		}
+		this.in = in;
+		stack[stackSize++] = SCOPE_EMPTY_DOCUMENT;
+	}
+
+	public void beginArray() throws JSONException {
+		expect(BEGIN_ARRAY);
+		push(SCOPE_EMPTY_ARRAY);
+		peeked = PEEKED_NONE;
+	}
+
+	public void endArray() throws JSONException {
+		expect(END_ARRAY);
+		stackSize--;
+		peeked = PEEKED_NONE;
+	}
+
+	public void beginObject() throws JSONException {
+		expect(BEGIN_OBJECT);
+		push(SCOPE_EMPTY_OBJECT);
+		peeked = PEEKED_NONE;
+	}
+
+	public void endObject() throws JSONException {
+		expect(END_OBJECT);
+		stackSize--;
+		peeked = PEEKED_NONE;
+	}
+
+	/**
+	 * @return true if the current array or object has another element
+	 */
+	public boolean hasNext() throws JSONException {
+		final int p = peek();
+		return p != END_OBJECT && p != END_ARRAY && p != END_DOCUMENT;
+	}
+
+	/**
+	 * @return the type of the next token, without consuming it
+	 */
+	public int peek() throws JSONException {
+		if (peeked == PEEKED_NONE) {
+			peeked = doPeek();
+		}
+		return peeked;
+	}
+
+	public String nextName() throws JSONException {
+		expect(NAME);
+		peeked = PEEKED_NONE;
+		return readQuoted();
+	}
+
+	/**
+	 * Consumes the next scalar value.
+	 *
+	 * @return the string, or the literal text of a number, boolean or null
+	 */
+	public String nextString() throws JSONException {
+		final int p = peek();
+		peeked = PEEKED_NONE;
+		switch (p) {
+			case STRING:
+				return readQuoted();
+			case NUMBER:
+			case BOOLEAN:
+			case NULL:
+				return readLiteral();
+			default:
+				throw syntaxError("Expected a value but was " + p);
+		}
+	}
+
+	/**
+	 * Consumes the next value if it is <code>null</code>.
+	 *
+	 * @return true if a null was consumed
+	 */
+	public boolean nextNull() throws JSONException {
+		if (peek() != NULL) {
+			return false;
+		}
+		peeked = PEEKED_NONE;
+		readLiteral();
+		return true;
+	}
+
+	/**
+	 * Builds a JSONObject out of the next value, for the small parts of a
+	 * document that are handed to the JSONObject based parsers.
+	 *
+	 * @return the object, or null if the value is null
+	 */
+	public JSONObject nextJSONObject() throws JSONException {
+		if (nextNull()) {
+			return null;
+		}
+		final JSONObject json = new JSONObject();
+		beginObject();
+		while (hasNext()) {
+			final String name = nextName();
+			json.put(name, nextValue());
+		}
+		endObject();
+		return json;
+	}
+
+	/**
+	 * @return the array, or null if the value is null
+	 */
+	public JSONArray nextJSONArray() throws JSONException {
+		if (nextNull()) {
+			return null;
+		}
+		final JSONArray json = new JSONArray();
+		beginArray();
+		while (hasNext()) {
+			json.put(nextValue());
+		}
+		endArray();
+		return json;
+	}
+
+	/**
+	 * Skips the next value, including nested arrays and objects.
+	 */
+	public void skipValue() throws JSONException {
+		int depth = 0;
+		do {
+			switch (peek()) {
+				case BEGIN_ARRAY:
+					beginArray();
+					depth++;
+					break;
+				case BEGIN_OBJECT:
+					beginObject();
+					depth++;
+					break;
+				case END_ARRAY:
+					endArray();
+					depth--;
+					break;
+				case END_OBJECT:
+					endObject();
+					depth--;
+					break;
+				case NAME:
+					nextName();
+					break;
+				case END_DOCUMENT:
+					throw syntaxError("Unexpected end of document");
+				default:
+					nextString();
+			}
+		} while (depth != 0);
+	}
+
+	public void close() {
+		peeked = PEEKED_NONE;
+		stackSize = 0;
+		try {
+			in.close();
+		} catch (final IOException ignore) {
+		}
+	}
+
+	/**
+	 * Converts the next value the same way JSONTokener does.
+	 */
+	private Object nextValue() throws JSONException {
+		switch (peek()) {
+			case BEGIN_OBJECT:
+				return nextJSONObject();
+			case BEGIN_ARRAY:
+				return nextJSONArray();
+			case STRING:
+				return nextString();
+			case BOOLEAN:
+				return "true".equals(nextString()) ? JSONObject.TRUE : JSONObject.FALSE;
+			case NULL:
+				nextString();
+				return JSONObject.NULL;
+			case NUMBER: {
+				final String literal = nextString();
+				try {
+					return Integer.valueOf(literal);
+				} catch (final NumberFormatException e) {
+					try {
+						return new Long(Long.parseLong(literal));
+					} catch (final NumberFormatException f) {
+						return literal;
+					}
+				}
+			}
+			default:
+				throw syntaxError("Expected a value");
+		}
+	}
+
+	private int doPeek() throws JSONException {
+		final int scope = stack[stackSize - 1];
+		switch (scope) {
+			case SCOPE_EMPTY_ARRAY:
+				stack[stackSize - 1] = SCOPE_NONEMPTY_ARRAY;
+				if (nextNonWhitespace() == ']') {
+					return END_ARRAY;
+				}
+				if (limit > 0) {
+					pos--;
+				}
+				break;
+			case SCOPE_NONEMPTY_ARRAY: {
+				final int c = nextNonWhitespace();
+				if (c == ']') {
+					return END_ARRAY;
+				} else if (c != ',') {
+					throw syntaxError("Unterminated array");
+				}
+				break;
+			}
+			case SCOPE_EMPTY_OBJECT:
+			case SCOPE_NONEMPTY_OBJECT: {
+				stack[stackSize - 1] = SCOPE_DANGLING_NAME;
+				int c = nextNonWhitespace();
+				if (scope == SCOPE_NONEMPTY_OBJECT) {
+					if (c == '}') {
+						return END_OBJECT;
+					} else if (c != ',') {
+						throw syntaxError("Unterminated object");
+					}
+					c = nextNonWhitespace();
+				} else if (c == '}') {
+					return END_OBJECT;
+				}
+				if (c != '"') {
+					throw syntaxError("Expected name");
+				}
+				return NAME;
+			}
+			case SCOPE_DANGLING_NAME:
+				stack[stackSize - 1] = SCOPE_NONEMPTY_OBJECT;
+				if (nextNonWhitespace() != ':') {
+					throw syntaxError("Expected ':'");
+				}
+				break;
+			case SCOPE_EMPTY_DOCUMENT:
+				stack[stackSize - 1] = SCOPE_NONEMPTY_DOCUMENT;
+				break;
+			case SCOPE_NONEMPTY_DOCUMENT:
+				if (nextNonWhitespace() == -1) {
+					return END_DOCUMENT;
+				}
+				throw syntaxError("Unexpected data after the document");
+			default:
+				throw new IllegalStateException("Parser closed");
+		}
+
+		final int c = nextNonWhitespace();
+		switch (c) {
+			case -1:
+				throw syntaxError("Unexpected end of document");
+			case '{':
+				return BEGIN_OBJECT;
+			case '[':
+				return BEGIN_ARRAY;
+			case '"':
+				return STRING;
+			case 't':
+			case 'f':
+			case 'T':
+			case 'F':
+				pos--;
+				return BOOLEAN;
+			case 'n':
+			case 'N':
+				pos--;
+				return NULL;
+			default:
+				pos--;
+				return NUMBER;
+		}
+	}
+
+	private void expect(int token) throws JSONException {
+		final int p = peek();
+		if (p != token) {
+			throw syntaxError("Expected " + token + " but was " + p);
+		}
+	}
+
+	private void push(int scope) {
+		if (stackSize == stack.length) {
+			final int[] grown = new int[stackSize * 2];
+			System.arraycopy(stack, 0, grown, 0, stackSize);
+			stack = grown;
+		}
+		stack[stackSize++] = scope;
+	}
+
+	private boolean fill() throws JSONException {
+		if (pos < limit) {
+			return true;
+		}
+		try {
+			final int count = in.read(buffer, 0, buffer.length);
+			if (count <= 0) {
+				pos = limit = 0;
+				return false;
+			}
+			pos = 0;
+			limit = count;
+			return true;
+		} catch (final IOException e) {
+			throw new JSONException(e.getMessage());
+		}
+	}
+
+	private int nextNonWhitespace() throws JSONException {
+		while (pos < limit || fill()) {
+			final char c = buffer[pos++];
+			if (c > ' ') {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads a string whose opening quote has been consumed.
+	 */
+	private String readQuoted() throws JSONException {
+		final StringBuffer sb = this.sb;
+		sb.setLength(0);
+		while (true) {
+			int start = pos;
+			while (pos < limit) {
+				final char c = buffer[pos++];
+				if (c == '"') {
+					sb.append(buffer, start, pos - 1 - start);
+					return sb.toString();
+				} else if (c == '\\') {
+					sb.append(buffer, start, pos - 1 - start);
+					sb.append(readEscape());
+					start = pos;
+				} else if (c == '\n' || c == '\r') {
+					throw syntaxError("Unterminated string");
+				}
+			}
+			sb.append(buffer, start, pos - start);
+			if (!fill()) {
+				throw syntaxError("Unterminated string");
+			}
+		}
+	}
+
+	private char readEscape() throws JSONException {
+		if (!fill()) {
+			throw syntaxError("Unterminated escape sequence");
+		}
+		final char c = buffer[pos++];
+		switch (c) {
+			case 'b':
+				return '\b';
+			case 't':
+				return '\t';
+			case 'n':
+				return '\n';
+			case 'f':
+				return '\f';
+			case 'r':
+				return '\r';
+			case 'u': {
+				int value = 0;
+				for (int i = 0; i < 4; i++) {
+					if (!fill()) {
+						throw syntaxError("Unterminated escape sequence");
+					}
+					final int digit = Character.digit(buffer[pos++], 16);
+					if (digit < 0) {
+						throw syntaxError("Illegal escape");
+					}
+					value = (value << 4) | digit;
+				}
+				return (char) value;
+			}
+			default:
+				return c;
+		}
+	}
+
+	/**
+	 * Reads an unquoted number, boolean or null.
+	 */
+	private String readLiteral() throws JSONException {
+		final StringBuffer sb = this.sb;
+		sb.setLength(0);
+		while (true) {
+			final int start = pos;
+			while (pos < limit) {
+				final char c = buffer[pos];
+				if (c <= ' ' || c == ',' || c == '}' || c == ']' || c == ':') {
+					sb.append(buffer, start, pos - start);
+					return literal(sb);
+				}
+				pos++;
+			}
+			sb.append(buffer, start, pos - start);
+			if (!fill()) {
+				return literal(sb);
+			}
+		}
+	}
+
+	private JSONException syntaxError(String message) {
+		return new JSONException(message + " at depth " + stackSize);
+	}
+
+	private static String literal(StringBuffer sb) throws JSONException {
+		if (sb.length() == 0) {
+			throw new JSONException("Missing value");
+		}
+		final String s = sb.toString();
+		if (s.length() > 5) {
+			return s;
+		}
+		final String lower = s.toLowerCase();
+		if ("true".equals(lower) || "false".equals(lower) || "null".equals(lower)) {
+			return lower;
+		}
+		return s;
+	}
+}
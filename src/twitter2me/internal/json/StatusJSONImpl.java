@@ -32,7 +32,6 @@ import twitter2me.TwitterException;
 import twitter2me.URLEntity;
 import twitter2me.User;
 import twitter2me.UserMentionEntity;
-import twitter2me.conf.Configuration;
 import twitter2me.http.HttpResponse;
 import twitter2me.internal.logging.Logger;
 
@@ -70,16 +69,21 @@ final class StatusJSONImpl extends TwitterResponseImpl implements Status {
 	private User user = null;
 
 	/* package */
-	StatusJSONImpl(final HttpResponse res, final Configuration conf) throws TwitterException {
-		super(res);
-		final JSONObject json = res.asJSONObject();
+	StatusJSONImpl(final JSONObject json) throws TwitterException {
+		super();
 		init(json);
 	}
 
 	/* package */
-	StatusJSONImpl(final JSONObject json) throws TwitterException {
+	StatusJSONImpl(final JSONPullParser parser) throws TwitterException {
 		super();
-		init(json);
+		init(parser);
+	}
+
+	/* package */
+	StatusJSONImpl(final HttpResponse res, final JSONPullParser parser) throws TwitterException {
+		super(res);
+		init(parser);
 	}
 
 	public int compareTo(final Status that) {
@@ -323,14 +327,7 @@ final class StatusJSONImpl extends TwitterResponseImpl implements Status {
 		}
 		if (!json.isNull("contributors")) {
 			try {
-				final JSONArray contributorsArray = json.getJSONArray("contributors");
-				contributorsIDs = new long[contributorsArray.length()];
-				for (int i = 0; i < contributorsArray.length(); i++) {
-					contributorsIDs[i] = Long.parseLong(contributorsArray.getString(i));
-				}
-			} catch (final NumberFormatException ignore) {
-				ignore.printStackTrace();
-				logger.warn("failed to parse contributors:" + json);
+				initContributors(json.getJSONArray("contributors"));
 			} catch (final JSONException ignore) {
 				ignore.printStackTrace();
 				logger.warn("failed to parse contributors:" + json);
@@ -340,40 +337,7 @@ final class StatusJSONImpl extends TwitterResponseImpl implements Status {
 		}
 		if (!json.isNull("entities")) {
 			try {
-				final JSONObject entities = json.getJSONObject("entities");
-				int len;
-				if (!entities.isNull("user_mentions")) {
-					final JSONArray userMentionsArray = entities.getJSONArray("user_mentions");
-					len = userMentionsArray.length();
-					userMentionEntities = new UserMentionEntity[len];
-					for (int i = 0; i < len; i++) {
-						userMentionEntities[i] = new UserMentionEntityJSONImpl(userMentionsArray.getJSONObject(i));
-					}
-				}
-				if (!entities.isNull("urls")) {
-					final JSONArray urlsArray = entities.getJSONArray("urls");
-					len = urlsArray.length();
-					urlEntities = new URLEntity[len];
-					for (int i = 0; i < len; i++) {
-						urlEntities[i] = new URLEntityJSONImpl(urlsArray.getJSONObject(i));
-					}
-				}
-				if (!entities.isNull("hashtags")) {
-					final JSONArray hashtagsArray = entities.getJSONArray("hashtags");
-					len = hashtagsArray.length();
-					hashtagEntities = new HashtagEntity[len];
-					for (int i = 0; i < len; i++) {
-						hashtagEntities[i] = new HashtagEntityJSONImpl(hashtagsArray.getJSONObject(i));
-					}
-				}
-				if (!entities.isNull("media")) {
-					final JSONArray mediaArray = entities.getJSONArray("media");
-					len = mediaArray.length();
-					mediaEntities = new MediaEntity[len];
-					for (int i = 0; i < len; i++) {
-						mediaEntities[i] = new MediaEntityJSONImpl(mediaArray.getJSONObject(i));
-					}
-				}
+				initEntities(json.getJSONObject("entities"));
 			} catch (final JSONException jsone) {
 				throw new TwitterException(jsone);
 			}
@@ -389,23 +353,146 @@ final class StatusJSONImpl extends TwitterResponseImpl implements Status {
 		}
 	}
 
+	private void init(final JSONPullParser parser) throws TwitterException {
+		// A missing field gets the value init(JSONObject) gives it
+		id = inReplyToStatusId = inReplyToUserId = retweetCount = -1;
+		rawText = text = source = inReplyToScreenName = "";
+		try {
+			parser.beginObject();
+			while (parser.hasNext()) {
+				final String name = parser.nextName();
+				if ("id".equals(name)) {
+					id = getLong(parser.nextString());
+				} else if ("text".equals(name)) {
+					rawText = parser.nextString();
+					text = getUnescapedString(rawText);
+				} else if ("source".equals(name)) {
+					source = getUnescapedString(parser.nextString());
+				} else if ("created_at".equals(name)) {
+					createdAt = getDate(parser.nextString());
+				} else if ("truncated".equals(name)) {
+					isTruncated = getBoolean(parser.nextString());
+				} else if ("in_reply_to_status_id".equals(name)) {
+					inReplyToStatusId = getLong(parser.nextString());
+				} else if ("in_reply_to_user_id".equals(name)) {
+					inReplyToUserId = getLong(parser.nextString());
+				} else if ("favorited".equals(name)) {
+					isFavorited = getBoolean(parser.nextString());
+				} else if ("in_reply_to_screen_name".equals(name)) {
+					inReplyToScreenName = getUnescapedString(parser.nextString());
+				} else if ("possibly_sensitive".equals(name)) {
+					isPossiblySensitive = getBoolean(parser.nextString());
+				} else if ("retweet_count".equals(name)) {
+					retweetCount = getLong(parser.nextString());
+				} else if ("user".equals(name)) {
+					if (!parser.nextNull()) {
+						user = new UserJSONImpl(parser);
+					}
+				} else if ("retweeted_status".equals(name)) {
+					if (!parser.nextNull()) {
+						retweetedStatus = new StatusJSONImpl(parser);
+					}
+				} else if ("geo".equals(name)) {
+					geoLocation = InternalJSONFactoryImpl.createGeoLocationFromGeo(parser.nextJSONObject());
+				} else if ("place".equals(name)) {
+					final JSONObject placeJSON = parser.nextJSONObject();
+					if (placeJSON != null) {
+						place = new PlaceJSONImpl(placeJSON);
+					}
+				} else if ("contributors".equals(name)) {
+					final JSONArray contributorsArray = parser.nextJSONArray();
+					if (contributorsArray != null) {
+						initContributors(contributorsArray);
+					}
+				} else if ("entities".equals(name)) {
+					final JSONObject entities = parser.nextJSONObject();
+					if (entities != null) {
+						initEntities(entities);
+					}
+				} else if ("current_user_retweet".equals(name)) {
+					final JSONObject retweet = parser.nextJSONObject();
+					if (retweet != null) {
+						currentUserRetweet = getLong("id", retweet);
+						wasRetweetedByMe = currentUserRetweet > 0;
+					}
+				} else {
+					parser.skipValue();
+				}
+			}
+			parser.endObject();
+		} catch (final JSONException jsone) {
+			throw new TwitterException(jsone);
+		}
+	}
+
+	private void initContributors(final JSONArray contributorsArray) {
+		try {
+			contributorsIDs = new long[contributorsArray.length()];
+			for (int i = 0; i < contributorsArray.length(); i++) {
+				contributorsIDs[i] = Long.parseLong(contributorsArray.getString(i));
+			}
+		} catch (final NumberFormatException ignore) {
+			ignore.printStackTrace();
+			logger.warn("failed to parse contributors:" + contributorsArray);
+		} catch (final JSONException ignore) {
+			ignore.printStackTrace();
+			logger.warn("failed to parse contributors:" + contributorsArray);
+		}
+	}
+
+	private void initEntities(final JSONObject entities) throws JSONException, TwitterException {
+		int len;
+		if (!entities.isNull("user_mentions")) {
+			final JSONArray userMentionsArray = entities.getJSONArray("user_mentions");
+			len = userMentionsArray.length();
+			userMentionEntities = new UserMentionEntity[len];
+			for (int i = 0; i < len; i++) {
+				userMentionEntities[i] = new UserMentionEntityJSONImpl(userMentionsArray.getJSONObject(i));
+			}
+		}
+		if (!entities.isNull("urls")) {
+			final JSONArray urlsArray = entities.getJSONArray("urls");
+			len = urlsArray.length();
+			urlEntities = new URLEntity[len];
+			for (int i = 0; i < len; i++) {
+				urlEntities[i] = new URLEntityJSONImpl(urlsArray.getJSONObject(i));
+			}
+		}
+		if (!entities.isNull("hashtags")) {
+			final JSONArray hashtagsArray = entities.getJSONArray("hashtags");
+			len = hashtagsArray.length();
+			hashtagEntities = new HashtagEntity[len];
+			for (int i = 0; i < len; i++) {
+				hashtagEntities[i] = new HashtagEntityJSONImpl(hashtagsArray.getJSONObject(i));
+			}
+		}
+		if (!entities.isNull("media")) {
+			final JSONArray mediaArray = entities.getJSONArray("media");
+			len = mediaArray.length();
+			mediaEntities = new MediaEntity[len];
+			for (int i = 0; i < len; i++) {
+				mediaEntities[i] = new MediaEntityJSONImpl(mediaArray.getJSONObject(i));
+			}
+		}
+	}
+
+	/**
+	 * Reads the statuses as they arrive, the response body is never held as
+	 * a whole.
+	 */
 	/* package */
-	static ResponseList createStatusList(final HttpResponse res, final Configuration conf)
+	static ResponseList createStatusList(final HttpResponse res, final JSONPullParser parser)
 			throws TwitterException {
 		try {
-			final JSONArray list = res.asJSONArray();
-			final int size = list.length();
-			final ResponseList statuses = new ResponseListImpl(size, res);
-			for (int i = 0; i < size; i++) {
-				final JSONObject json = list.getJSONObject(i);
-				final Status status = new StatusJSONImpl(json);
-				statuses.add(status);
+			final ResponseList statuses = new ResponseListImpl(res);
+			parser.beginArray();
+			while (parser.hasNext()) {
+				statuses.add(new StatusJSONImpl(parser));
 			}
+			parser.endArray();
 			return statuses;
 		} catch (final JSONException jsone) {
 			throw new TwitterException(jsone);
-		} catch (final TwitterException te) {
-			throw te;
 		}
 	}
 }
@@ -65,6 +65,26 @@ abstract class TwitterResponseImpl implements TwitterResponse {
 		return "TwitterResponseImpl{" + "rateLimitStatus=" + rateLimitStatus + ", accessLevel=" + accessLevel + '}';
 	}
 
+	protected static long getLong(String str) {
+		return InternalParseUtil.getLong(str);
+	}
+
+	protected static int getInt(String str) {
+		return InternalParseUtil.getInt(str);
+	}
+
+	protected static Date getDate(String str) throws TwitterException {
+		return InternalParseUtil.getUnescapedDate(str);
+	}
+
+	protected static boolean getBoolean(String str) {
+		return InternalParseUtil.getBoolean(str);
+	}
+
+	protected static String getUnescapedString(String str) {
+		return InternalParseUtil.getUnescapedString(str);
+	}
+
 	protected static long getLong(String name, JSONObject json) {
 		return InternalParseUtil.getLong(name, json);
 	}
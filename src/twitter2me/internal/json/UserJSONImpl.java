@@ -81,16 +81,21 @@ final class UserJSONImpl extends TwitterResponseImpl implements User {
 	private URLEntity[] descriptionEntities;
 
 	/* package */
-	UserJSONImpl(final HttpResponse res, final Configuration conf) throws TwitterException {
-		super(res);
-		final JSONObject json = res.asJSONObject();
+	UserJSONImpl(final JSONObject json) throws TwitterException {
+		super();
 		init(json);
 	}
 
 	/* package */
-	UserJSONImpl(final JSONObject json) throws TwitterException {
+	UserJSONImpl(final JSONPullParser parser) throws TwitterException {
 		super();
-		init(json);
+		init(parser);
+	}
+
+	/* package */
+	UserJSONImpl(final HttpResponse res, final JSONPullParser parser) throws TwitterException {
+		super(res);
+		init(parser);
 	}
 
 	public int compareTo(final User that) {
@@ -430,30 +435,7 @@ final class UserJSONImpl extends TwitterResponseImpl implements User {
 			}
 			if (!json.isNull("entities")) {
 				try {
-					final JSONObject entities = json.getJSONObject("entities");
-					int len;
-					if (!entities.isNull("description")) {
-						final JSONObject description = entities.getJSONObject("description");
-						if (!description.isNull("urls")) {
-							final JSONArray urlsArray = description.getJSONArray("urls");
-							len = urlsArray.length();
-							descriptionEntities = new URLEntity[len];
-							for (int i = 0; i < len; i++) {
-								descriptionEntities[i] = new URLEntityJSONImpl(urlsArray.getJSONObject(i));
-							}
-						}
-					}
-					if (!entities.isNull("url")) {
-						final JSONObject url = entities.getJSONObject("url");
-						if (!url.isNull("urls")) {
-							final JSONArray urlsArray = url.getJSONArray("urls");
-							len = urlsArray.length();
-							urlEntities = new URLEntity[len];
-							for (int i = 0; i < len; i++) {
-								urlEntities[i] = new URLEntityJSONImpl(urlsArray.getJSONObject(i));
-							}
-						}
-					}
+					initEntities(json.getJSONObject("entities"));
 				} catch (final JSONException jsone) {
 					throw new TwitterException(jsone);
 				}
@@ -463,6 +445,143 @@ final class UserJSONImpl extends TwitterResponseImpl implements User {
 		}
 	}
 
+	private void init(final JSONPullParser parser) throws TwitterException {
+		// A missing field gets the value init(JSONObject) gives it
+		id = -1;
+		name = screenName = location = description = "";
+		profileImageUrl = profileImageUrlHttps = url = profileBannerImageUrl = "";
+		profileBackgroundColor = profileTextColor = profileLinkColor = "";
+		profileSidebarFillColor = profileSidebarBorderColor = "";
+		timeZone = profileBackgroundImageUrl = profileBackgroundImageUrlHttps = lang = "";
+		followersCount = friendsCount = favouritesCount = utcOffset = statusesCount = listedCount = -1;
+		try {
+			parser.beginObject();
+			while (parser.hasNext()) {
+				final String name = parser.nextName();
+				if ("status".equals(name)) {
+					if (!parser.nextNull()) {
+						status = new StatusJSONImpl(parser);
+					}
+					continue;
+				} else if ("entities".equals(name)) {
+					final JSONObject entities = parser.nextJSONObject();
+					if (entities != null) {
+						initEntities(entities);
+					}
+					continue;
+				}
+				final int type = parser.peek();
+				if (type == JSONPullParser.BEGIN_OBJECT || type == JSONPullParser.BEGIN_ARRAY) {
+					parser.skipValue();
+					continue;
+				}
+				final String value = parser.nextString();
+				if ("id".equals(name)) {
+					id = getLong(value);
+				} else if ("name".equals(name)) {
+					this.name = value;
+				} else if ("screen_name".equals(name)) {
+					screenName = value;
+				} else if ("location".equals(name)) {
+					location = value;
+				} else if ("description".equals(name)) {
+					description = value;
+				} else if ("contributors_enabled".equals(name)) {
+					isContributorsEnabled = getBoolean(value);
+				} else if ("profile_image_url".equals(name)) {
+					profileImageUrl = value;
+				} else if ("profile_image_url_https".equals(name)) {
+					profileImageUrlHttps = value;
+				} else if ("url".equals(name)) {
+					url = value;
+				} else if ("protected".equals(name)) {
+					isProtected = getBoolean(value);
+				} else if ("geo_enabled".equals(name)) {
+					isGeoEnabled = getBoolean(value);
+				} else if ("verified".equals(name)) {
+					isVerified = getBoolean(value);
+				} else if ("is_translator".equals(name)) {
+					isTranslator = getBoolean(value);
+				} else if ("following".equals(name)) {
+					isFollowing = getBoolean(value);
+				} else if ("followers_count".equals(name)) {
+					followersCount = getInt(value);
+				} else if ("profile_banner_url".equals(name)) {
+					profileBannerImageUrl = value;
+				} else if ("profile_background_color".equals(name)) {
+					profileBackgroundColor = value;
+				} else if ("profile_text_color".equals(name)) {
+					profileTextColor = value;
+				} else if ("profile_link_color".equals(name)) {
+					profileLinkColor = value;
+				} else if ("profile_sidebar_fill_color".equals(name)) {
+					profileSidebarFillColor = value;
+				} else if ("profile_sidebar_border_color".equals(name)) {
+					profileSidebarBorderColor = value;
+				} else if ("profile_use_background_image".equals(name)) {
+					profileUseBackgroundImage = getBoolean(value);
+				} else if ("show_all_inline_media".equals(name)) {
+					showAllInlineMedia = getBoolean(value);
+				} else if ("friends_count".equals(name)) {
+					friendsCount = getInt(value);
+				} else if ("created_at".equals(name)) {
+					createdAt = getDate(value);
+				} else if ("favourites_count".equals(name)) {
+					favouritesCount = getInt(value);
+				} else if ("utc_offset".equals(name)) {
+					utcOffset = getInt(value);
+				} else if ("time_zone".equals(name)) {
+					timeZone = value;
+				} else if ("profile_background_image_url".equals(name)) {
+					profileBackgroundImageUrl = value;
+				} else if ("profile_background_image_url_https".equals(name)) {
+					profileBackgroundImageUrlHttps = value;
+				} else if ("profile_background_tile".equals(name)) {
+					profileBackgroundTiled = getBoolean(value);
+				} else if ("lang".equals(name)) {
+					lang = value;
+				} else if ("statuses_count".equals(name)) {
+					statusesCount = getInt(value);
+				} else if ("listed_count".equals(name)) {
+					listedCount = getInt(value);
+				} else if ("follow_request_sent".equals(name)) {
+					isFollowRequestSent = getBoolean(value);
+				} else if ("default_profile_image".equals(name)) {
+					isDefaultProfileImage = getBoolean(value);
+				}
+			}
+			parser.endObject();
+		} catch (final JSONException jsone) {
+			throw new TwitterException(jsone);
+		}
+	}
+
+	private void initEntities(final JSONObject entities) throws JSONException, TwitterException {
+		int len;
+		if (!entities.isNull("description")) {
+			final JSONObject description = entities.getJSONObject("description");
+			if (!description.isNull("urls")) {
+				final JSONArray urlsArray = description.getJSONArray("urls");
+				len = urlsArray.length();
+				descriptionEntities = new URLEntity[len];
+				for (int i = 0; i < len; i++) {
+					descriptionEntities[i] = new URLEntityJSONImpl(urlsArray.getJSONObject(i));
+				}
+			}
+		}
+		if (!entities.isNull("url")) {
+			final JSONObject url = entities.getJSONObject("url");
+			if (!url.isNull("urls")) {
+				final JSONArray urlsArray = url.getJSONArray("urls");
+				len = urlsArray.length();
+				urlEntities = new URLEntity[len];
+				for (int i = 0; i < len; i++) {
+					urlEntities[i] = new URLEntityJSONImpl(urlsArray.getJSONObject(i));
+				}
+			}
+		}
+	}
+
 	/* package */
 	static PagableResponseList createPagableUserList(final HttpResponse res, final Configuration conf)
 			throws TwitterException {
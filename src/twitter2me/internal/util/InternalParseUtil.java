@@ -39,7 +39,10 @@ public final class InternalParseUtil {
 	}
 
 	public static boolean getBoolean(final String name, final JSONObject json) {
-		final String str = getRawString(name, json);
+		return getBoolean(getRawString(name, json));
+	}
+
+	public static boolean getBoolean(final String str) {
 		if (TextUtils.isEmpty(str)) {
 			return false;
 		}
@@ -47,7 +50,15 @@ public final class InternalParseUtil {
 	}
 
 	public static Date getDate(final String name, final JSONObject json) throws TwitterException {
-		final String dateStr = getUnescapedString(name, json);
+		return getUnescapedDate(getRawString(name, json));
+	}
+
+	/**
+	 * Parses a date read as a raw string, empty values give
+	 * <code>null</code>.
+	 */
+	public static Date getUnescapedDate(final String str) throws TwitterException {
+		final String dateStr = getUnescapedString(str);
 		if (TextUtils.isEmpty(dateStr)) {
 			return null;
 		}
@@ -133,7 +144,10 @@ public final class InternalParseUtil {
 	}
 
 	public static String getUnescapedString(final String name, final JSONObject json) {
-		final String str = getRawString(name, json);
+		return getUnescapedString(getRawString(name, json));
+	}
+
+	public static String getUnescapedString(final String str) {
 		if (str == null) {
 			return null;
 		}